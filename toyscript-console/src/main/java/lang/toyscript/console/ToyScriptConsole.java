@@ -1,7 +1,9 @@
 package lang.toyscript.console;
 
+import lang.toyscript.engine.ToyScriptEngine;
 import lang.toyscript.engine.visitor.Types;
 
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -25,6 +27,7 @@ public class ToyScriptConsole {
     private boolean interactive;
     private String encoding = "utf-8";
     private String path;
+    private String cacheDir;
     private boolean help;
     private final ScriptEngine engine;
 
@@ -41,11 +44,17 @@ public class ToyScriptConsole {
             }
             if ("-i".equals(arg) || "--interactive".equals(arg)) interactive = true;
             else if ("-e".equals(arg) || "--encoding".equals(arg)) encoding = args[++i];
+            else if ("-c".equals(arg) || "--cache".equals(arg)) cacheDir = args[++i];
             else path = arg;
         }
     }
 
     void start() throws ScriptException, IOException {
+        var context = engine.getContext();
+        context.setAttribute(ToyScriptEngine.PARSER, ToyScriptEngine.PARSER_HANDWRITTEN, ScriptContext.ENGINE_SCOPE);
+        if (cacheDir != null) {
+            context.setAttribute(ToyScriptEngine.CACHE_DIR, cacheDir, ScriptContext.ENGINE_SCOPE);
+        }
         if (help) printHelp();
         else if (path != null) execute(Paths.get(path), Charset.forName(encoding));
         else if (interactive) consoleLoop();
@@ -90,10 +99,11 @@ public class ToyScriptConsole {
     }
 
     private void printHelp() {
-        System.out.println("Usage: toyscript [-i] [-h] /path/to/script.toys [-e utf-8]");
+        System.out.println("Usage: toyscript [-i] [-h] /path/to/script.toys [-e utf-8] [-c /path/to/cache]");
         System.out.println("Options:");
         var format = "%6s, %-18s %s %n";
         System.out.printf(format, "-e", "--encoding", "Optional. Script file encoding. Default: utf-8.");
+        System.out.printf(format, "-c", "--cache", "Optional. Directory for parsed scripts reused by later runs.");
         System.out.printf(format, "-i", "--interactive", "Interactive mode. Path to file not needed.");
         System.out.printf(format, "-h", "--help", "Prints help.");
     }
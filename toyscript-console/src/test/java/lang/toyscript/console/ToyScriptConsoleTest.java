@@ -21,9 +21,10 @@ public class ToyScriptConsoleTest {
         var lines = in.lines().map(String::trim).toArray(String[]::new);
 
         assertThat(lines).isEqualTo(new String[]{
-                "Usage: toyscript [-i] [-h] /path/to/script.toys [-e utf-8]",
+                "Usage: toyscript [-i] [-h] /path/to/script.toys [-e utf-8] [-c /path/to/cache]",
                 "Options:",
                 "-e, --encoding         Optional. Script file encoding. Default: utf-8.",
+                "-c, --cache            Optional. Directory for parsed scripts reused by later runs.",
                 "-i, --interactive      Interactive mode. Path to file not needed.",
                 "-h, --help             Prints help."
         });
@@ -4,7 +4,7 @@ program: statement* EOF;
 
 varDecl: VAR ID (ASSIGN expr)? END;
 
-functionDecl: FUNCTION ID PAREN_L ( ID (COMMA ID)* )? PAREN_R CURLY_L statement* CURLY_R;
+functionDecl: MEMO? FUNCTION ID PAREN_L ( ID (COMMA ID)* )? PAREN_R CURLY_L statement* CURLY_R;
 
 ifStatement: IF PAREN_L expr PAREN_R statement (ELSE statement)?;
 
@@ -67,6 +67,7 @@ VAR: 'var';
 ARRAY: 'array';
 STRUCT: 'struct';
 FUNCTION: 'function';
+MEMO: 'memo';
 IF: 'if';
 ELSE: 'else';
 WHILE: 'while';
@@ -0,0 +1,171 @@
+package lang.toyscript.engine;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates one compiled script against many bindings in parallel. A fixed number of workers run on the executor
+ * (a fork-join pool by default; pass {@code Executors.newVirtualThreadPerTaskExecutor()} for virtual threads),
+ * each taking the next bindings from the input and reusing its own script context for all of them.
+ * Results are delivered in input order, with the error of a failed evaluation captured in its result.
+ * At most {@link #WINDOW_PER_WORKER} inputs per worker are taken ahead of the oldest undelivered result,
+ * so a streamed input is read only as fast as results are consumed.
+ */
+public class BatchEvaluator {
+
+    public static final int WINDOW_PER_WORKER = 4;
+
+    /**
+     * Outcome of one evaluation: its value, or the error it failed with.
+     */
+    public record Result(Object value, ScriptException error) {
+
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    private final CompiledScript script;
+
+    private final Executor executor;
+
+    private final int parallelism;
+
+    public BatchEvaluator(CompiledScript script) {
+        this(script, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism number of workers, i.e. maximum number of concurrent evaluations.
+     */
+    public BatchEvaluator(CompiledScript script, Executor executor, int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.script = script;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return results of evaluating the script with each of given bindings, in the same order.
+     */
+    public List<Result> evalAll(List<? extends Bindings> inputs) {
+        var results = new ArrayList<Result>(inputs.size());
+        evalAll(inputs.iterator(), results::add);
+        return results;
+    }
+
+    /**
+     * Evaluates the script with each bindings of the input, passing results to the sink in input order.
+     * The sink is called by one thread at a time. Returns once all results were delivered; an exception
+     * thrown by the input or the sink stops the workers and is rethrown.
+     */
+    public void evalAll(Iterator<? extends Bindings> inputs, Consumer<? super Result> sink) {
+        var run = new Run(inputs, sink);
+        var workers = new CompletableFuture<?>[parallelism];
+        for (var i = 0; i < parallelism; i++) workers[i] = CompletableFuture.runAsync(run::work, executor);
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private ScriptContext context() {
+        var engineContext = script.getEngine().getContext();
+        var context = new SimpleScriptContext();
+        context.setBindings(engineContext.getBindings(ScriptContext.GLOBAL_SCOPE), ScriptContext.GLOBAL_SCOPE);
+        context.setReader(engineContext.getReader());
+        context.setWriter(engineContext.getWriter());
+        context.setErrorWriter(engineContext.getErrorWriter());
+        return context;
+    }
+
+    private Result eval(ScriptContext context) {
+        try {
+            return new Result(script.eval(context), null);
+        } catch (ScriptException e) {
+            return new Result(null, e);
+        } catch (RuntimeException e) {
+            return new Result(null, new ScriptException(e));
+        }
+    }
+
+    private class Run {
+
+        private final Iterator<? extends Bindings> inputs;
+
+        private final Consumer<? super Result> sink;
+
+        private final Semaphore window = new Semaphore(parallelism * WINDOW_PER_WORKER);
+
+        private final Map<Integer, Result> pending = new HashMap<>();
+
+        private int taken;
+
+        private int delivered;
+
+        private volatile boolean aborted;
+
+        Run(Iterator<? extends Bindings> inputs, Consumer<? super Result> sink) {
+            this.inputs = inputs;
+            this.sink = sink;
+        }
+
+        void work() {
+            try {
+                var context = context();
+                while (true) {
+                    window.acquire();
+                    int index;
+                    synchronized (this) {
+                        if (aborted || !inputs.hasNext()) break;
+                        index = taken++;
+                        context.setBindings(inputs.next(), ScriptContext.ENGINE_SCOPE);
+                    }
+                    deliver(index, eval(context));
+                }
+                window.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort();
+                throw new CompletionException(e);
+            } catch (RuntimeException | Error e) {
+                abort();
+                throw e;
+            }
+        }
+
+        private synchronized void deliver(int index, Result result) {
+            pending.put(index, result);
+            for (var next = pending.remove(delivered); next != null; next = pending.remove(delivered)) {
+                delivered++;
+                window.release();
+                if (!aborted) sink.accept(next);
+            }
+        }
+
+        /**
+         * Stops the other workers, waking those waiting for the window.
+         */
+        private void abort() {
+            aborted = true;
+            window.release(parallelism);
+        }
+    }
+}
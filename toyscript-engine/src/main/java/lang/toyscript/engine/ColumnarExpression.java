@@ -0,0 +1,524 @@
+package lang.toyscript.engine;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+
+import javax.script.ScriptException;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Map;
+
+import static lang.toyscript.engine.visitor.Types.addExpr;
+import static lang.toyscript.engine.visitor.Types.boolCast;
+import static lang.toyscript.engine.visitor.Types.divideExpr;
+import static lang.toyscript.engine.visitor.Types.equalsExpr;
+import static lang.toyscript.engine.visitor.Types.greaterThenExpr;
+import static lang.toyscript.engine.visitor.Types.lessThenExpr;
+import static lang.toyscript.engine.visitor.Types.moduloExpr;
+import static lang.toyscript.engine.visitor.Types.multiplyExpr;
+import static lang.toyscript.engine.visitor.Types.subtractExpr;
+import static lang.toyscript.engine.visitor.Types.unaryMinExpr;
+
+/**
+ * Expression evaluated over columns of values at once. Variables are bound to arrays ({@code int[]},
+ * {@code float[]}, {@code boolean[]}, {@code String[]} or {@code Object[]}) holding a value per row, or to single
+ * values shared by all rows. Each evaluation specializes the expression on the types of the columns and runs
+ * every operator as a loop over a chunk of {@link #CHUNK_SIZE} rows; integer, float and boolean operands
+ * are never boxed. Other operands fall back to the generic {@link lang.toyscript.engine.visitor.Types}
+ * operations, so results are the same as of evaluating the expression row by row.
+ * Only literals, variables, unary and binary operators are supported.
+ */
+public class ColumnarExpression {
+
+    public static final int CHUNK_SIZE = 1024;
+
+    private enum Kind {INT, FLOAT, BOOLEAN, OBJECT}
+
+    private final Expr expr;
+
+    private ColumnarExpression(Expr expr) {
+        this.expr = expr;
+    }
+
+    static ColumnarExpression of(Expr expr) throws ScriptException {
+        check(expr);
+        return new ColumnarExpression(expr);
+    }
+
+    private static void check(Expr expr) throws ScriptException {
+        if (expr instanceof Expr.Unary e) {
+            check(e.operand());
+        } else if (expr instanceof Expr.Binary e) {
+            check(e.left());
+            check(e.right());
+        } else if (!(expr instanceof Expr.Literal || expr instanceof Expr.Identifier)) {
+            throw new SignalException.Throw(expr.pos(), "Expression not supported in columnar evaluation")
+                    .checked();
+        }
+    }
+
+    /**
+     * @param columns values of variables: arrays of the same length, one element per row, or single values.
+     * @return result column: {@code int[]}, {@code float[]}, {@code boolean[]} or {@code Object[]},
+     * depending on types of the columns.
+     */
+    public Object eval(Map<String, ?> columns) throws ScriptException {
+        var rows = rows(columns);
+        try {
+            var root = plan(expr, columns, Math.min(rows, CHUNK_SIZE));
+            var result = root.allocate(rows);
+            for (var offset = 0; offset < rows; offset += CHUNK_SIZE) {
+                var length = Math.min(CHUNK_SIZE, rows - offset);
+                root.compute(offset, length);
+                System.arraycopy(root.buffer(), 0, result, offset, length);
+            }
+            return result;
+        } catch (SignalException e) {
+            throw e.checked();
+        }
+    }
+
+    private static int rows(Map<String, ?> columns) {
+        var rows = -1;
+        for (var entry : columns.entrySet()) {
+            var value = entry.getValue();
+            if (value == null || !value.getClass().isArray()) continue;
+            var length = Array.getLength(value);
+            if (rows >= 0 && length != rows) {
+                throw new IllegalArgumentException("Column " + entry.getKey() + " has " + length
+                        + " rows, expected " + rows);
+            }
+            rows = length;
+        }
+        return rows < 0 ? 1 : rows;
+    }
+
+    private static Vector plan(Expr expr, Map<String, ?> columns, int size) {
+        if (expr instanceof Expr.Literal e) return new Constant(e.value(), size);
+        if (expr instanceof Expr.Identifier e) {
+            if (!columns.containsKey(e.name())) {
+                throw new SignalException.Throw(e.pos(), "Identifier " + e.name() + " is not declared");
+            }
+            var value = columns.get(e.name());
+            return value != null && value.getClass().isArray() ?
+                    new Input(e.pos(), value, size) : new Constant(value, size);
+        }
+        if (expr instanceof Expr.Unary e) {
+            var operand = plan(e.operand(), columns, size);
+            return e.op() == Operator.NOT ? new Not(e.pos(), operand, size) : new Negate(e.pos(), operand, size);
+        }
+        var e = (Expr.Binary) expr;
+        var left = plan(e.left(), columns, size);
+        var right = plan(e.right(), columns, size);
+        return switch (e.op()) {
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO -> new Arithmetic(e.pos(), e.op(), left, right, size);
+            case AND, OR -> new Logical(e.pos(), e.op(), left, right, size);
+            default -> new Comparison(e.pos(), e.op(), left, right, size);
+        };
+    }
+
+    private static boolean isNumeric(Kind kind) {
+        return kind != Kind.OBJECT;
+    }
+
+    /**
+     * Values of a node for the current chunk, kept in the array of its kind.
+     */
+    private abstract static class Vector {
+
+        final Pos pos;
+
+        final Kind kind;
+
+        int[] ints;
+
+        float[] floats;
+
+        boolean[] booleans;
+
+        Object[] objects;
+
+        private float[] converted;
+
+        Vector(Pos pos, Kind kind, int size) {
+            this.pos = pos;
+            this.kind = kind;
+            switch (kind) {
+                case INT -> ints = new int[size];
+                case FLOAT -> floats = new float[size];
+                case BOOLEAN -> booleans = new boolean[size];
+                case OBJECT -> objects = new Object[size];
+            }
+        }
+
+        /**
+         * Computes values of rows from {@code offset} to {@code offset + length} into the buffer.
+         */
+        abstract void compute(int offset, int length);
+
+        Object buffer() {
+            return switch (kind) {
+                case INT -> ints;
+                case FLOAT -> floats;
+                case BOOLEAN -> booleans;
+                case OBJECT -> objects;
+            };
+        }
+
+        Object allocate(int rows) {
+            return switch (kind) {
+                case INT -> new int[rows];
+                case FLOAT -> new float[rows];
+                case BOOLEAN -> new boolean[rows];
+                case OBJECT -> new Object[rows];
+            };
+        }
+
+        Object get(int i) {
+            return switch (kind) {
+                case INT -> ints[i];
+                case FLOAT -> floats[i];
+                case BOOLEAN -> booleans[i];
+                case OBJECT -> objects[i];
+            };
+        }
+
+        /**
+         * @return values converted to floats, as by {@code Types.numberCast}; numeric kinds only.
+         */
+        float[] floats(int length) {
+            if (kind == Kind.FLOAT) return floats;
+            if (converted == null) converted = new float[ints != null ? ints.length : booleans.length];
+            if (kind == Kind.INT) {
+                for (var i = 0; i < length; i++) converted[i] = ints[i];
+            } else {
+                for (var i = 0; i < length; i++) converted[i] = booleans[i] ? 1 : 0;
+            }
+            return converted;
+        }
+
+        boolean booleanAt(int i) {
+            return switch (kind) {
+                case INT -> ints[i] != 0;
+                case FLOAT -> floats[i] != 0;
+                case BOOLEAN -> booleans[i];
+                case OBJECT -> boolCast(objects[i]);
+            };
+        }
+    }
+
+    private static Kind kindOf(Object value) {
+        if (value instanceof Integer) return Kind.INT;
+        if (value instanceof Float) return Kind.FLOAT;
+        if (value instanceof Boolean) return Kind.BOOLEAN;
+        return Kind.OBJECT;
+    }
+
+    private static Kind kindOfColumn(Object column) {
+        if (column instanceof int[]) return Kind.INT;
+        if (column instanceof float[]) return Kind.FLOAT;
+        if (column instanceof boolean[]) return Kind.BOOLEAN;
+        if (column instanceof Object[]) return Kind.OBJECT;
+        throw new IllegalArgumentException("Unsupported column type " + column.getClass().getSimpleName());
+    }
+
+    private static class Constant extends Vector {
+
+        Constant(Object value, int size) {
+            super(null, kindOf(value), size);
+            switch (kind) {
+                case INT -> Arrays.fill(ints, (Integer) value);
+                case FLOAT -> Arrays.fill(floats, (Float) value);
+                case BOOLEAN -> Arrays.fill(booleans, (Boolean) value);
+                case OBJECT -> Arrays.fill(objects, value);
+            }
+        }
+
+        @Override
+        void compute(int offset, int length) {
+        }
+    }
+
+    private static class Input extends Vector {
+
+        private final Object column;
+
+        Input(Pos pos, Object column, int size) {
+            super(pos, kindOfColumn(column), size);
+            this.column = column;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            System.arraycopy(column, offset, buffer(), 0, length);
+        }
+    }
+
+    private static class Negate extends Vector {
+
+        private final Vector operand;
+
+        Negate(Pos pos, Vector operand, int size) {
+            super(pos, operand.kind == Kind.BOOLEAN ? Kind.INT : operand.kind, size);
+            this.operand = operand;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            operand.compute(offset, length);
+            switch (operand.kind) {
+                case INT -> {
+                    for (var i = 0; i < length; i++) ints[i] = -operand.ints[i];
+                }
+                case FLOAT -> {
+                    for (var i = 0; i < length; i++) floats[i] = -operand.floats[i];
+                }
+                case BOOLEAN -> {
+                    for (var i = 0; i < length; i++) ints[i] = operand.booleans[i] ? -1 : 0;
+                }
+                case OBJECT -> {
+                    for (var i = 0; i < length; i++) objects[i] = unaryMinExpr(operand.objects[i]);
+                }
+            }
+        }
+    }
+
+    private static class Not extends Vector {
+
+        private final Vector operand;
+
+        Not(Pos pos, Vector operand, int size) {
+            super(pos, Kind.BOOLEAN, size);
+            this.operand = operand;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            operand.compute(offset, length);
+            for (var i = 0; i < length; i++) booleans[i] = !operand.booleanAt(i);
+        }
+    }
+
+    /**
+     * Both operands are always evaluated - logical operators do not short-circuit in ToyScript.
+     */
+    private static class Logical extends Vector {
+
+        private final boolean and;
+
+        private final Vector left;
+
+        private final Vector right;
+
+        Logical(Pos pos, Operator op, Vector left, Vector right, int size) {
+            super(pos, Kind.BOOLEAN, size);
+            this.and = op == Operator.AND;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            left.compute(offset, length);
+            right.compute(offset, length);
+            if (and) {
+                for (var i = 0; i < length; i++) booleans[i] = left.booleanAt(i) & right.booleanAt(i);
+            } else {
+                for (var i = 0; i < length; i++) booleans[i] = left.booleanAt(i) | right.booleanAt(i);
+            }
+        }
+    }
+
+    /**
+     * Integer operands give integers, other numeric operands (booleans count as {@code 0} or {@code 1}) floats.
+     * Modulo always gives integers.
+     */
+    private static class Arithmetic extends Vector {
+
+        private final Operator op;
+
+        private final Vector left;
+
+        private final Vector right;
+
+        Arithmetic(Pos pos, Operator op, Vector left, Vector right, int size) {
+            super(pos, kind(op, left.kind, right.kind), size);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        private static Kind kind(Operator op, Kind left, Kind right) {
+            if (op == Operator.MODULO || left == Kind.INT && right == Kind.INT) return Kind.INT;
+            return isNumeric(left) && isNumeric(right) ? Kind.FLOAT : Kind.OBJECT;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            left.compute(offset, length);
+            right.compute(offset, length);
+            try {
+                if (left.kind == Kind.INT && right.kind == Kind.INT) {
+                    computeInt(left.ints, right.ints, length);
+                } else if (kind == Kind.FLOAT) {
+                    computeFloat(left.floats(length), right.floats(length), length);
+                } else {
+                    computeGeneric(length);
+                }
+            } catch (ArithmeticException e) {
+                throw SignalException.wrap(pos, e);
+            }
+        }
+
+        private void computeInt(int[] l, int[] r, int length) {
+            switch (op) {
+                case ADD -> {
+                    for (var i = 0; i < length; i++) ints[i] = l[i] + r[i];
+                }
+                case SUBTRACT -> {
+                    for (var i = 0; i < length; i++) ints[i] = l[i] - r[i];
+                }
+                case MULTIPLY -> {
+                    for (var i = 0; i < length; i++) ints[i] = l[i] * r[i];
+                }
+                case DIVIDE -> {
+                    for (var i = 0; i < length; i++) ints[i] = l[i] / r[i];
+                }
+                default -> {
+                    for (var i = 0; i < length; i++) ints[i] = l[i] % r[i];
+                }
+            }
+        }
+
+        private void computeFloat(float[] l, float[] r, int length) {
+            switch (op) {
+                case ADD -> {
+                    for (var i = 0; i < length; i++) floats[i] = l[i] + r[i];
+                }
+                case SUBTRACT -> {
+                    for (var i = 0; i < length; i++) floats[i] = l[i] - r[i];
+                }
+                case MULTIPLY -> {
+                    for (var i = 0; i < length; i++) floats[i] = l[i] * r[i];
+                }
+                default -> {
+                    for (var i = 0; i < length; i++) floats[i] = l[i] / r[i];
+                }
+            }
+        }
+
+        private void computeGeneric(int length) {
+            for (var i = 0; i < length; i++) {
+                var value0 = left.get(i);
+                var value1 = right.get(i);
+                switch (op) {
+                    case ADD -> objects[i] = addExpr(value0, value1);
+                    case SUBTRACT -> objects[i] = subtractExpr(value0, value1);
+                    case MULTIPLY -> objects[i] = multiplyExpr(value0, value1);
+                    case DIVIDE -> objects[i] = divideExpr(value0, value1);
+                    default -> ints[i] = moduloExpr(value0, value1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Integers are compared as integers, other numeric operands as floats. Booleans are equal only to booleans.
+     */
+    private static class Comparison extends Vector {
+
+        private final Operator op;
+
+        private final Vector left;
+
+        private final Vector right;
+
+        Comparison(Pos pos, Operator op, Vector left, Vector right, int size) {
+            super(pos, Kind.BOOLEAN, size);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void compute(int offset, int length) {
+            left.compute(offset, length);
+            right.compute(offset, length);
+            var equality = op == Operator.EQUAL || op == Operator.NOT_EQUAL;
+            if (left.kind == Kind.INT && right.kind == Kind.INT) {
+                computeInt(left.ints, right.ints, length);
+            } else if (left.kind == Kind.BOOLEAN && right.kind == Kind.BOOLEAN && equality) {
+                var equal = op == Operator.EQUAL;
+                for (var i = 0; i < length; i++) booleans[i] = (left.booleans[i] == right.booleans[i]) == equal;
+            } else if (isNumeric(left.kind) && isNumeric(right.kind)
+                    && !(equality && (left.kind == Kind.BOOLEAN || right.kind == Kind.BOOLEAN))) {
+                computeFloat(left.floats(length), right.floats(length), length);
+            } else {
+                computeGeneric(length);
+            }
+        }
+
+        private void computeInt(int[] l, int[] r, int length) {
+            switch (op) {
+                case LESS -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] < r[i];
+                }
+                case LESS_EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] <= r[i];
+                }
+                case GREATER -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] > r[i];
+                }
+                case GREATER_EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] >= r[i];
+                }
+                case EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] == r[i];
+                }
+                default -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] != r[i];
+                }
+            }
+        }
+
+        private void computeFloat(float[] l, float[] r, int length) {
+            switch (op) {
+                case LESS -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] < r[i];
+                }
+                case LESS_EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = !(l[i] > r[i]);
+                }
+                case GREATER -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] > r[i];
+                }
+                case GREATER_EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = !(l[i] < r[i]);
+                }
+                case EQUAL -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] == r[i];
+                }
+                default -> {
+                    for (var i = 0; i < length; i++) booleans[i] = l[i] != r[i];
+                }
+            }
+        }
+
+        private void computeGeneric(int length) {
+            for (var i = 0; i < length; i++) {
+                var value0 = left.get(i);
+                var value1 = right.get(i);
+                booleans[i] = switch (op) {
+                    case LESS -> lessThenExpr(value0, value1);
+                    case LESS_EQUAL -> !greaterThenExpr(value0, value1);
+                    case GREATER -> greaterThenExpr(value0, value1);
+                    case GREATER_EQUAL -> !lessThenExpr(value0, value1);
+                    case EQUAL -> equalsExpr(value0, value1);
+                    default -> !equalsExpr(value0, value1);
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package lang.toyscript.engine;
+
+import lang.toyscript.engine.compiler.CompilerOptions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of compiled programs keyed by script source and compiler options, evicting
+ * the least recently used entry. Compilation itself runs outside the lock, so two threads
+ * compiling the same source at once may both miss; the later result wins.
+ */
+public class CompileCache {
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Key(String source, CompilerOptions options) {
+    }
+
+    private final int maxSize;
+
+    private final Map<Key, ToyScriptProgram> entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * @param maxSize maximum number of cached programs; {@code 0} disables caching.
+     */
+    public CompileCache(int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ToyScriptProgram> eldest) {
+                if (size() <= CompileCache.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    synchronized ToyScriptProgram get(String source, CompilerOptions options) {
+        var program = entries.get(new Key(source, options));
+        if (program != null) hits++;
+        else misses++;
+        return program;
+    }
+
+    synchronized void put(String source, CompilerOptions options, ToyScriptProgram program) {
+        if (maxSize > 0) entries.put(new Key(source, options), program);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size());
+    }
+
+    /**
+     * @return estimated bytes of heap retained by the cached programs, see {@link ToyScriptProgram#retainedSize()}.
+     */
+    public synchronized long retainedSize() {
+        return entries.values().stream().mapToLong(ToyScriptProgram::retainedSize).sum();
+    }
+}
@@ -0,0 +1,60 @@
+package lang.toyscript.engine;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.node.CallNode;
+import lang.toyscript.engine.visitor.Types;
+
+import javax.script.ScriptException;
+import java.util.function.Function;
+
+/**
+ * Expression compiled as a script function of its parameters, bound positionally. Calls need no script context;
+ * each runs in its own frame, so one instance may be called by many threads at once.
+ * {@link #apply} reports script errors as {@link IllegalStateException} with the {@link ScriptException} as cause.
+ */
+public class CompiledExpression implements Function<Object[], Object> {
+
+    /**
+     * Name the function is declared under while compiling; not a valid identifier, so no script can refer to it.
+     */
+    static final String NAME = "$expression";
+
+    private final Function<Object[], Object> function;
+
+    private final Pos pos;
+
+    CompiledExpression(Function<Object[], Object> function, Pos pos) {
+        this.function = function;
+        this.pos = pos;
+    }
+
+    /**
+     * @param args values of the parameters; missing ones are {@code null}.
+     */
+    public Object eval(Object... args) throws ScriptException {
+        try {
+            return function.apply(args);
+        } catch (RuntimeException e) {
+            throw SignalException.wrap(pos, e).checked();
+        } catch (StackOverflowError e) {
+            throw new ScriptException(CallNode.STACK_OVERFLOW);
+        }
+    }
+
+    /**
+     * @return value of the expression converted to boolean, as by conditions of {@code if} and {@code while}.
+     */
+    public boolean test(Object... args) throws ScriptException {
+        return Types.boolCast(eval(args));
+    }
+
+    @Override
+    public Object apply(Object[] args) {
+        try {
+            return eval(args);
+        } catch (ScriptException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+}
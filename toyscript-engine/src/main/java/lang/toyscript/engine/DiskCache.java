@@ -0,0 +1,126 @@
+package lang.toyscript.engine;
+
+import lang.toyscript.engine.ast.AstCodec;
+import lang.toyscript.engine.ast.Program;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Directory of parsed programs, one file per script named after the SHA-256 of its source.
+ * A file is only used if its format version, engine version, source digest and payload checksum
+ * all match; otherwise the script is parsed again and the file rewritten. The cache is best effort -
+ * I/O errors are logged and never fail compilation.
+ */
+public class DiskCache {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(DiskCache.class);
+
+    private static final int MAGIC = 0x544F5943; // TOYC
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String EXTENSION = ".toyc";
+
+    private final Path directory;
+
+    private final String engineVersion;
+
+    public DiskCache(Path directory, String engineVersion) {
+        this.directory = directory;
+        this.engineVersion = engineVersion;
+    }
+
+    /**
+     * @return program stored for the source or {@code null} if there is no valid entry.
+     */
+    public Program load(String source) {
+        var digest = digest(source);
+        var file = file(digest);
+        if (!Files.isRegularFile(file)) return null;
+        try (var in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            if (!engineVersion.equals(in.readUTF())) return null;
+            if (!Arrays.equals(digest, in.readNBytes(digest.length))) return null;
+            var checksum = in.readLong();
+            var payload = in.readNBytes(in.readInt());
+            if (checksum != checksum(payload)) return null;
+            return AstCodec.read(new DataInputStream(new ByteArrayInputStream(payload)));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Invalid cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entry to a temporary file moved in place atomically; the temporary file is deleted
+     * if writing or moving it fails.
+     */
+    public void store(String source, Program program) {
+        var digest = digest(source);
+        var file = file(digest);
+        Path temp = null;
+        try {
+            var bytes = new ByteArrayOutputStream();
+            AstCodec.write(program, new DataOutputStream(bytes));
+            var payload = bytes.toByteArray();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, null, EXTENSION);
+            try (var out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(engineVersion);
+                out.write(digest);
+                out.writeLong(checksum(payload));
+                out.writeInt(payload.length);
+                out.write(payload);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Cannot write cache entry {}", file, e);
+        } finally {
+            if (temp != null) delete(temp);
+        }
+    }
+
+    private static void delete(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot delete temporary cache file {}", temp, e);
+        }
+    }
+
+    private Path file(byte[] digest) {
+        return directory.resolve(HexFormat.of().formatHex(digest) + EXTENSION);
+    }
+
+    private static byte[] digest(String source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long checksum(byte[] payload) {
+        var crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
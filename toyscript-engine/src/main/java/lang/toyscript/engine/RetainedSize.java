@@ -0,0 +1,132 @@
+package lang.toyscript.engine;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates heap retained by an object graph, assuming the usual 64-bit layout with compressed
+ * pointers: 12 byte object header, 16 byte array header, 4 byte references and 8 byte alignment.
+ * Objects shared with the engine (classes, engine, context, bindings) are not counted. Fields of JDK
+ * classes closed to reflection are only sized, their collections are walked through their elements.
+ */
+class RetainedSize {
+
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    private static final Map<Class<?>, Field[]> FIELDS = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+    static long of(Object root) {
+        return new RetainedSize().walk(root);
+    }
+
+    private long walk(Object root) {
+        var size = 0L;
+        push(root);
+        while (!pending.isEmpty()) size += size(pending.pop());
+        return size;
+    }
+
+    private void push(Object object) {
+        if (object == null || isShared(object) || !visited.add(object)) return;
+        pending.push(object);
+    }
+
+    private long size(Object object) {
+        var type = object.getClass();
+        if (type.isArray()) {
+            var component = type.getComponentType();
+            var length = Array.getLength(object);
+            if (!component.isPrimitive()) {
+                for (var element : (Object[]) object) push(element);
+            }
+            return align(ARRAY_HEADER + (long) length * slot(component));
+        }
+        if (object instanceof String s) {
+            // String object plus its byte[] (Latin-1 or UTF-16 coder)
+            var bytes = s.chars().allMatch(c -> c < 256) ? s.length() : 2L * s.length();
+            return align(OBJECT_HEADER + REFERENCE + 4 + 4 + 1 + 1) + align(ARRAY_HEADER + bytes);
+        }
+        if (object instanceof Collection<?> collection && !isOpen(type)) {
+            collection.forEach(this::push);
+            return align(OBJECT_HEADER + 16) + align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+        }
+        if (object instanceof Map<?, ?> map && !isOpen(type)) {
+            map.forEach((key, value) -> {
+                push(key);
+                push(value);
+            });
+            return align(OBJECT_HEADER + 24) + align(ARRAY_HEADER + (long) map.size() * REFERENCE)
+                    + (long) map.size() * align(OBJECT_HEADER + 3 * REFERENCE + 4);
+        }
+        var shallow = (long) OBJECT_HEADER;
+        var open = isOpen(type);
+        for (var field : fields(type)) {
+            shallow += slot(field.getType());
+            if (open && !field.getType().isPrimitive()) {
+                try {
+                    push(field.get(object));
+                } catch (IllegalAccessException e) {
+                    // sized, but not followed
+                }
+            }
+        }
+        return align(shallow);
+    }
+
+    private static boolean isShared(Object object) {
+        return object instanceof Class || object instanceof ClassLoader || object instanceof Thread
+                || object instanceof ScriptEngine || object instanceof ScriptContext || object instanceof Bindings
+                || object instanceof Enum || object instanceof Module;
+    }
+
+    private static boolean isOpen(Class<?> type) {
+        return type.getModule().isOpen(type.getPackageName(), RetainedSize.class.getModule());
+    }
+
+    private static Field[] fields(Class<?> type) {
+        var fields = FIELDS.get(type);
+        if (fields != null) return fields;
+        var instanceFields = new ArrayList<Field>();
+        for (var c = type; c != null; c = c.getSuperclass()) {
+            for (var field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+                if (isOpen(c)) field.setAccessible(true);
+                instanceFields.add(field);
+            }
+        }
+        fields = instanceFields.toArray(Field[]::new);
+        FIELDS.put(type, fields);
+        return fields;
+    }
+
+    private static int slot(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -1,12 +1,28 @@
 package lang.toyscript.engine;
 
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.compiler.BytecodeCompiler;
+import lang.toyscript.engine.compiler.CompilerOptions;
+import lang.toyscript.engine.compiler.NodeCompiler;
+import lang.toyscript.engine.compiler.Optimizer;
 import lang.toyscript.engine.error.ParseErrorListener;
 import lang.toyscript.engine.error.ParseException;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.parser.Parser;
+import lang.toyscript.engine.registry.CallStack;
+import lang.toyscript.engine.visitor.AstBuilder;
 import lang.toyscript.parser.ToyScriptLexer;
 import lang.toyscript.parser.ToyScriptParser;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
@@ -19,30 +35,100 @@ import javax.script.SimpleBindings;
 import javax.script.SimpleScriptContext;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
 
 public class ToyScriptEngine implements ScriptEngine, Compilable {
 
+    /**
+     * Script context attribute (or engine binding) selecting the execution backend.
+     */
+    public static final String BACKEND = "toyscript.backend";
+
+    public static final String BACKEND_INTERPRETER = "interpreter";
+
+    /**
+     * Translates script functions to JVM bytecode; functions which cannot be translated are interpreted.
+     */
+    public static final String BACKEND_JVM = "jvm";
+
+    /**
+     * Interprets script functions until they get hot, then translates them to JVM bytecode specialized
+     * on observed argument types.
+     */
+    public static final String BACKEND_TIERED = "tiered";
+
+    /**
+     * Compiles scripts to the register machine bytecode, see {@link ToyScriptProgram#bytecode()}.
+     */
+    public static final String BACKEND_BYTECODE = "bytecode";
+
+    /**
+     * Script context attribute (or engine binding) selecting the parser front-end.
+     */
+    public static final String PARSER = "toyscript.parser";
+
+    public static final String PARSER_ANTLR = "antlr";
+
+    /**
+     * Hand-written lexer and parser, see {@link lang.toyscript.engine.parser.Parser}. Faster to start
+     * and to run than ANTLR; syntax error messages may differ in wording.
+     */
+    public static final String PARSER_HANDWRITTEN = "handwritten";
+
+    /**
+     * Script context attribute (or engine binding) enabling {@link Optimizer} when {@code true} (or {@code "true"}).
+     */
+    public static final String OPTIMIZE = "toyscript.optimize";
+
+    /**
+     * Script context attribute (or engine binding) limiting the depth of script function calls,
+     * {@link CallStack#DEFAULT_MAX_DEPTH} by default ({@link CallStack#DEFAULT_BYTECODE_MAX_DEPTH} with the bytecode
+     * backend). Deeper call raises a script error.
+     */
+    public static final String MAX_CALL_DEPTH = "toyscript.maxCallDepth";
+
+    /**
+     * Script context attribute (or engine binding) with a directory ({@link String} or {@link Path})
+     * where parsed scripts are persisted, see {@link DiskCache}.
+     */
+    public static final String CACHE_DIR = "toyscript.cache.dir";
+
+    /**
+     * Number of compiled scripts kept by {@link #compileCache()} unless given to the constructor.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
     private ScriptContext context;
 
     private final ToyScriptEngineFactory factory;
 
+    private final CompileCache compileCache;
+
     public ToyScriptEngine() {
         this(null);
     }
 
     public ToyScriptEngine(ToyScriptEngineFactory factory) {
+        this(factory, DEFAULT_CACHE_SIZE);
+    }
+
+    public ToyScriptEngine(ToyScriptEngineFactory factory, int cacheSize) {
         this.factory = factory;
+        this.compileCache = new CompileCache(cacheSize);
         context = new SimpleScriptContext();
     }
 
     @Override
     public Object eval(String script, ScriptContext context) throws ScriptException {
-        return compile(script).eval(context);
+        return compile(script, context).eval(context);
     }
 
     @Override
     public Object eval(Reader reader, ScriptContext context) throws ScriptException {
-        return compile(reader).eval(context);
+        return compile(reader, context).eval(context);
     }
 
     @Override
@@ -109,31 +195,149 @@ public class ToyScriptEngine implements ScriptEngine, Compilable {
         return factory;
     }
 
+    /**
+     * @return cache of programs compiled from strings, consulted by {@code eval(String)} and {@code compile(String)}.
+     */
+    public CompileCache compileCache() {
+        return compileCache;
+    }
+
     @Override
     public CompiledScript compile(String script) throws ScriptException {
+        return compile(script, context);
+    }
+
+    @Override
+    public CompiledScript compile(Reader reader) throws ScriptException {
+        return compile(reader, context);
+    }
+
+    /**
+     * Compiles a script of a single expression for evaluation over columns of values, see {@link ColumnarExpression}.
+     */
+    public ColumnarExpression compileColumnar(String script) throws ScriptException {
+        return ColumnarExpression.of(expression(script));
+    }
+
+    /**
+     * Compiles a single expression into a function of given parameters, see {@link CompiledExpression}.
+     * The expression sees the standard library and global scope bindings, but not the engine scope.
+     */
+    public CompiledExpression compileExpression(String expression, String... params) throws ScriptException {
+        var expr = expression(expression);
+        var pos = expr.pos();
+        var body = List.<Stmt>of(new Stmt.Return(pos, expr));
+        var declaration = new Stmt.FunctionDecl(pos, CompiledExpression.NAME, List.of(params), body, false);
+        ToyScriptProgram program;
         try {
-            var input = CharStreams.fromString(script);
-            return doCompile(input);
+            program = doCompile(new Program(List.of(declaration)), options(context));
         } catch (ParseException e) {
             throw e.checked();
-        } catch (RuntimeException e) {
-            throw new ScriptException(e);
+        } catch (SignalException e) {
+            throw e.checked();
         }
+        var scriptContext = new SimpleScriptContext();
+        scriptContext.setBindings(context.getBindings(ScriptContext.GLOBAL_SCOPE), ScriptContext.GLOBAL_SCOPE);
+        scriptContext.setReader(context.getReader());
+        scriptContext.setWriter(context.getWriter());
+        scriptContext.setErrorWriter(context.getErrorWriter());
+        program.eval(scriptContext);
+        @SuppressWarnings("unchecked")
+        var function = (Function<Object[], Object>) scriptContext.getAttribute(CompiledExpression.NAME);
+        return new CompiledExpression(function, pos);
     }
 
-    @Override
-    public CompiledScript compile(Reader reader) throws ScriptException {
+    /**
+     * @return expression of a script consisting of a single expression statement; the final semicolon is optional.
+     */
+    private Expr expression(String script) throws ScriptException {
+        var source = script.strip();
+        if (!source.endsWith(";")) source += ";";
         try {
-            var input = CharStreams.fromReader(reader);
-            return doCompile(input);
+            var ast = parse(source, context);
+            if (options(context).optimize()) ast = Optimizer.optimize(ast);
+            var body = ast.body();
+            if (body.size() != 1 || !(body.get(0) instanceof Stmt.Expression statement)) {
+                var pos = body.isEmpty() ? new Pos(1, 0) : body.get(0).pos();
+                throw new SignalException.Throw(pos, "Script must be a single expression").checked();
+            }
+            return statement.expr();
         } catch (ParseException e) {
             throw e.checked();
-        } catch (IOException | RuntimeException e) {
+        }
+    }
+
+    private CompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        try {
+            var options = options(context);
+            var program = compileCache.get(script, options);
+            if (program == null) {
+                program = doCompile(parse(script, context), options);
+                compileCache.put(script, options, program);
+            }
+            return program;
+        } catch (ParseException e) {
+            throw e.checked();
+        } catch (RuntimeException e) {
             throw new ScriptException(e);
         }
     }
 
-    private ToyScriptProgram doCompile(CharStream input) {
+    private CompiledScript compile(Reader reader, ScriptContext context) throws ScriptException {
+        String script;
+        try {
+            var writer = new StringWriter();
+            reader.transferTo(writer);
+            script = writer.toString();
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return compile(script, context);
+    }
+
+    private Program parse(String script, ScriptContext context) {
+        var parser = context.getAttribute(PARSER);
+        var cacheDir = context.getAttribute(CACHE_DIR);
+        if (cacheDir == null) return parse(script, parser);
+        var diskCache = new DiskCache(Path.of(cacheDir.toString()), version());
+        var ast = diskCache.load(script);
+        if (ast == null) {
+            ast = parse(script, parser);
+            diskCache.store(script, ast);
+        }
+        return ast;
+    }
+
+    static Program parse(String script, Object parser) {
+        if (parser == null || PARSER_ANTLR.equals(parser)) return parse(CharStreams.fromString(script));
+        if (PARSER_HANDWRITTEN.equals(parser)) return Parser.parse(script);
+        throw new IllegalArgumentException("Unknown parser: " + parser);
+    }
+
+    private String version() {
+        return (factory != null ? factory : new ToyScriptEngineFactory()).getEngineVersion();
+    }
+
+    static int maxCallDepth(ScriptContext context, boolean bytecode) {
+        var maxDepth = context.getAttribute(MAX_CALL_DEPTH);
+        if (maxDepth == null) return bytecode ? CallStack.DEFAULT_BYTECODE_MAX_DEPTH : CallStack.DEFAULT_MAX_DEPTH;
+        return maxDepth instanceof Number n ? n.intValue() : Integer.parseInt(String.valueOf(maxDepth));
+    }
+
+    private static CompilerOptions options(ScriptContext context) {
+        var optimize = Boolean.parseBoolean(String.valueOf(context.getAttribute(OPTIMIZE)));
+        return new CompilerOptions(backend(context.getAttribute(BACKEND)), optimize);
+    }
+
+    private static CompilerOptions.Backend backend(Object backend) {
+        if (backend == null || BACKEND_INTERPRETER.equals(backend)) return CompilerOptions.Backend.INTERPRETER;
+        if (BACKEND_JVM.equals(backend)) return CompilerOptions.Backend.JVM;
+        if (BACKEND_TIERED.equals(backend)) return CompilerOptions.Backend.TIERED;
+        if (BACKEND_BYTECODE.equals(backend)) return CompilerOptions.Backend.BYTECODE;
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+
+    private static Program parse(CharStream input) {
 
         // custom error listener
         var errorListener = new ParseErrorListener();
@@ -144,12 +348,51 @@ public class ToyScriptEngine implements ScriptEngine, Compilable {
         lexer.addErrorListener(errorListener);
         var tokenStream = new CommonTokenStream(lexer);
 
-        // create parse tree
+        // create parse tree: fast SLL prediction first, full LL only if SLL fails (real syntax error
+        // or an ambiguity SLL cannot resolve)
         var parser = new ToyScriptParser(tokenStream);
         parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-        var tree = parser.program();
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        ToyScriptParser.ProgramContext tree;
+        try {
+            tree = parser.program();
+        } catch (ParseCancellationException e) {
+            tokenStream.seek(0);
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            tree = parser.program();
+        }
+
+        return AstBuilder.build(tree);
+    }
+
+    /**
+     * Parses representative scripts to populate the parser's prediction cache (DFA), which is shared
+     * by all engines of the class loader, so the first compilations do not pay for building it.
+     * Scripts with syntax errors are skipped.
+     */
+    public static void warmUp(Iterable<String> scripts) {
+        for (var script : scripts) {
+            try {
+                parse(CharStreams.fromString(script));
+            } catch (ParseException e) {
+                // still warms up the prediction of the correct prefix
+            }
+        }
+    }
+
+    private ToyScriptProgram doCompile(Program ast, CompilerOptions options) {
+        if (options.optimize()) ast = Optimizer.optimize(ast);
+        if (options.backend() == CompilerOptions.Backend.BYTECODE) {
+            return new ToyScriptProgram(this, BytecodeCompiler.compile(ast));
+        }
+
+        // compile to executable nodes
+        var program = NodeCompiler.compile(ast, options);
 
-        return new ToyScriptProgram(this, tree);
+        return new ToyScriptProgram(this, program);
     }
 }
@@ -9,6 +9,18 @@ import java.util.stream.Stream;
 
 public class ToyScriptEngineFactory implements ScriptEngineFactory {
 
+    /**
+     * Key of the {@link #getParameter} describing thread safety of the engine, see {@link #MULTITHREADED}.
+     */
+    public static final String THREADING = "THREADING";
+
+    /**
+     * Compiled programs keep no state of an evaluation, so they may be evaluated by many threads at once.
+     * Evaluations see each other's effects only through shared bindings, which are then required to be
+     * thread safe; evaluations with distinct {@link javax.script.Bindings} do not interfere.
+     */
+    public static final String MULTITHREADED = "MULTITHREADED";
+
     private final List<String> names;
     private final String version;
     private final List<String> extensions;
@@ -70,6 +82,7 @@ public class ToyScriptEngineFactory implements ScriptEngineFactory {
             case ScriptEngine.LANGUAGE -> getLanguageName();
             case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
             case ScriptEngine.NAME -> getNames().get(0);
+            case THREADING -> MULTITHREADED;
             default -> null;
         };
     }
@@ -1,9 +1,13 @@
 package lang.toyscript.engine;
 
+import lang.toyscript.engine.bytecode.Chunk;
+import lang.toyscript.engine.bytecode.VirtualMachine;
 import lang.toyscript.engine.error.ParseException;
 import lang.toyscript.engine.error.SignalException;
-import lang.toyscript.engine.visitor.ParseTreeVisitor;
-import lang.toyscript.parser.ToyScriptParser;
+import lang.toyscript.engine.node.CallNode;
+import lang.toyscript.engine.node.ProgramNode;
+import lang.toyscript.engine.registry.CallStack;
+import lang.toyscript.engine.registry.Frame;
 
 import javax.script.CompiledScript;
 import javax.script.ScriptContext;
@@ -14,26 +18,65 @@ public class ToyScriptProgram extends CompiledScript {
 
     private final ToyScriptEngine engine;
 
-    private final ToyScriptParser.ProgramContext tree;
+    private final ProgramNode program;
 
-    public ToyScriptProgram(ToyScriptEngine engine, ToyScriptParser.ProgramContext tree) {
+    private final Chunk bytecode;
+
+    public ToyScriptProgram(ToyScriptEngine engine, ProgramNode program) {
+        this(engine, program, null);
+    }
+
+    public ToyScriptProgram(ToyScriptEngine engine, Chunk bytecode) {
+        this(engine, null, bytecode);
+    }
+
+    private ToyScriptProgram(ToyScriptEngine engine, ProgramNode program, Chunk bytecode) {
         this.engine = engine;
-        this.tree = tree;
+        this.program = program;
+        this.bytecode = bytecode;
+    }
+
+    /**
+     * @return compiled bytecode, or {@code null} if the program is executed by the node interpreter.
+     */
+    public Chunk bytecode() {
+        return bytecode;
+    }
+
+    /**
+     * @return estimated bytes of heap retained by this program (executable tree or bytecode, with
+     * functions compiled so far), excluding the engine and script context.
+     */
+    public long retainedSize() {
+        return RetainedSize.of(bytecode != null ? bytecode : program);
     }
 
+    /**
+     * Runs the program with the call depth limited by {@link ToyScriptEngine#MAX_CALL_DEPTH}. Java stack overflow
+     * before the limit is reached (deep recursion of interpreted or translated functions) is raised as
+     * a script error at the call, see {@link CallNode#call}. Evaluation is reentrant: frames and the globals scope are created per call,
+     * so one program may be evaluated by many threads with distinct bindings.
+     */
     @Override
     public Object eval(ScriptContext context) throws ScriptException {
-        var visitor = ParseTreeVisitor.create(context);
+        var calls = CallStack.current();
+        var outerMaxDepth = calls.limit(ToyScriptEngine.maxCallDepth(context, bytecode != null));
         try {
-            visitor.visit(tree);
+            if (bytecode != null) {
+                return VirtualMachine.execute(bytecode, Frame.root(context, bytecode.registerCount()));
+            }
+            return program.execute(Frame.root(context, program.frameSize()));
         } catch (ParseException e) {
             throw e.checked();
         } catch (SignalException e) {
             throw e.checked();
         } catch (RuntimeException e) {
             throw new ScriptException(e);
+        } catch (StackOverflowError e) {
+            throw new ScriptException(CallNode.STACK_OVERFLOW);
+        } finally {
+            calls.limit(outerMaxDepth);
         }
-        return visitor.getResult();
     }
 
     @Override
@@ -0,0 +1,337 @@
+package lang.toyscript.engine.ast;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of the syntax tree, so a program can be restored without lexing and parsing.
+ * Every node is written as a one byte tag followed by its components in declaration order.
+ */
+public class AstCodec {
+
+    private static final int NULL = 0;
+
+    // statements
+    private static final int VAR_DECL = 1;
+    private static final int FUNCTION_DECL = 2;
+    private static final int IF = 3;
+    private static final int WHILE = 4;
+    private static final int TRY = 5;
+    private static final int THROW = 6;
+    private static final int RETURN = 7;
+    private static final int EXIT = 8;
+    private static final int BREAK = 9;
+    private static final int CONTINUE = 10;
+    private static final int EXPRESSION = 11;
+    private static final int BLOCK = 12;
+    private static final int EMPTY = 13;
+
+    // expressions
+    private static final int LITERAL = 32;
+    private static final int IDENTIFIER = 33;
+    private static final int ASSIGN = 34;
+    private static final int INCR_DECR = 35;
+    private static final int UNARY = 36;
+    private static final int BINARY = 37;
+    private static final int MEMBER_ACCESS = 38;
+    private static final int MEMBER_ASSIGN = 39;
+    private static final int INDEX_ACCESS = 40;
+    private static final int INDEX_ASSIGN = 41;
+    private static final int CALL = 42;
+    private static final int ARRAY_INIT = 43;
+    private static final int ARRAY_DEF = 44;
+    private static final int STRUCT_INIT = 45;
+
+    // literal values
+    private static final int INT = 1;
+    private static final int FLOAT = 2;
+    private static final int BOOL = 3;
+    private static final int STRING = 4;
+
+    public static void write(Program program, DataOutput out) throws IOException {
+        new Writer(out).statements(program.body());
+    }
+
+    public static Program read(DataInput in) throws IOException {
+        return new Program(new Reader(in).statements());
+    }
+
+    private record Writer(DataOutput out) {
+
+        void statements(List<Stmt> statements) throws IOException {
+            out.writeInt(statements.size());
+            for (var stmt : statements) statement(stmt);
+        }
+
+        void expressions(List<Expr> expressions) throws IOException {
+            out.writeInt(expressions.size());
+            for (var expr : expressions) expr(expr);
+        }
+
+        void strings(List<String> strings) throws IOException {
+            out.writeInt(strings.size());
+            for (var string : strings) out.writeUTF(string);
+        }
+
+        void statement(Stmt stmt) throws IOException {
+            if (stmt == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            if (stmt instanceof Stmt.VarDecl s) {
+                tag(VAR_DECL, s.pos());
+                out.writeUTF(s.name());
+                expr(s.init());
+            } else if (stmt instanceof Stmt.FunctionDecl s) {
+                tag(FUNCTION_DECL, s.pos());
+                out.writeUTF(s.name());
+                strings(s.params());
+                statements(s.body());
+                out.writeBoolean(s.memo());
+            } else if (stmt instanceof Stmt.If s) {
+                tag(IF, s.pos());
+                expr(s.condition());
+                statement(s.then());
+                statement(s.otherwise());
+            } else if (stmt instanceof Stmt.While s) {
+                tag(WHILE, s.pos());
+                expr(s.condition());
+                statement(s.body());
+            } else if (stmt instanceof Stmt.Try s) {
+                tag(TRY, s.pos());
+                statement(s.body());
+                out.writeBoolean(s.errorName() != null);
+                if (s.errorName() != null) {
+                    pos(s.errorPos());
+                    out.writeUTF(s.errorName());
+                }
+                statements(s.handler());
+            } else if (stmt instanceof Stmt.Throw s) {
+                tag(THROW, s.pos());
+                expr(s.value());
+            } else if (stmt instanceof Stmt.Return s) {
+                tag(RETURN, s.pos());
+                expr(s.value());
+            } else if (stmt instanceof Stmt.Exit s) {
+                tag(EXIT, s.pos());
+                expr(s.value());
+            } else if (stmt instanceof Stmt.Break s) {
+                tag(BREAK, s.pos());
+            } else if (stmt instanceof Stmt.Continue s) {
+                tag(CONTINUE, s.pos());
+            } else if (stmt instanceof Stmt.Expression s) {
+                tag(EXPRESSION, s.pos());
+                expr(s.expr());
+            } else if (stmt instanceof Stmt.Block s) {
+                tag(BLOCK, s.pos());
+                statements(s.body());
+            } else if (stmt instanceof Stmt.Empty s) {
+                tag(EMPTY, s.pos());
+            } else {
+                throw new IllegalArgumentException("Unsupported statement " + stmt);
+            }
+        }
+
+        void expr(Expr expr) throws IOException {
+            if (expr == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            if (expr instanceof Expr.Literal e) {
+                tag(LITERAL, e.pos());
+                literal(e.value());
+            } else if (expr instanceof Expr.Identifier e) {
+                tag(IDENTIFIER, e.pos());
+                out.writeUTF(e.name());
+            } else if (expr instanceof Expr.Assign e) {
+                tag(ASSIGN, e.pos());
+                out.writeUTF(e.name());
+                expr(e.value());
+            } else if (expr instanceof Expr.IncrDecr e) {
+                tag(INCR_DECR, e.pos());
+                out.writeByte(e.op().ordinal());
+                out.writeUTF(e.name());
+            } else if (expr instanceof Expr.Unary e) {
+                tag(UNARY, e.pos());
+                out.writeByte(e.op().ordinal());
+                expr(e.operand());
+            } else if (expr instanceof Expr.Binary e) {
+                tag(BINARY, e.pos());
+                out.writeByte(e.op().ordinal());
+                expr(e.left());
+                expr(e.right());
+            } else if (expr instanceof Expr.MemberAccess e) {
+                tag(MEMBER_ACCESS, e.pos());
+                expr(e.object());
+                pos(e.memberPos());
+                out.writeUTF(e.member());
+            } else if (expr instanceof Expr.MemberAssign e) {
+                tag(MEMBER_ASSIGN, e.pos());
+                expr(e.object());
+                pos(e.memberPos());
+                out.writeUTF(e.member());
+                expr(e.value());
+            } else if (expr instanceof Expr.IndexAccess e) {
+                tag(INDEX_ACCESS, e.pos());
+                expr(e.object());
+                expr(e.index());
+            } else if (expr instanceof Expr.IndexAssign e) {
+                tag(INDEX_ASSIGN, e.pos());
+                expr(e.object());
+                expr(e.index());
+                expr(e.value());
+            } else if (expr instanceof Expr.Call e) {
+                tag(CALL, e.pos());
+                out.writeUTF(e.name());
+                expressions(e.args());
+            } else if (expr instanceof Expr.ArrayInit e) {
+                tag(ARRAY_INIT, e.pos());
+                expressions(e.elements());
+            } else if (expr instanceof Expr.ArrayDef e) {
+                tag(ARRAY_DEF, e.pos());
+                expr(e.size());
+            } else if (expr instanceof Expr.StructInit e) {
+                tag(STRUCT_INIT, e.pos());
+                strings(e.keys());
+                expressions(e.values());
+            } else {
+                throw new IllegalArgumentException("Unsupported expression " + expr);
+            }
+        }
+
+        void literal(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Integer i) {
+                out.writeByte(INT);
+                out.writeInt(i);
+            } else if (value instanceof Float f) {
+                out.writeByte(FLOAT);
+                out.writeFloat(f);
+            } else if (value instanceof Boolean b) {
+                out.writeByte(BOOL);
+                out.writeBoolean(b);
+            } else if (value instanceof String s) {
+                out.writeByte(STRING);
+                out.writeUTF(s);
+            } else {
+                throw new IllegalArgumentException("Unsupported literal " + value);
+            }
+        }
+
+        void tag(int tag, Pos pos) throws IOException {
+            out.writeByte(tag);
+            pos(pos);
+        }
+
+        void pos(Pos pos) throws IOException {
+            out.writeInt(pos.line());
+            out.writeInt(pos.column());
+        }
+    }
+
+    private record Reader(DataInput in) {
+
+        List<Stmt> statements() throws IOException {
+            var size = in.readInt();
+            var statements = new ArrayList<Stmt>(size);
+            for (var i = 0; i < size; i++) statements.add(statement());
+            return statements;
+        }
+
+        List<Expr> expressions() throws IOException {
+            var size = in.readInt();
+            var expressions = new ArrayList<Expr>(size);
+            for (var i = 0; i < size; i++) expressions.add(expr());
+            return expressions;
+        }
+
+        List<String> strings() throws IOException {
+            var size = in.readInt();
+            var strings = new ArrayList<String>(size);
+            for (var i = 0; i < size; i++) strings.add(name());
+            return strings;
+        }
+
+        Stmt statement() throws IOException {
+            var tag = in.readUnsignedByte();
+            if (tag == NULL) return null;
+            var pos = pos();
+            return switch (tag) {
+                case VAR_DECL -> new Stmt.VarDecl(pos, name(), expr());
+                case FUNCTION_DECL -> new Stmt.FunctionDecl(pos, name(), strings(), statements(), in.readBoolean());
+                case IF -> new Stmt.If(pos, expr(), statement(), statement());
+                case WHILE -> new Stmt.While(pos, expr(), statement());
+                case TRY -> {
+                    var body = (Stmt.Block) statement();
+                    var hasError = in.readBoolean();
+                    var errorPos = hasError ? pos() : null;
+                    var errorName = hasError ? name() : null;
+                    yield new Stmt.Try(pos, body, errorPos, errorName, statements());
+                }
+                case THROW -> new Stmt.Throw(pos, expr());
+                case RETURN -> new Stmt.Return(pos, expr());
+                case EXIT -> new Stmt.Exit(pos, expr());
+                case BREAK -> new Stmt.Break(pos);
+                case CONTINUE -> new Stmt.Continue(pos);
+                case EXPRESSION -> new Stmt.Expression(pos, expr());
+                case BLOCK -> new Stmt.Block(pos, statements());
+                case EMPTY -> new Stmt.Empty(pos);
+                default -> throw new IOException("Unknown statement tag " + tag);
+            };
+        }
+
+        Expr expr() throws IOException {
+            var tag = in.readUnsignedByte();
+            if (tag == NULL) return null;
+            var pos = pos();
+            return switch (tag) {
+                case LITERAL -> new Expr.Literal(pos, literal());
+                case IDENTIFIER -> new Expr.Identifier(pos, name());
+                case ASSIGN -> new Expr.Assign(pos, name(), expr());
+                case INCR_DECR -> new Expr.IncrDecr(pos, operator(), name());
+                case UNARY -> new Expr.Unary(pos, operator(), expr());
+                case BINARY -> new Expr.Binary(pos, operator(), expr(), expr());
+                case MEMBER_ACCESS -> new Expr.MemberAccess(pos, expr(), pos(), name());
+                case MEMBER_ASSIGN -> new Expr.MemberAssign(pos, expr(), pos(), name(), expr());
+                case INDEX_ACCESS -> new Expr.IndexAccess(pos, expr(), expr());
+                case INDEX_ASSIGN -> new Expr.IndexAssign(pos, expr(), expr(), expr());
+                case CALL -> new Expr.Call(pos, name(), expressions());
+                case ARRAY_INIT -> new Expr.ArrayInit(pos, expressions());
+                case ARRAY_DEF -> new Expr.ArrayDef(pos, expr());
+                case STRUCT_INIT -> new Expr.StructInit(pos, strings(), expressions());
+                default -> throw new IOException("Unknown expression tag " + tag);
+            };
+        }
+
+        Object literal() throws IOException {
+            var type = in.readUnsignedByte();
+            return switch (type) {
+                case NULL -> null;
+                case INT -> in.readInt();
+                case FLOAT -> in.readFloat();
+                case BOOL -> in.readBoolean();
+                case STRING -> in.readUTF();
+                default -> throw new IOException("Unknown literal type " + type);
+            };
+        }
+
+        String name() throws IOException {
+            return in.readUTF().intern();
+        }
+
+        Operator operator() throws IOException {
+            var ordinal = in.readUnsignedByte();
+            var operators = Operator.values();
+            if (ordinal >= operators.length) throw new IOException("Unknown operator " + ordinal);
+            return operators[ordinal];
+        }
+
+        Pos pos() throws IOException {
+            return new Pos(in.readInt(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package lang.toyscript.engine.ast;
+
+import java.util.List;
+
+public sealed interface Expr {
+
+    Pos pos();
+
+    record Literal(Pos pos, Object value) implements Expr {
+
+        /**
+         * @return value of a string token: text between the quotes with escape sequences decoded.
+         */
+        public static String string(String token) {
+            var end = token.length() - 1;
+            var escape = token.indexOf('\\', 1);
+            if (escape < 0 || escape >= end) return token.substring(1, end);
+            var value = new StringBuilder(end - 1).append(token, 1, escape);
+            for (var i = escape; i < end; i++) {
+                var c = token.charAt(i);
+                if (c == '\\' && i + 1 < end) {
+                    c = switch (token.charAt(++i)) {
+                        case 'b' -> '\b';
+                        case 't' -> '\t';
+                        case 'n' -> '\n';
+                        case 'f' -> '\f';
+                        case 'r' -> '\r';
+                        default -> token.charAt(i);
+                    };
+                }
+                value.append(c);
+            }
+            return value.toString();
+        }
+    }
+
+    record Identifier(Pos pos, String name) implements Expr {
+    }
+
+    record Assign(Pos pos, String name, Expr value) implements Expr {
+    }
+
+    record IncrDecr(Pos pos, Operator op, String name) implements Expr {
+    }
+
+    record Unary(Pos pos, Operator op, Expr operand) implements Expr {
+    }
+
+    record Binary(Pos pos, Operator op, Expr left, Expr right) implements Expr {
+    }
+
+    record MemberAccess(Pos pos, Expr object, Pos memberPos, String member) implements Expr {
+    }
+
+    record MemberAssign(Pos pos, Expr object, Pos memberPos, String member, Expr value) implements Expr {
+    }
+
+    record IndexAccess(Pos pos, Expr object, Expr index) implements Expr {
+    }
+
+    record IndexAssign(Pos pos, Expr object, Expr index, Expr value) implements Expr {
+    }
+
+    record Call(Pos pos, String name, List<Expr> args) implements Expr {
+    }
+
+    record ArrayInit(Pos pos, List<Expr> elements) implements Expr {
+    }
+
+    record ArrayDef(Pos pos, Expr size) implements Expr {
+    }
+
+    record StructInit(Pos pos, List<String> keys, List<Expr> values) implements Expr {
+    }
+
+    /**
+     * Whether the global name still refers to the function of the same name in the standard library;
+     * emitted by the optimizer only, to guard code assuming it.
+     */
+    record Native(Pos pos, String name) implements Expr {
+    }
+}
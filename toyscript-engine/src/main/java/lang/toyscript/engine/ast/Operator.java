@@ -0,0 +1,32 @@
+package lang.toyscript.engine.ast;
+
+public enum Operator {
+
+    ADD("+"),
+    SUBTRACT("-"),
+    MULTIPLY("*"),
+    DIVIDE("/"),
+    MODULO("%"),
+    LESS("<"),
+    LESS_EQUAL("<="),
+    GREATER(">"),
+    GREATER_EQUAL(">="),
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    AND("&&"),
+    OR("||"),
+    NOT("!"),
+    NEGATE("-"),
+    INCREMENT("++"),
+    DECREMENT("--");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+}
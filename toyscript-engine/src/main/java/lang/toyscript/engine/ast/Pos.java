@@ -0,0 +1,24 @@
+package lang.toyscript.engine.ast;
+
+/**
+ * Source position. Executable nodes keep it {@link #packed()} into a long: line in the upper and column
+ * in the lower 32 bits, so any position is restored exactly.
+ */
+public record Pos(int line, int column) {
+
+    public static Pos unpack(long packed) {
+        return new Pos(line(packed), column(packed));
+    }
+
+    public static int line(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int column(long packed) {
+        return (int) packed;
+    }
+
+    public long packed() {
+        return (long) line << 32 | column & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,6 @@
+package lang.toyscript.engine.ast;
+
+import java.util.List;
+
+public record Program(List<Stmt> body) {
+}
@@ -0,0 +1,50 @@
+package lang.toyscript.engine.ast;
+
+import java.util.List;
+
+public sealed interface Stmt {
+
+    Pos pos();
+
+    record VarDecl(Pos pos, String name, Expr init) implements Stmt {
+    }
+
+    /**
+     * @param memo whether results are cached by argument values, declared with the {@code memo} modifier.
+     */
+    record FunctionDecl(Pos pos, String name, List<String> params, List<Stmt> body, boolean memo) implements Stmt {
+    }
+
+    record If(Pos pos, Expr condition, Stmt then, Stmt otherwise) implements Stmt {
+    }
+
+    record While(Pos pos, Expr condition, Stmt body) implements Stmt {
+    }
+
+    record Try(Pos pos, Block body, Pos errorPos, String errorName, List<Stmt> handler) implements Stmt {
+    }
+
+    record Throw(Pos pos, Expr value) implements Stmt {
+    }
+
+    record Return(Pos pos, Expr value) implements Stmt {
+    }
+
+    record Exit(Pos pos, Expr value) implements Stmt {
+    }
+
+    record Break(Pos pos) implements Stmt {
+    }
+
+    record Continue(Pos pos) implements Stmt {
+    }
+
+    record Expression(Pos pos, Expr expr) implements Stmt {
+    }
+
+    record Block(Pos pos, List<Stmt> body) implements Stmt {
+    }
+
+    record Empty(Pos pos) implements Stmt {
+    }
+}
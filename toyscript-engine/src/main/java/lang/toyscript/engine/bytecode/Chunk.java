@@ -0,0 +1,26 @@
+package lang.toyscript.engine.bytecode;
+
+/**
+ * Compiled body of a function or of the whole program: flat instruction stream and its constant pool.
+ * Constants are literal values, names, positions (for error reporting), struct keys and chunks of
+ * nested functions. Registers are slots of the {@link lang.toyscript.engine.registry.Frame} created
+ * per invocation; parameters take the first ones.
+ *
+ * @param loops loop table, consulted when {@code break} or {@code continue} is signalled by a function called
+ *              in a loop body: per loop, inner loops first, its body start and end, continue and break target
+ *              and the number of {@link Opcode#TRY} regions enclosing it.
+ */
+public record Chunk(String name, String[] params, int[] code, Object[] constants, int registerCount,
+                    int maxTryDepth, int[] loops) {
+
+    /**
+     * Number of ints per loop in {@link #loops()}.
+     */
+    public static final int LOOP_SIZE = 5;
+
+    public static final String PROGRAM = "<program>";
+
+    public String signature() {
+        return "function(" + String.join(", ", params) + ")";
+    }
+}
@@ -0,0 +1,43 @@
+package lang.toyscript.engine.bytecode;
+
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+/**
+ * Function value of the bytecode backend - a chunk bound to the frame it was declared in.
+ */
+public class Closure implements Function<Object[], Object> {
+
+    private final Chunk chunk;
+
+    private final Frame enclosingFrame;
+
+    Closure(Chunk chunk, Frame enclosingFrame) {
+        this.chunk = chunk;
+        this.enclosingFrame = enclosingFrame;
+    }
+
+    @Override
+    public Object apply(Object[] args) {
+        return VirtualMachine.run(chunk, frame(args, 0, args.length));
+    }
+
+    Chunk chunk() {
+        return chunk;
+    }
+
+    /**
+     * @return new frame of an invocation, with {@code count} arguments copied from {@code start} of given array.
+     */
+    Frame frame(Object[] args, int start, int count) {
+        var frame = enclosingFrame.createChild(chunk.registerCount());
+        System.arraycopy(args, start, frame.slots(), 0, Math.min(chunk.params().length, count));
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        return chunk.signature();
+    }
+}
@@ -0,0 +1,76 @@
+package lang.toyscript.engine.bytecode;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.node.LocalNode;
+
+import java.util.Arrays;
+
+import static lang.toyscript.engine.visitor.Types.ellipsize;
+
+/**
+ * Renders chunks in human-readable form, nested functions included. For example:
+ * <pre>
+ * function add(a, b) registers: 3, constants: 2
+ *    0  GET_LOCAL   r2, r0, #0          ; 1:13
+ *    4  ...
+ * </pre>
+ */
+public class Disassembler {
+
+    public static String disassemble(Chunk chunk) {
+        var out = new StringBuilder();
+        disassemble(chunk, out);
+        return out.toString();
+    }
+
+    private static void disassemble(Chunk chunk, StringBuilder out) {
+        out.append(Chunk.PROGRAM.equals(chunk.name()) ? chunk.name() :
+                        "function " + chunk.name() + "(" + String.join(", ", chunk.params()) + ")")
+                .append(" registers: ").append(chunk.registerCount())
+                .append(", constants: ").append(chunk.constants().length)
+                .append('\n');
+        var code = chunk.code();
+        for (var pc = 0; pc < code.length; pc += Opcode.length(code[pc])) {
+            out.append(instruction(chunk, pc)).append('\n');
+        }
+        for (var constant : chunk.constants()) {
+            if (constant instanceof Chunk nested) {
+                out.append('\n');
+                disassemble(nested, out);
+            }
+        }
+    }
+
+    /**
+     * @return single line describing instruction at given offset.
+     */
+    public static String instruction(Chunk chunk, int pc) {
+        var code = chunk.code();
+        var operands = Opcode.operands(code[pc]);
+        var args = new StringBuilder();
+        var comments = new StringBuilder();
+        for (var i = 0; i < operands.length(); i++) {
+            var value = code[pc + 1 + i];
+            if (i > 0) args.append(", ");
+            switch (operands.charAt(i)) {
+                case 'r' -> args.append('r').append(value);
+                case 'j' -> args.append('@').append(value);
+                case 'k' -> {
+                    args.append('#').append(value);
+                    comments.append(comments.isEmpty() ? "; " : ", ").append(constant(chunk.constants()[value]));
+                }
+                default -> args.append(value);
+            }
+        }
+        return String.format("%5d  %-14s %-22s %s", pc, Opcode.name(code[pc]), args, comments).stripTrailing();
+    }
+
+    private static String constant(Object value) {
+        if (value instanceof Pos pos) return pos.line() + ":" + pos.column();
+        if (value instanceof String str) return '"' + ellipsize(str) + '"';
+        if (value instanceof String[] keys) return Arrays.toString(keys);
+        if (value instanceof LocalNode.Undeclared[] later) return Arrays.toString(later);
+        if (value instanceof Chunk nested) return "function " + nested.name();
+        return ellipsize(value);
+    }
+}
@@ -0,0 +1,109 @@
+package lang.toyscript.engine.bytecode;
+
+/**
+ * Instruction set of the register machine. Every instruction is an opcode followed by fixed number of operands,
+ * described by {@link #operands(int)}: {@code r} register, {@code k} constant pool index,
+ * {@code j} jump target, {@code n} plain number.
+ */
+public interface Opcode {
+
+    int CONST = 0;
+    int NULL = 1;
+    int MOVE = 2;
+    int GET_LOCAL = 3;
+    int CHECK = 4;
+    int GET_UPVAL = 5;
+    int SET_UPVAL = 6;
+    int GET_GLOBAL = 7;
+    int SCOPE = 8;
+    int SET_SCOPED = 9;
+    int DECLARE_GLOBAL = 10;
+    int INCR = 11;
+    int ADD = 12;
+    int SUB = 13;
+    int MUL = 14;
+    int DIV = 15;
+    int MOD = 16;
+    int LT = 17;
+    int LE = 18;
+    int GT = 19;
+    int GE = 20;
+    int EQ = 21;
+    int NE = 22;
+    int AND = 23;
+    int OR = 24;
+    int NEG = 25;
+    int NOT = 26;
+    int JUMP = 27;
+    int JUMP_FALSE = 28;
+    int NEW_ARRAY = 29;
+    int DEF_ARRAY = 30;
+    int NEW_STRUCT = 31;
+    int GET_INDEX = 32;
+    int SET_INDEX = 33;
+    int GET_MEMBER = 34;
+    int SET_MEMBER = 35;
+    int CALL = 36;
+    int CLOSURE = 37;
+    int RETURN = 38;
+    int SIGNAL = 39;
+    int TRY = 40;
+    int END_TRY = 41;
+    int GET_SCOPED = 42;
+    /**
+     * Operands as {@link #CALL}; a closure replaces the current activation, any other callee is called
+     * as by {@link #CALL}. Emitted for calls in tail position outside of {@code try}, followed by {@link #RETURN}.
+     */
+    int TAIL_CALL = 43;
+    /**
+     * Wraps the closure in the register in a {@link lang.toyscript.engine.lib.MemoizedFunction}.
+     */
+    int MEMO = 44;
+    /**
+     * Whether the global name in the constant refers to the standard library function of that name.
+     */
+    int NATIVE = 45;
+    /**
+     * Copies the {@link lang.toyscript.engine.node.LocalNode.Undeclared} values in the constant to the registers
+     * from the given one on: the slots of names declared after a function in its block.
+     */
+    int UNDECLARE = 46;
+
+    /**
+     * Kinds of {@link #SIGNAL}.
+     */
+    int SIGNAL_RETURN = 0;
+    int SIGNAL_EXIT = 1;
+    int SIGNAL_THROW = 2;
+    int SIGNAL_BREAK = 3;
+    int SIGNAL_CONTINUE = 4;
+
+    String[] NAMES = {
+            "CONST", "NULL", "MOVE", "GET_LOCAL", "CHECK", "GET_UPVAL", "SET_UPVAL", "GET_GLOBAL", "SCOPE",
+            "SET_SCOPED", "DECLARE_GLOBAL", "INCR", "ADD", "SUB", "MUL", "DIV", "MOD", "LT", "LE", "GT", "GE",
+            "EQ", "NE", "AND", "OR", "NEG", "NOT", "JUMP", "JUMP_FALSE", "NEW_ARRAY", "DEF_ARRAY", "NEW_STRUCT",
+            "GET_INDEX", "SET_INDEX", "GET_MEMBER", "SET_MEMBER", "CALL", "CLOSURE", "RETURN", "SIGNAL",
+            "TRY", "END_TRY", "GET_SCOPED", "TAIL_CALL", "MEMO", "NATIVE", "UNDECLARE"};
+
+    String[] OPERANDS = {
+            "rk", "r", "rr", "rrk", "rk", "rnnk", "nnr", "rkk", "rkk",
+            "rkr", "kkr", "rrn", "rrr", "rrr", "rrr", "rrr", "rrr", "rrr", "rrr", "rrr", "rrr",
+            "rrr", "rrr", "rrr", "rrr", "rr", "rr", "j", "rj", "rrn", "rrk", "rkrn",
+            "rrrkk", "rrrrkk", "rrkkkk", "rrkrkkk", "rrrnk", "rk", "r", "nrk",
+            "jn", "", "rrk", "rrrnk", "r", "rk", "rk"};
+
+    static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    static String operands(int opcode) {
+        return OPERANDS[opcode];
+    }
+
+    /**
+     * @return number of ints taken by the instruction, including the opcode.
+     */
+    static int length(int opcode) {
+        return 1 + OPERANDS[opcode].length();
+    }
+}
@@ -0,0 +1,432 @@
+package lang.toyscript.engine.bytecode;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.lib.MemoizedFunction;
+import lang.toyscript.engine.node.ArrayNode;
+import lang.toyscript.engine.node.CallNode;
+import lang.toyscript.engine.node.GlobalNode;
+import lang.toyscript.engine.node.LocalNode;
+import lang.toyscript.engine.node.StructNode;
+import lang.toyscript.engine.registry.CallStack;
+import lang.toyscript.engine.registry.Frame;
+import lang.toyscript.engine.registry.Scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import static lang.toyscript.engine.bytecode.Opcode.ADD;
+import static lang.toyscript.engine.bytecode.Opcode.AND;
+import static lang.toyscript.engine.bytecode.Opcode.CALL;
+import static lang.toyscript.engine.bytecode.Opcode.CHECK;
+import static lang.toyscript.engine.bytecode.Opcode.CLOSURE;
+import static lang.toyscript.engine.bytecode.Opcode.CONST;
+import static lang.toyscript.engine.bytecode.Opcode.DECLARE_GLOBAL;
+import static lang.toyscript.engine.bytecode.Opcode.DEF_ARRAY;
+import static lang.toyscript.engine.bytecode.Opcode.DIV;
+import static lang.toyscript.engine.bytecode.Opcode.END_TRY;
+import static lang.toyscript.engine.bytecode.Opcode.EQ;
+import static lang.toyscript.engine.bytecode.Opcode.GE;
+import static lang.toyscript.engine.bytecode.Opcode.GET_GLOBAL;
+import static lang.toyscript.engine.bytecode.Opcode.GET_INDEX;
+import static lang.toyscript.engine.bytecode.Opcode.GET_LOCAL;
+import static lang.toyscript.engine.bytecode.Opcode.GET_SCOPED;
+import static lang.toyscript.engine.bytecode.Opcode.GET_MEMBER;
+import static lang.toyscript.engine.bytecode.Opcode.GET_UPVAL;
+import static lang.toyscript.engine.bytecode.Opcode.GT;
+import static lang.toyscript.engine.bytecode.Opcode.INCR;
+import static lang.toyscript.engine.bytecode.Opcode.JUMP;
+import static lang.toyscript.engine.bytecode.Opcode.JUMP_FALSE;
+import static lang.toyscript.engine.bytecode.Opcode.LE;
+import static lang.toyscript.engine.bytecode.Opcode.LT;
+import static lang.toyscript.engine.bytecode.Opcode.MEMO;
+import static lang.toyscript.engine.bytecode.Opcode.NATIVE;
+import static lang.toyscript.engine.bytecode.Opcode.MOD;
+import static lang.toyscript.engine.bytecode.Opcode.MOVE;
+import static lang.toyscript.engine.bytecode.Opcode.MUL;
+import static lang.toyscript.engine.bytecode.Opcode.NE;
+import static lang.toyscript.engine.bytecode.Opcode.NEG;
+import static lang.toyscript.engine.bytecode.Opcode.NEW_ARRAY;
+import static lang.toyscript.engine.bytecode.Opcode.NEW_STRUCT;
+import static lang.toyscript.engine.bytecode.Opcode.NOT;
+import static lang.toyscript.engine.bytecode.Opcode.NULL;
+import static lang.toyscript.engine.bytecode.Opcode.OR;
+import static lang.toyscript.engine.bytecode.Opcode.RETURN;
+import static lang.toyscript.engine.bytecode.Opcode.SCOPE;
+import static lang.toyscript.engine.bytecode.Opcode.SET_INDEX;
+import static lang.toyscript.engine.bytecode.Opcode.SET_MEMBER;
+import static lang.toyscript.engine.bytecode.Opcode.SET_SCOPED;
+import static lang.toyscript.engine.bytecode.Opcode.SET_UPVAL;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_BREAK;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_CONTINUE;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_EXIT;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_RETURN;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_THROW;
+import static lang.toyscript.engine.bytecode.Opcode.SUB;
+import static lang.toyscript.engine.bytecode.Opcode.TAIL_CALL;
+import static lang.toyscript.engine.bytecode.Opcode.TRY;
+import static lang.toyscript.engine.bytecode.Opcode.UNDECLARE;
+import static lang.toyscript.engine.visitor.Types.addExpr;
+import static lang.toyscript.engine.visitor.Types.boolCast;
+import static lang.toyscript.engine.visitor.Types.divideExpr;
+import static lang.toyscript.engine.visitor.Types.equalsExpr;
+import static lang.toyscript.engine.visitor.Types.greaterThenExpr;
+import static lang.toyscript.engine.visitor.Types.lessThenExpr;
+import static lang.toyscript.engine.visitor.Types.moduloExpr;
+import static lang.toyscript.engine.visitor.Types.multiplyExpr;
+import static lang.toyscript.engine.visitor.Types.numberCast;
+import static lang.toyscript.engine.visitor.Types.subtractExpr;
+import static lang.toyscript.engine.visitor.Types.unaryMinExpr;
+
+/**
+ * Executes {@link Chunk}s in a single dispatch loop. Operands of every instruction are registers of the current
+ * frame, so evaluating an expression needs no operand stack. Script exceptions raised inside an active
+ * {@link Opcode#TRY} region transfer control to its handler, and {@code break} or {@code continue} signalled
+ * by a function called in a loop body jumps to the target of that loop in the {@link Chunk#loops() loop table}.
+ * <p>
+ * Calls of {@link Closure}s do not recurse in Java: the caller is suspended as an {@link Activation} on
+ * a linked stack in the heap, limited by the {@link CallStack} depth, and {@link Opcode#TAIL_CALL} replaces
+ * the current activation. An error leaving an activation is reported at its call, as a Java call would do.
+ */
+public class VirtualMachine {
+
+    /**
+     * Suspended caller, resumed at the call instruction at {@code pc}.
+     *
+     * @param callPos position of the call which entered the activation, or {@code -1} if entered from Java.
+     */
+    private record Activation(Activation caller, Chunk chunk, Frame frame, int[] handlers, int handlerTop, int pc,
+                              long callPos) {
+    }
+
+    /**
+     * Runs the program chunk; {@code exit} terminates it with its payload as result.
+     */
+    public static Object execute(Chunk program, Frame frame) {
+        try {
+            return run(program, frame);
+        } catch (SignalException.Exit e) {
+            return e.payload();
+        }
+    }
+
+    static Object run(Chunk chunk, Frame frame) {
+        var calls = CallStack.current();
+        var code = chunk.code();
+        var k = chunk.constants();
+        var r = frame.slots();
+        var handlers = handlers(chunk);
+        var handlerTop = 0;
+        var pc = 0;
+        var callPos = -1L;
+        Activation caller = null;
+        while (true) {
+            try {
+                while (true) {
+                    switch (code[pc]) {
+                        case CONST -> {
+                            r[code[pc + 1]] = k[code[pc + 2]];
+                            pc += 3;
+                        }
+                        case NULL -> {
+                            r[code[pc + 1]] = null;
+                            pc += 2;
+                        }
+                        case MOVE -> {
+                            r[code[pc + 1]] = r[code[pc + 2]];
+                            pc += 3;
+                        }
+                        case GET_LOCAL -> {
+                            r[code[pc + 1]] = checked(r[code[pc + 2]], (Pos) k[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case CHECK -> {
+                            checked(r[code[pc + 1]], (Pos) k[code[pc + 2]]);
+                            pc += 3;
+                        }
+                        case GET_UPVAL -> {
+                            r[code[pc + 1]] = declared(frame.get(code[pc + 2], code[pc + 3]), (Pos) k[code[pc + 4]]);
+                            pc += 5;
+                        }
+                        case SET_UPVAL -> {
+                            frame.set(code[pc + 1], code[pc + 2], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case GET_GLOBAL -> {
+                            r[code[pc + 1]] = frame.globals().read((String) k[code[pc + 2]], packed(k[code[pc + 3]]));
+                            pc += 4;
+                        }
+                        case SCOPE -> {
+                            r[code[pc + 1]] = frame.globals().getDeclaringScope((String) k[code[pc + 2]],
+                                    packed(k[code[pc + 3]]));
+                            pc += 4;
+                        }
+                        case SET_SCOPED -> {
+                            ((Scope) r[code[pc + 1]]).set((String) k[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case GET_SCOPED -> {
+                            r[code[pc + 1]] = ((Scope) r[code[pc + 2]]).get((String) k[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case DECLARE_GLOBAL -> {
+                            frame.globals().declare((String) k[code[pc + 1]], packed(k[code[pc + 2]]),
+                                    r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case INCR -> {
+                            r[code[pc + 1]] = numberCast(r[code[pc + 2]]).intValue() + code[pc + 3];
+                            pc += 4;
+                        }
+                        case ADD -> {
+                            r[code[pc + 1]] = addExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case SUB -> {
+                            r[code[pc + 1]] = subtractExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case MUL -> {
+                            r[code[pc + 1]] = multiplyExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case DIV -> {
+                            r[code[pc + 1]] = divideExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case MOD -> {
+                            r[code[pc + 1]] = moduloExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case LT -> {
+                            r[code[pc + 1]] = lessThenExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case LE -> {
+                            r[code[pc + 1]] = !greaterThenExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case GT -> {
+                            r[code[pc + 1]] = greaterThenExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case GE -> {
+                            r[code[pc + 1]] = !lessThenExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case EQ -> {
+                            r[code[pc + 1]] = equalsExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case NE -> {
+                            r[code[pc + 1]] = !equalsExpr(r[code[pc + 2]], r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case AND -> {
+                            r[code[pc + 1]] = boolCast(r[code[pc + 2]]) && boolCast(r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case OR -> {
+                            r[code[pc + 1]] = boolCast(r[code[pc + 2]]) || boolCast(r[code[pc + 3]]);
+                            pc += 4;
+                        }
+                        case NEG -> {
+                            r[code[pc + 1]] = unaryMinExpr(r[code[pc + 2]]);
+                            pc += 3;
+                        }
+                        case NOT -> {
+                            r[code[pc + 1]] = !boolCast(r[code[pc + 2]]);
+                            pc += 3;
+                        }
+                        case JUMP -> pc = code[pc + 1];
+                        case JUMP_FALSE -> pc = boolCast(r[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                        case NEW_ARRAY -> {
+                            var start = code[pc + 2];
+                            r[code[pc + 1]] = new ArrayList<>(Arrays.asList(r).subList(start, start + code[pc + 3]));
+                            pc += 4;
+                        }
+                        case DEF_ARRAY -> {
+                            r[code[pc + 1]] = ArrayNode.create(r[code[pc + 2]], packed(k[code[pc + 3]]));
+                            pc += 4;
+                        }
+                        case NEW_STRUCT -> {
+                            var start = code[pc + 3];
+                            r[code[pc + 1]] = StructNode.create((String[]) k[code[pc + 2]],
+                                    Arrays.copyOfRange(r, start, start + code[pc + 4]));
+                            pc += 5;
+                        }
+                        case GET_INDEX -> {
+                            r[code[pc + 1]] = ArrayNode.get(r[code[pc + 2]], r[code[pc + 3]],
+                                    packed(k[code[pc + 4]]), packed(k[code[pc + 5]]));
+                            pc += 6;
+                        }
+                        case SET_INDEX -> {
+                            r[code[pc + 1]] = ArrayNode.set(r[code[pc + 2]], r[code[pc + 3]], r[code[pc + 4]],
+                                    packed(k[code[pc + 5]]), packed(k[code[pc + 6]]));
+                            pc += 7;
+                        }
+                        case GET_MEMBER -> {
+                            r[code[pc + 1]] = StructNode.get(r[code[pc + 2]], (String) k[code[pc + 3]],
+                                    packed(k[code[pc + 4]]), packed(k[code[pc + 5]]), packed(k[code[pc + 6]]));
+                            pc += 7;
+                        }
+                        case SET_MEMBER -> {
+                            r[code[pc + 1]] = StructNode.set(r[code[pc + 2]], (String) k[code[pc + 3]],
+                                    r[code[pc + 4]], packed(k[code[pc + 5]]), packed(k[code[pc + 6]]),
+                                    packed(k[code[pc + 7]]));
+                            pc += 8;
+                        }
+                        case CALL, TAIL_CALL -> {
+                            var start = code[pc + 3];
+                            var count = code[pc + 4];
+                            if (r[code[pc + 2]] instanceof Closure closure) {
+                                var pos = packed(k[code[pc + 5]]);
+                                if (code[pc] == CALL) {
+                                    calls.enter(pos);
+                                    caller = new Activation(caller, chunk, frame, handlers, handlerTop, pc, callPos);
+                                }
+                                frame = closure.frame(r, start, count);
+                                chunk = closure.chunk();
+                                code = chunk.code();
+                                k = chunk.constants();
+                                r = frame.slots();
+                                handlers = handlers(chunk);
+                                handlerTop = 0;
+                                pc = 0;
+                                callPos = pos;
+                            } else {
+                                var args = Arrays.copyOfRange(r, start, start + count);
+                                r[code[pc + 1]] = CallNode.call(r[code[pc + 2]], args, packed(k[code[pc + 5]]));
+                                pc += 6;
+                            }
+                        }
+                        case CLOSURE -> {
+                            r[code[pc + 1]] = new Closure((Chunk) k[code[pc + 2]], frame);
+                            pc += 3;
+                        }
+                        case MEMO -> {
+                            r[code[pc + 1]] = new MemoizedFunction((Closure) r[code[pc + 1]]);
+                            pc += 2;
+                        }
+                        case NATIVE -> {
+                            r[code[pc + 1]] = GlobalNode.isNative(frame, (String) k[code[pc + 2]]);
+                            pc += 3;
+                        }
+                        case UNDECLARE -> {
+                            var later = (Object[]) k[code[pc + 2]];
+                            System.arraycopy(later, 0, r, code[pc + 1], later.length);
+                            pc += 3;
+                        }
+                        case RETURN -> {
+                            var value = r[code[pc + 1]];
+                            if (caller == null) return value;
+                            calls.exit();
+                            chunk = caller.chunk();
+                            frame = caller.frame();
+                            code = chunk.code();
+                            k = chunk.constants();
+                            r = frame.slots();
+                            handlers = caller.handlers();
+                            handlerTop = caller.handlerTop();
+                            pc = caller.pc();
+                            callPos = caller.callPos();
+                            caller = caller.caller();
+                            r[code[pc + 1]] = value;
+                            pc += 6;
+                        }
+                        case SIGNAL -> throw signal(code[pc + 1], r[code[pc + 2]], (Pos) k[code[pc + 3]]);
+                        case TRY -> {
+                            handlers[handlerTop++] = code[pc + 1];
+                            handlers[handlerTop++] = code[pc + 2];
+                            pc += 3;
+                        }
+                        case END_TRY -> {
+                            handlerTop -= 2;
+                            pc += 1;
+                        }
+                        default -> throw new IllegalStateException("Unknown opcode " + code[pc] + " at " + pc);
+                    }
+                }
+            } catch (RuntimeException e) {
+                var error = e;
+                var loop = loop(chunk, pc, error);
+                while ((!(error instanceof SignalException.Throw) || handlerTop == 0) && loop < 0) {
+                    if (callPos >= 0) error = SignalException.wrap(Pos.unpack(callPos), error);
+                    if (caller == null) throw error;
+                    calls.exit();
+                    chunk = caller.chunk();
+                    frame = caller.frame();
+                    code = chunk.code();
+                    k = chunk.constants();
+                    r = frame.slots();
+                    handlers = caller.handlers();
+                    handlerTop = caller.handlerTop();
+                    pc = caller.pc();
+                    callPos = caller.callPos();
+                    caller = caller.caller();
+                    loop = loop(chunk, pc, error);
+                }
+                if (loop >= 0) {
+                    var loops = chunk.loops();
+                    pc = loops[loop + (error instanceof SignalException.Break ? 3 : 2)];
+                    handlerTop = loops[loop + 4] * 2;
+                    continue;
+                }
+                handlerTop -= 2;
+                var errorSlot = handlers[handlerTop + 1];
+                if (errorSlot >= 0) r[errorSlot] = ((SignalException.Throw) error).payload();
+                pc = handlers[handlerTop];
+            } catch (Error e) {
+                for (; caller != null; caller = caller.caller()) calls.exit();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return index in the loop table of the innermost loop whose body the break or continue raised at the pc
+     * ends, or -1 if there is none or the error is of other kind.
+     */
+    private static int loop(Chunk chunk, int pc, RuntimeException error) {
+        if (!(error instanceof SignalException.Break) && !(error instanceof SignalException.Continue)) return -1;
+        var loops = chunk.loops();
+        for (var i = 0; i < loops.length; i += Chunk.LOOP_SIZE) {
+            if (loops[i] <= pc && pc < loops[i + 1]) return i;
+        }
+        return -1;
+    }
+
+    private static int[] handlers(Chunk chunk) {
+        return chunk.maxTryDepth() > 0 ? new int[chunk.maxTryDepth() * 2] : null;
+    }
+
+    private static long packed(Object pos) {
+        return ((Pos) pos).packed();
+    }
+
+    private static Object declared(Object value, Pos pos) {
+        if (value instanceof LocalNode.Undeclared undeclared) throw undeclared.error(pos);
+        return value;
+    }
+
+    private static Object checked(Object value, Pos pos) {
+        declared(value, pos);
+        if (value instanceof Function<?, ?>) {
+            throw new SignalException.Throw(pos, "Function reference cannot be used in expression");
+        }
+        return value;
+    }
+
+    private static SignalException signal(int kind, Object payload, Pos pos) {
+        return switch (kind) {
+            case SIGNAL_RETURN -> new SignalException.Return(pos, payload);
+            case SIGNAL_EXIT -> new SignalException.Exit(pos, payload);
+            case SIGNAL_THROW -> new SignalException.Throw(pos, payload);
+            case SIGNAL_BREAK -> new SignalException.Break(pos);
+            case SIGNAL_CONTINUE -> new SignalException.Continue(pos);
+            default -> throw new IllegalStateException("Unknown signal " + kind);
+        };
+    }
+}
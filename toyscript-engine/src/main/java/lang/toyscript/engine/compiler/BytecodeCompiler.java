@@ -0,0 +1,601 @@
+package lang.toyscript.engine.compiler;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.bytecode.Chunk;
+import lang.toyscript.engine.node.LocalNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static lang.toyscript.engine.bytecode.Opcode.ADD;
+import static lang.toyscript.engine.bytecode.Opcode.AND;
+import static lang.toyscript.engine.bytecode.Opcode.CALL;
+import static lang.toyscript.engine.bytecode.Opcode.CHECK;
+import static lang.toyscript.engine.bytecode.Opcode.CLOSURE;
+import static lang.toyscript.engine.bytecode.Opcode.CONST;
+import static lang.toyscript.engine.bytecode.Opcode.DECLARE_GLOBAL;
+import static lang.toyscript.engine.bytecode.Opcode.DEF_ARRAY;
+import static lang.toyscript.engine.bytecode.Opcode.DIV;
+import static lang.toyscript.engine.bytecode.Opcode.END_TRY;
+import static lang.toyscript.engine.bytecode.Opcode.EQ;
+import static lang.toyscript.engine.bytecode.Opcode.GE;
+import static lang.toyscript.engine.bytecode.Opcode.GET_GLOBAL;
+import static lang.toyscript.engine.bytecode.Opcode.GET_INDEX;
+import static lang.toyscript.engine.bytecode.Opcode.GET_LOCAL;
+import static lang.toyscript.engine.bytecode.Opcode.GET_SCOPED;
+import static lang.toyscript.engine.bytecode.Opcode.GET_MEMBER;
+import static lang.toyscript.engine.bytecode.Opcode.GET_UPVAL;
+import static lang.toyscript.engine.bytecode.Opcode.GT;
+import static lang.toyscript.engine.bytecode.Opcode.INCR;
+import static lang.toyscript.engine.bytecode.Opcode.JUMP;
+import static lang.toyscript.engine.bytecode.Opcode.JUMP_FALSE;
+import static lang.toyscript.engine.bytecode.Opcode.LE;
+import static lang.toyscript.engine.bytecode.Opcode.LT;
+import static lang.toyscript.engine.bytecode.Opcode.MEMO;
+import static lang.toyscript.engine.bytecode.Opcode.NATIVE;
+import static lang.toyscript.engine.bytecode.Opcode.MOD;
+import static lang.toyscript.engine.bytecode.Opcode.MOVE;
+import static lang.toyscript.engine.bytecode.Opcode.MUL;
+import static lang.toyscript.engine.bytecode.Opcode.NE;
+import static lang.toyscript.engine.bytecode.Opcode.NEG;
+import static lang.toyscript.engine.bytecode.Opcode.NEW_ARRAY;
+import static lang.toyscript.engine.bytecode.Opcode.NEW_STRUCT;
+import static lang.toyscript.engine.bytecode.Opcode.NOT;
+import static lang.toyscript.engine.bytecode.Opcode.NULL;
+import static lang.toyscript.engine.bytecode.Opcode.OR;
+import static lang.toyscript.engine.bytecode.Opcode.RETURN;
+import static lang.toyscript.engine.bytecode.Opcode.SCOPE;
+import static lang.toyscript.engine.bytecode.Opcode.SET_INDEX;
+import static lang.toyscript.engine.bytecode.Opcode.SET_MEMBER;
+import static lang.toyscript.engine.bytecode.Opcode.SET_SCOPED;
+import static lang.toyscript.engine.bytecode.Opcode.SET_UPVAL;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL;
+import static lang.toyscript.engine.bytecode.Opcode.TAIL_CALL;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_BREAK;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_CONTINUE;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_EXIT;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_RETURN;
+import static lang.toyscript.engine.bytecode.Opcode.SIGNAL_THROW;
+import static lang.toyscript.engine.bytecode.Opcode.SUB;
+import static lang.toyscript.engine.bytecode.Opcode.TRY;
+import static lang.toyscript.engine.bytecode.Opcode.UNDECLARE;
+
+/**
+ * Compiles syntax tree into {@link Chunk}s of the register machine. Locals get frame slots exactly as in
+ * {@link NodeCompiler}; temporaries are allocated above them and released after each expression.
+ */
+public class BytecodeCompiler {
+
+    public static Chunk compile(Program program) {
+        return new BytecodeCompiler().compileProgram(program);
+    }
+
+    private LexicalScope scope;
+
+    private Assembler asm;
+
+    Chunk compileProgram(Program program) {
+        var body = program.body();
+        var returnsLast = !body.isEmpty() && body.get(body.size() - 1) instanceof Stmt.Expression;
+        var global = LexicalScope.global();
+        asm = new Assembler(Chunk.PROGRAM, new String[0]);
+        inScope(global, () -> {
+            var result = temp();
+            for (var i = 0; i < body.size(); i++) {
+                if (returnsLast && i == body.size() - 1) {
+                    expr(((Stmt.Expression) body.get(i)).expr(), result);
+                } else {
+                    statement(body.get(i));
+                }
+            }
+            asm.emit(RETURN, result);
+            return null;
+        });
+        return asm.build(global.layout().size());
+    }
+
+    private void statement(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression s) {
+            var mark = mark();
+            expr(s.expr(), temp());
+            release(mark);
+        } else if (stmt instanceof Stmt.VarDecl s) {
+            declare(s.pos(), s.name(), s.init());
+        } else if (stmt instanceof Stmt.Block s) {
+            inScope(scope.block(), () -> statements(s.body()));
+        } else if (stmt instanceof Stmt.If s) {
+            var otherwise = condition(s.condition());
+            statement(s.then());
+            if (s.otherwise() != null) {
+                var end = asm.jump(JUMP);
+                asm.patch(otherwise, asm.here());
+                statement(s.otherwise());
+                asm.patch(end, asm.here());
+            } else {
+                asm.patch(otherwise, asm.here());
+            }
+        } else if (stmt instanceof Stmt.While s) {
+            var loop = new Loop(asm.here(), asm.tryDepth);
+            loop.breaks.add(condition(s.condition()));
+            var body = asm.here();
+            asm.loops.push(loop);
+            statement(s.body());
+            asm.loops.pop();
+            var end = asm.here();
+            asm.emit(JUMP, loop.start);
+            for (var jump : loop.breaks) asm.patch(jump, asm.here());
+            asm.loopTable.addAll(List.of(body, end, loop.start, asm.here(), loop.tryDepth));
+        } else if (stmt instanceof Stmt.FunctionDecl s) {
+            function(s);
+        } else if (stmt instanceof Stmt.Try s) {
+            tryStatement(s);
+        } else if (stmt instanceof Stmt.Return s) {
+            if (Chunk.PROGRAM.equals(asm.name)) {
+                signal(SIGNAL_RETURN, s.pos(), s.value());
+            } else {
+                var mark = mark();
+                var value = temp();
+                if (s.value() instanceof Expr.Call call && asm.tryDepth == 0) call(call, value, TAIL_CALL);
+                else optional(s.value(), value);
+                asm.emit(RETURN, value);
+                release(mark);
+            }
+        } else if (stmt instanceof Stmt.Exit s) {
+            signal(SIGNAL_EXIT, s.pos(), s.value());
+        } else if (stmt instanceof Stmt.Throw s) {
+            signal(SIGNAL_THROW, s.pos(), s.value());
+        } else if (stmt instanceof Stmt.Break s) {
+            jump(s.pos(), SIGNAL_BREAK);
+        } else if (stmt instanceof Stmt.Continue s) {
+            jump(s.pos(), SIGNAL_CONTINUE);
+        } else if (!(stmt instanceof Stmt.Empty)) {
+            throw new IllegalArgumentException("Unsupported statement " + stmt);
+        }
+    }
+
+    private void expr(Expr expr, int dst) {
+        if (expr instanceof Expr.Literal e) {
+            if (e.value() == null) asm.emit(NULL, dst);
+            else asm.emit(CONST, dst, asm.constant(e.value()));
+        } else if (expr instanceof Expr.Identifier e) {
+            identifier(e, dst);
+        } else if (expr instanceof Expr.Binary e) {
+            binary(e, dst);
+        } else if (expr instanceof Expr.Assign e) {
+            assign(e, dst);
+        } else if (expr instanceof Expr.Call e) {
+            call(e, dst, CALL);
+        } else if (expr instanceof Expr.IncrDecr e) {
+            incrDecr(e, dst);
+        } else if (expr instanceof Expr.Unary e) {
+            expr(e.operand(), dst);
+            asm.emit(switch (e.op()) {
+                case NEGATE -> NEG;
+                case NOT -> NOT;
+                default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+            }, dst, dst);
+        } else if (expr instanceof Expr.IndexAccess e) {
+            expr(e.object(), dst);
+            var mark = mark();
+            var index = temp();
+            expr(e.index(), index);
+            asm.emit(GET_INDEX, dst, dst, index, asm.constant(e.pos()), asm.constant(e.object().pos()));
+            release(mark);
+        } else if (expr instanceof Expr.IndexAssign e) {
+            expr(e.object(), dst);
+            var mark = mark();
+            var index = temp();
+            var value = temp();
+            expr(e.index(), index);
+            expr(e.value(), value);
+            asm.emit(SET_INDEX, dst, dst, index, value, asm.constant(e.pos()), asm.constant(e.object().pos()));
+            release(mark);
+        } else if (expr instanceof Expr.MemberAccess e) {
+            expr(e.object(), dst);
+            asm.emit(GET_MEMBER, dst, dst, asm.constant(e.member()), asm.constant(e.memberPos()),
+                    asm.constant(e.pos()), asm.constant(e.object().pos()));
+        } else if (expr instanceof Expr.MemberAssign e) {
+            expr(e.object(), dst);
+            var mark = mark();
+            var value = temp();
+            expr(e.value(), value);
+            asm.emit(SET_MEMBER, dst, dst, asm.constant(e.member()), value, asm.constant(e.memberPos()),
+                    asm.constant(e.pos()), asm.constant(e.object().pos()));
+            release(mark);
+        } else if (expr instanceof Expr.ArrayInit e) {
+            var mark = mark();
+            var start = expressions(e.elements());
+            asm.emit(NEW_ARRAY, dst, start, e.elements().size());
+            release(mark);
+        } else if (expr instanceof Expr.ArrayDef e) {
+            expr(e.size(), dst);
+            asm.emit(DEF_ARRAY, dst, dst, asm.constant(e.pos()));
+        } else if (expr instanceof Expr.StructInit e) {
+            var mark = mark();
+            var start = expressions(e.values());
+            asm.emit(NEW_STRUCT, dst, asm.constant(e.keys().toArray(String[]::new)), start, e.values().size());
+            release(mark);
+        } else if (expr instanceof Expr.Native e) {
+            asm.emit(NATIVE, dst, asm.constant(e.name()));
+        } else {
+            throw new IllegalArgumentException("Unsupported expression " + expr);
+        }
+    }
+
+    private void declare(Pos pos, String name, Expr init) {
+        var mark = mark();
+        var value = temp();
+        optional(init, value);
+        if (scope.isGlobal()) {
+            asm.emit(DECLARE_GLOBAL, asm.constant(name), asm.constant(pos), value);
+        } else if (scope.isDeclared(name)) {
+            redeclared(pos, name);
+        }
+        release(mark);
+        if (!scope.isGlobal() && !scope.isDeclared(name)) {
+            var slot = scope.declare(name);
+            if (slot != value) asm.emit(MOVE, slot, value);
+        }
+    }
+
+    private void function(Stmt.FunctionDecl decl) {
+        var index = asm.reserve();
+        var declaringAsm = asm;
+        var declaringScope = scope;
+        scope.defer(() -> {
+            var functionScope = declaringScope.function();
+            var outer = asm;
+            asm = new Assembler(decl.name(), decl.params().toArray(String[]::new));
+            inScope(functionScope, () -> {
+                var redeclared = new ArrayList<String>();
+                for (var param : decl.params()) {
+                    if (functionScope.isDeclared(param)) redeclared.add(param);
+                    functionScope.declare(param);
+                }
+                for (var param : redeclared) redeclared(decl.pos(), param);
+                statements(decl.body());
+                var result = temp();
+                asm.emit(NULL, result);
+                asm.emit(RETURN, result);
+                return null;
+            });
+            declaringAsm.constants.set(index, asm.build(functionScope.layout().size()));
+            asm = outer;
+        });
+        if (scope.isGlobal() || scope.isDeclared(decl.name())) {
+            var mark = mark();
+            var value = temp();
+            asm.emit(CLOSURE, value, index);
+            if (decl.memo()) asm.emit(MEMO, value);
+            if (scope.isGlobal()) {
+                asm.emit(DECLARE_GLOBAL, asm.constant(decl.name()), asm.constant(decl.pos()), value);
+            } else {
+                redeclared(decl.pos(), decl.name());
+            }
+            release(mark);
+        } else {
+            var slot = scope.declare(decl.name());
+            asm.emit(CLOSURE, slot, index);
+            if (decl.memo()) asm.emit(MEMO, slot);
+            var later = asm.reserve();
+            asm.emit(UNDECLARE, slot + 1, later);
+            scope.defer(() -> declaringAsm.constants.set(later,
+                    LocalNode.Undeclared.of(declaringScope.declaredAfter(slot))));
+        }
+    }
+
+    private void tryStatement(Stmt.Try stmt) {
+        var enter = asm.here();
+        asm.emit(TRY, -1, -1);
+        asm.tryDepth++;
+        asm.maxTryDepth = Math.max(asm.maxTryDepth, asm.tryDepth);
+        statement(stmt.body());
+        asm.tryDepth--;
+        asm.emit(END_TRY);
+        var end = asm.jump(JUMP);
+        asm.patch(enter + 1, asm.here());
+        var handlerScope = scope.block();
+        var errorSlot = stmt.errorName() != null ? handlerScope.declare(stmt.errorName()) : -1;
+        asm.patch(enter + 2, errorSlot);
+        inScope(handlerScope, () -> statements(stmt.handler()));
+        asm.patch(end, asm.here());
+    }
+
+    /**
+     * Break or continue - jump within the function, or a signal if there is no enclosing loop.
+     */
+    private void jump(Pos pos, int signal) {
+        var loop = asm.loops.peek();
+        if (loop == null) {
+            signal(signal, pos, null);
+            return;
+        }
+        for (var i = loop.tryDepth; i < asm.tryDepth; i++) asm.emit(END_TRY);
+        if (signal == SIGNAL_BREAK) loop.breaks.add(asm.jump(JUMP));
+        else asm.emit(JUMP, loop.start);
+    }
+
+    private void signal(int signal, Pos pos, Expr payload) {
+        var mark = mark();
+        var value = temp();
+        optional(payload, value);
+        asm.emit(SIGNAL, signal, value, asm.constant(pos));
+        release(mark);
+    }
+
+    private void redeclared(Pos pos, String name) {
+        var mark = mark();
+        var message = temp();
+        asm.emit(CONST, message, asm.constant("Identifier " + name + " already declared in current scope"));
+        asm.emit(SIGNAL, SIGNAL_THROW, message, asm.constant(pos));
+        release(mark);
+    }
+
+    /**
+     * @return position of the jump target to patch when the condition is false.
+     */
+    private int condition(Expr condition) {
+        var mark = mark();
+        var value = temp();
+        expr(condition, value);
+        var jump = asm.jump(JUMP_FALSE, value);
+        release(mark);
+        return jump;
+    }
+
+    private void identifier(Expr.Identifier e, int dst) {
+        var pos = asm.constant(e.pos());
+        var address = scope.resolve(e.name());
+        if (address == null) {
+            asm.emit(GET_GLOBAL, dst, asm.constant(e.name()), pos);
+            asm.emit(CHECK, dst, pos);
+        } else if (address.depth() == 0) {
+            asm.emit(GET_LOCAL, dst, address.slot(), pos);
+        } else {
+            asm.emit(GET_UPVAL, dst, address.depth(), address.slot(), pos);
+            asm.emit(CHECK, dst, pos);
+        }
+    }
+
+    private void assign(Expr.Assign e, int dst) {
+        var address = scope.resolve(e.name());
+        if (address == null) {
+            var mark = mark();
+            var declaringScope = temp();
+            var name = asm.constant(e.name());
+            asm.emit(SCOPE, declaringScope, name, asm.constant(e.pos()));
+            expr(e.value(), dst);
+            asm.emit(SET_SCOPED, declaringScope, name, dst);
+            release(mark);
+        } else if (address.depth() == 0) {
+            expr(e.value(), dst);
+            asm.emit(MOVE, address.slot(), dst);
+        } else {
+            expr(e.value(), dst);
+            asm.emit(SET_UPVAL, address.depth(), address.slot(), dst);
+        }
+    }
+
+    private void incrDecr(Expr.IncrDecr e, int dst) {
+        var delta = switch (e.op()) {
+            case INCREMENT -> 1;
+            case DECREMENT -> -1;
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+        var address = scope.resolve(e.name());
+        if (address != null && address.depth() == 0) {
+            asm.emit(MOVE, dst, address.slot());
+            asm.emit(INCR, address.slot(), address.slot(), delta);
+            return;
+        }
+        var mark = mark();
+        var value = temp();
+        if (address != null) {
+            asm.emit(GET_UPVAL, dst, address.depth(), address.slot(), asm.constant(e.pos()));
+            asm.emit(INCR, value, dst, delta);
+            asm.emit(SET_UPVAL, address.depth(), address.slot(), value);
+        } else {
+            var declaringScope = temp();
+            var name = asm.constant(e.name());
+            var pos = asm.constant(e.pos());
+            asm.emit(SCOPE, declaringScope, name, asm.constant(e.pos()));
+            asm.emit(GET_SCOPED, dst, declaringScope, name);
+            asm.emit(INCR, value, dst, delta);
+            asm.emit(SET_SCOPED, declaringScope, name, value);
+        }
+        release(mark);
+    }
+
+    private void call(Expr.Call e, int dst, int opcode) {
+        var mark = mark();
+        var start = expressions(e.args());
+        var callee = temp();
+        var address = scope.resolve(e.name());
+        if (address == null) {
+            asm.emit(GET_GLOBAL, callee, asm.constant(e.name()), asm.constant(e.pos()));
+        } else if (address.depth() == 0) {
+            asm.emit(MOVE, callee, address.slot());
+        } else {
+            asm.emit(GET_UPVAL, callee, address.depth(), address.slot(), asm.constant(e.pos()));
+        }
+        asm.emit(opcode, dst, callee, start, e.args().size(), asm.constant(e.pos()));
+        release(mark);
+    }
+
+    private void binary(Expr.Binary e, int dst) {
+        var opcode = switch (e.op()) {
+            case ADD -> ADD;
+            case SUBTRACT -> SUB;
+            case MULTIPLY -> MUL;
+            case DIVIDE -> DIV;
+            case MODULO -> MOD;
+            case LESS -> LT;
+            case LESS_EQUAL -> LE;
+            case GREATER -> GT;
+            case GREATER_EQUAL -> GE;
+            case EQUAL -> EQ;
+            case NOT_EQUAL -> NE;
+            case AND -> AND;
+            case OR -> OR;
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+        expr(e.left(), dst);
+        var mark = mark();
+        var right = temp();
+        expr(e.right(), right);
+        asm.emit(opcode, dst, dst, right);
+        release(mark);
+    }
+
+    private void optional(Expr expr, int dst) {
+        if (expr != null) expr(expr, dst);
+        else asm.emit(NULL, dst);
+    }
+
+    private Void statements(List<Stmt> statements) {
+        scope.reserve(statements);
+        for (var statement : statements) statement(statement);
+        return null;
+    }
+
+    /**
+     * Evaluates expressions into consecutive temporaries.
+     *
+     * @return first of the registers.
+     */
+    private int expressions(List<Expr> expressions) {
+        var start = mark();
+        for (var i = 0; i < expressions.size(); i++) temp();
+        for (var i = 0; i < expressions.size(); i++) expr(expressions.get(i), start + i);
+        return start;
+    }
+
+    private int temp() {
+        return scope.layout().allocate();
+    }
+
+    private int mark() {
+        return scope.layout().mark();
+    }
+
+    private void release(int mark) {
+        scope.layout().release(mark);
+    }
+
+    private <T> T inScope(LexicalScope inner, Supplier<T> compilation) {
+        var outer = scope;
+        scope = inner;
+        try {
+            return compilation.get();
+        } finally {
+            inner.close();
+            scope = outer;
+        }
+    }
+
+    private static class Loop {
+
+        private final int start;
+
+        private final int tryDepth;
+
+        private final List<Integer> breaks = new ArrayList<>();
+
+        Loop(int start, int tryDepth) {
+            this.start = start;
+            this.tryDepth = tryDepth;
+        }
+    }
+
+    /**
+     * Code and constants of the chunk being compiled.
+     */
+    private static class Assembler {
+
+        private final String name;
+
+        private final String[] params;
+
+        private final List<Object> constants = new ArrayList<>();
+
+        private final Map<Object, Integer> constantIndex = new HashMap<>();
+
+        private final Deque<Loop> loops = new ArrayDeque<>();
+
+        /**
+         * See {@link Chunk#loops()}.
+         */
+        private final List<Integer> loopTable = new ArrayList<>();
+
+        private int[] code = new int[64];
+
+        private int size;
+
+        private int tryDepth;
+
+        private int maxTryDepth;
+
+        Assembler(String name, String[] params) {
+            this.name = name;
+            this.params = params;
+        }
+
+        void emit(int... words) {
+            if (size + words.length > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2,
+                    size + words.length));
+            System.arraycopy(words, 0, code, size, words.length);
+            size += words.length;
+        }
+
+        /**
+         * Emits jump with yet unknown target (its last operand).
+         *
+         * @return position to {@link #patch}.
+         */
+        int jump(int opcode, int... operands) {
+            var words = Arrays.copyOf(new int[]{opcode}, operands.length + 2);
+            System.arraycopy(operands, 0, words, 1, operands.length);
+            emit(words);
+            return size - 1;
+        }
+
+        void patch(int position, int value) {
+            code[position] = value;
+        }
+
+        int here() {
+            return size;
+        }
+
+        int constant(Object value) {
+            if (value instanceof String[]) return reserve(value);
+            return constantIndex.computeIfAbsent(value, this::reserve);
+        }
+
+        /**
+         * @return index of a new constant pool entry, to be set once the nested chunk is compiled.
+         */
+        int reserve() {
+            return reserve(null);
+        }
+
+        private int reserve(Object value) {
+            constants.add(value);
+            return constants.size() - 1;
+        }
+
+        Chunk build(int registerCount) {
+            return new Chunk(name, params, Arrays.copyOf(code, size), constants.toArray(), registerCount,
+                    maxTryDepth, loopTable.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+}
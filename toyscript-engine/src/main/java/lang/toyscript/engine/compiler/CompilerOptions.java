@@ -0,0 +1,33 @@
+package lang.toyscript.engine.compiler;
+
+/**
+ * @param backend  how script functions are executed.
+ * @param optimize whether syntax tree is rewritten by {@link Optimizer} before compilation.
+ */
+public record CompilerOptions(Backend backend, boolean optimize) {
+
+    public static final CompilerOptions DEFAULT = new CompilerOptions(Backend.INTERPRETER);
+
+    public CompilerOptions(Backend backend) {
+        this(backend, false);
+    }
+
+    public enum Backend {
+        /**
+         * Node tree interpreter only.
+         */
+        INTERPRETER,
+        /**
+         * Every function translated to bytecode when compiled.
+         */
+        JVM,
+        /**
+         * Functions start interpreted and are translated once hot, specialized on observed argument types.
+         */
+        TIERED,
+        /**
+         * Whole program compiled for the register machine instead of the node tree.
+         */
+        BYTECODE
+    }
+}
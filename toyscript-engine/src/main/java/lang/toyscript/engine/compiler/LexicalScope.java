@@ -0,0 +1,191 @@
+package lang.toyscript.engine.compiler;
+
+import lang.toyscript.engine.ast.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compile time counterpart of a block. Assigns frame slots to declared names and resolves
+ * identifiers to their {@link Address}. The top level scope is global - names declared there
+ * are kept in script context bindings and resolve to {@code null}.
+ */
+class LexicalScope {
+
+    record Address(int depth, int slot) {
+    }
+
+    /**
+     * Slot allocation of a single runtime frame, shared by all blocks of a function (or the program).
+     * Slots of a closed block are reused by its siblings.
+     */
+    static class Layout {
+
+        private int next;
+
+        private int size;
+
+        int allocate() {
+            var slot = next++;
+            size = Math.max(size, next);
+            return slot;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return first free slot, to be passed to {@link #release} when temporaries allocated since are dead.
+         */
+        int mark() {
+            return next;
+        }
+
+        void release(int mark) {
+            next = mark;
+        }
+    }
+
+    static LexicalScope global() {
+        return new LexicalScope(null, new Layout(), true);
+    }
+
+    private final LexicalScope parent;
+
+    private final Layout layout;
+
+    private final boolean global;
+
+    private final int firstSlot;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private final Map<String, Integer> reserved = new HashMap<>();
+
+    private final List<Runnable> deferred = new ArrayList<>();
+
+    private LexicalScope(LexicalScope parent, Layout layout, boolean global) {
+        this.parent = parent;
+        this.layout = layout;
+        this.global = global;
+        this.firstSlot = layout.next;
+    }
+
+    LexicalScope block() {
+        return new LexicalScope(this, layout, false);
+    }
+
+    LexicalScope function() {
+        return new LexicalScope(this, new Layout(), false);
+    }
+
+    boolean isGlobal() {
+        return global;
+    }
+
+    Layout layout() {
+        return layout;
+    }
+
+    boolean isDeclared(String name) {
+        return slots.containsKey(name);
+    }
+
+    /**
+     * @return slot assigned to the name; must not be called on global scope.
+     */
+    int declare(String name) {
+        var slot = reserved.remove(name);
+        if (slot == null) slot = layout.allocate();
+        slots.put(name, slot);
+        return slot;
+    }
+
+    /**
+     * Declares the name in a slot already allocated from the layout of this scope.
+     */
+    void declare(String name, int slot) {
+        slots.put(name, slot);
+    }
+
+    /**
+     * Allocates slots to the names the statements of this block declare, when they declare a function:
+     * it may read the names declared after it before their declaration, so no temporary may take their slots.
+     */
+    void reserve(List<Stmt> body) {
+        if (global) return;
+        var names = new LinkedHashSet<String>();
+        var functions = false;
+        for (var stmt : body) functions |= declarations(stmt, names);
+        if (!functions) return;
+        for (var name : names) {
+            if (!slots.containsKey(name) && !reserved.containsKey(name)) reserved.put(name, layout.allocate());
+        }
+    }
+
+    /**
+     * Collects names declared by the statement in the block it is in.
+     *
+     * @return whether a function is among them.
+     */
+    private static boolean declarations(Stmt stmt, Set<String> names) {
+        if (stmt instanceof Stmt.VarDecl s) {
+            names.add(s.name());
+        } else if (stmt instanceof Stmt.FunctionDecl s) {
+            names.add(s.name());
+            return true;
+        } else if (stmt instanceof Stmt.If s) {
+            var functions = declarations(s.then(), names);
+            return s.otherwise() != null ? declarations(s.otherwise(), names) || functions : functions;
+        } else if (stmt instanceof Stmt.While s) {
+            return declarations(s.body(), names);
+        }
+        return false;
+    }
+
+    /**
+     * @return names declared in this block after the slot, each at its slot less {@code slot + 1}, to be found
+     * undeclared by a function declared in the slot; valid once all declarations of the block are known.
+     */
+    String[] declaredAfter(int slot) {
+        var size = 0;
+        for (var declared : slots.values()) size = Math.max(size, declared - slot);
+        var names = new String[size];
+        slots.forEach((name, declared) -> {
+            if (declared > slot) names[declared - slot - 1] = name;
+        });
+        return names;
+    }
+
+    /**
+     * @return frame address of the name or {@code null} if it is not a local.
+     */
+    Address resolve(String name) {
+        var depth = 0;
+        for (var scope = this; scope != null && !scope.global; scope = scope.parent) {
+            var slot = scope.slots.get(name);
+            if (slot != null) return new Address(depth, slot);
+            if (scope.parent != null && scope.parent.layout != scope.layout) depth++;
+        }
+        return null;
+    }
+
+    /**
+     * Schedules work (compiling function bodies) to run once all declarations of this block are known.
+     */
+    void defer(Runnable task) {
+        deferred.add(task);
+    }
+
+    void close() {
+        for (var i = 0; i < deferred.size(); i++) {
+            deferred.get(i).run();
+        }
+        layout.next = firstSlot;
+    }
+}
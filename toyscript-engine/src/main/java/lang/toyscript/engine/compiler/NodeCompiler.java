@@ -0,0 +1,406 @@
+package lang.toyscript.engine.compiler;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.compiler.CompilerOptions.Backend;
+import lang.toyscript.engine.jit.FunctionProfile;
+import lang.toyscript.engine.jit.JvmCompiler;
+import lang.toyscript.engine.node.ArrayNode;
+import lang.toyscript.engine.node.BinaryNode;
+import lang.toyscript.engine.node.BlockNode;
+import lang.toyscript.engine.node.CallNode;
+import lang.toyscript.engine.node.ControlNode;
+import lang.toyscript.engine.node.DebugNode;
+import lang.toyscript.engine.node.FunctionNode;
+import lang.toyscript.engine.node.GlobalNode;
+import lang.toyscript.engine.node.InlineNode;
+import lang.toyscript.engine.node.JumpNode;
+import lang.toyscript.engine.node.LiteralNode;
+import lang.toyscript.engine.node.LocalNode;
+import lang.toyscript.engine.node.Node;
+import lang.toyscript.engine.node.ProgramNode;
+import lang.toyscript.engine.node.StructNode;
+import lang.toyscript.engine.node.UnaryNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static lang.toyscript.engine.node.Node.LOGGER;
+
+/**
+ * Compiles syntax tree into tree of executable {@link Node}s.
+ * Every local variable is resolved to a frame address here, so only top level names
+ * are looked up in bindings at runtime.
+ * With {@link CompilerOptions#optimize()} calls of small global functions are inlined, see {@link #inline}.
+ */
+public class NodeCompiler {
+
+    /**
+     * Maximum number of statements and expressions of an inlined function body.
+     */
+    private static final int INLINE_LIMIT = 40;
+
+    /**
+     * @param names names used by the body, other than parameters.
+     */
+    private record Inlinable(Stmt.FunctionDecl decl, FunctionNode function, Set<String> names) {
+    }
+
+    public static ProgramNode compile(Program program) {
+        return compile(program, CompilerOptions.DEFAULT);
+    }
+
+    public static ProgramNode compile(Program program, CompilerOptions options) {
+        return new NodeCompiler(LOGGER.isDebugEnabled(), options).compileProgram(program);
+    }
+
+    private final boolean debug;
+
+    private final CompilerOptions options;
+
+    private LexicalScope scope;
+
+    /**
+     * Profile of the function being compiled when tiering is enabled.
+     */
+    private FunctionProfile profile;
+
+    /**
+     * Whether a function body is being compiled and how many loops enclose the current statement within it.
+     * Jumps consumed in the same function are compiled to completions, the others to signals.
+     */
+    private boolean inFunction;
+
+    private int loopDepth;
+
+    /**
+     * Number of {@code try} statements enclosing the current statement within the function;
+     * calls inside them are not in tail position.
+     */
+    private int tryDepth;
+
+    /**
+     * Literal values of the program, so equal literals share one (boxed) instance.
+     */
+    private final Map<Object, Object> constants = new HashMap<>();
+
+    /**
+     * Global functions declared so far which calls may be inlined, by name.
+     */
+    private final Map<String, Inlinable> inlinable = new HashMap<>();
+
+    /**
+     * Whether an inlined body is being compiled; calls are not inlined into it.
+     */
+    private boolean inlining;
+
+    NodeCompiler(boolean debug, CompilerOptions options) {
+        this.debug = debug;
+        this.options = options;
+    }
+
+    ProgramNode compileProgram(Program program) {
+        var body = program.body();
+        var returnsLast = !body.isEmpty() && body.get(body.size() - 1) instanceof Stmt.Expression;
+        var global = LexicalScope.global();
+        var nodes = inScope(global, () -> statements(body));
+        return new ProgramNode(nodes, returnsLast, global.layout().size());
+    }
+
+    Node statement(Stmt stmt) {
+        var node = compileStatement(stmt);
+        return debug ? new DebugNode(stmt.getClass().getSimpleName(), node) : node;
+    }
+
+    Node expr(Expr expr) {
+        var node = compileExpr(expr);
+        return debug ? new DebugNode(expr.getClass().getSimpleName(), node) : node;
+    }
+
+    private Node compileStatement(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression s) return expr(s.expr());
+        if (stmt instanceof Stmt.VarDecl s) return declare(s.pos(), s.name(), optional(s.init()));
+        if (stmt instanceof Stmt.Block s) return new BlockNode(s.pos(), inScope(scope.block(),
+                () -> statements(s.body())));
+        if (stmt instanceof Stmt.If s) return new ControlNode.If(s.pos(), expr(s.condition()),
+                statement(s.then()), s.otherwise() != null ? statement(s.otherwise()) : null);
+        if (stmt instanceof Stmt.While s) return loop(s);
+        if (stmt instanceof Stmt.FunctionDecl s) return function(s);
+        if (stmt instanceof Stmt.Try s) return tryStatement(s);
+        if (stmt instanceof Stmt.Return s) return new JumpNode.Return(s.pos(), returnValue(s.value()), inFunction);
+        if (stmt instanceof Stmt.Exit s) return new JumpNode.Exit(s.pos(), optional(s.value()));
+        if (stmt instanceof Stmt.Throw s) return new JumpNode.Throw(s.pos(), optional(s.value()));
+        if (stmt instanceof Stmt.Break s) return new JumpNode.Break(s.pos(), loopDepth > 0);
+        if (stmt instanceof Stmt.Continue s) return new JumpNode.Continue(s.pos(), loopDepth > 0);
+        if (stmt instanceof Stmt.Empty s) return new LiteralNode(s.pos(), null);
+        throw new IllegalArgumentException("Unsupported statement " + stmt);
+    }
+
+    private Node compileExpr(Expr expr) {
+        if (expr instanceof Expr.Literal e) return new LiteralNode(e.pos(), constant(e.value()));
+        if (expr instanceof Expr.Identifier e) return identifier(e);
+        if (expr instanceof Expr.Binary e) return binary(e);
+        if (expr instanceof Expr.Assign e) return assign(e);
+        if (expr instanceof Expr.Call e) return call(e);
+        if (expr instanceof Expr.IndexAccess e) return new ArrayNode.Read(e.pos(), expr(e.object()),
+                expr(e.index()));
+        if (expr instanceof Expr.IndexAssign e) return new ArrayNode.Write(e.pos(), expr(e.object()),
+                expr(e.index()), expr(e.value()));
+        if (expr instanceof Expr.MemberAccess e) return new StructNode.Read(e.pos(), expr(e.object()),
+                e.memberPos(), e.member());
+        if (expr instanceof Expr.MemberAssign e) return new StructNode.Write(e.pos(), expr(e.object()),
+                e.memberPos(), e.member(), expr(e.value()));
+        if (expr instanceof Expr.IncrDecr e) return incrDecr(e);
+        if (expr instanceof Expr.Unary e) return switch (e.op()) {
+            case NEGATE -> new UnaryNode.Negate(e.pos(), expr(e.operand()));
+            case NOT -> new UnaryNode.Not(e.pos(), expr(e.operand()));
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+        if (expr instanceof Expr.ArrayInit e) return new ArrayNode.Init(e.pos(), expressions(e.elements()));
+        if (expr instanceof Expr.ArrayDef e) return new ArrayNode.Def(e.pos(), expr(e.size()));
+        if (expr instanceof Expr.StructInit e) return new StructNode.Init(e.pos(),
+                e.keys().toArray(String[]::new), expressions(e.values()));
+        if (expr instanceof Expr.Native e) return new GlobalNode.Native(e.pos(), e.name());
+        throw new IllegalArgumentException("Unsupported expression " + expr);
+    }
+
+    private Node declare(Pos pos, String name, Node init) {
+        if (scope.isGlobal()) return new GlobalNode.Declare(pos, name, init);
+        if (scope.isDeclared(name)) return new LocalNode.Redeclare(pos, name, init);
+        return new LocalNode.Declare(pos, name, scope.declare(name), init);
+    }
+
+    private Node function(Stmt.FunctionDecl decl) {
+        var function = new FunctionNode(decl.pos(), decl.name(), decl.params().toArray(String[]::new), decl.memo());
+        if (options.optimize() && scope.isGlobal()) register(decl, function);
+        var declaringScope = scope;
+        scope.defer(() -> {
+            var functionScope = declaringScope.function();
+            var outerProfile = profile;
+            var outerInFunction = inFunction;
+            var outerLoopDepth = loopDepth;
+            var outerTryDepth = tryDepth;
+            profile = options.backend() == Backend.TIERED ? new FunctionProfile(decl.params().size()) : null;
+            inFunction = true;
+            loopDepth = 0;
+            tryDepth = 0;
+            var functionProfile = profile;
+            var body = inScope(functionScope, () -> {
+                var nodes = new ArrayList<Node>();
+                for (var param : decl.params()) {
+                    if (functionScope.isDeclared(param)) {
+                        nodes.add(new LocalNode.Redeclare(decl.pos(), param, null));
+                    }
+                    functionScope.declare(param);
+                }
+                nodes.addAll(Arrays.asList(statements(decl.body())));
+                return nodes.toArray(Node[]::new);
+            });
+            profile = outerProfile;
+            inFunction = outerInFunction;
+            loopDepth = outerLoopDepth;
+            tryDepth = outerTryDepth;
+            Predicate<String> isCaptured = name -> declaringScope.resolve(name) != null;
+            var compiled = options.backend() == Backend.JVM ? JvmCompiler.compile(decl, isCaptured) : null;
+            function.link(body, functionScope.layout().size(), compiled);
+            if (functionProfile != null) {
+                function.tiered(functionProfile, argTypes -> JvmCompiler.compile(decl, isCaptured, argTypes));
+            }
+        });
+        if (scope.isGlobal() || scope.isDeclared(decl.name())) return declare(decl.pos(), decl.name(), function);
+        var slot = scope.declare(decl.name());
+        var declaration = new LocalNode.DeclareFunction(decl.pos(), decl.name(), slot, function);
+        scope.defer(() -> declaration.link(LocalNode.Undeclared.of(declaringScope.declaredAfter(slot))));
+        return declaration;
+    }
+
+    private Node loop(Stmt.While stmt) {
+        var condition = expr(stmt.condition());
+        loopDepth++;
+        try {
+            return new ControlNode.While(stmt.pos(), condition, statement(stmt.body()), profile);
+        } finally {
+            loopDepth--;
+        }
+    }
+
+    private Node tryStatement(Stmt.Try stmt) {
+        tryDepth++;
+        Node body;
+        try {
+            body = statement(stmt.body());
+        } finally {
+            tryDepth--;
+        }
+        var handlerScope = scope.block();
+        var errorSlot = stmt.errorName() != null ? handlerScope.declare(stmt.errorName()) : -1;
+        var handler = inScope(handlerScope, () -> statements(stmt.handler()));
+        return new ControlNode.Try(stmt.pos(), body, errorSlot, handler);
+    }
+
+    private Node returnValue(Expr value) {
+        var node = optional(value);
+        var target = node instanceof DebugNode debugNode ? debugNode.delegate() : node;
+        if (value instanceof Expr.Call && inFunction && tryDepth == 0 && target instanceof CallNode call) {
+            var tail = new CallNode.Tail(value.pos(), call);
+            return debug ? new DebugNode(value.getClass().getSimpleName(), tail) : tail;
+        }
+        return node;
+    }
+
+    private Node identifier(Expr.Identifier e) {
+        var address = scope.resolve(e.name());
+        return address != null ?
+                new LocalNode.Read(e.pos(), e.name(), address.depth(), address.slot()) :
+                new GlobalNode.Read(e.pos(), e.name());
+    }
+
+    private Node assign(Expr.Assign e) {
+        var value = expr(e.value());
+        var address = scope.resolve(e.name());
+        return address != null ?
+                new LocalNode.Assign(e.pos(), e.name(), address.depth(), address.slot(), value) :
+                new GlobalNode.Assign(e.pos(), e.name(), value);
+    }
+
+    private Node incrDecr(Expr.IncrDecr e) {
+        var address = scope.resolve(e.name());
+        if (address != null) return switch (e.op()) {
+            case INCREMENT -> new LocalNode.Increment(e.pos(), e.name(), address.depth(), address.slot());
+            case DECREMENT -> new LocalNode.Decrement(e.pos(), e.name(), address.depth(), address.slot());
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+        return switch (e.op()) {
+            case INCREMENT -> new GlobalNode.Increment(e.pos(), e.name());
+            case DECREMENT -> new GlobalNode.Decrement(e.pos(), e.name());
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+    }
+
+    private Node call(Expr.Call e) {
+        var address = scope.resolve(e.name());
+        if (address != null) {
+            return new CallNode.Local(e.pos(), e.name(), address.depth(), address.slot(), expressions(e.args()));
+        }
+        var target = inlining ? null : inlinable.get(e.name());
+        if (target != null && target.decl().params().size() == e.args().size()
+                && target.names().stream().allMatch(name -> scope.resolve(name) == null)) {
+            return inline(e, target);
+        }
+        return new CallNode.Global(e.pos(), e.name(), expressions(e.args()));
+    }
+
+    /**
+     * A function may be inlined if its body is small, declares no functions, does not call itself, and has
+     * no {@code break}, {@code continue} nor {@code return} other than the last statement.
+     */
+    private void register(Stmt.FunctionDecl decl, FunctionNode function) {
+        var names = new Optimizer.Names();
+        decl.body().forEach(names::statement);
+        var body = decl.body();
+        var returnsLast = !body.isEmpty() && body.get(body.size() - 1) instanceof Stmt.Return;
+        if (decl.memo() || names.size > INLINE_LIMIT || names.functions > 0 || names.jumps > 0
+                || names.returns > (returnsLast ? 1 : 0) || names.called.contains(decl.name())
+                || new HashSet<>(decl.params()).size() != decl.params().size()) {
+            inlinable.remove(decl.name());
+            return;
+        }
+        var used = new HashSet<>(names.read);
+        used.addAll(names.written);
+        used.addAll(names.called);
+        decl.params().forEach(used::remove);
+        inlinable.put(decl.name(), new Inlinable(decl, function, used));
+    }
+
+    /**
+     * Compiles the body of a global function in a block of the caller, with parameters in its slots.
+     * Called only if every name used by the body, other than parameters, is global at the call site,
+     * so it resolves as in the function. The function is checked at runtime, see {@link InlineNode}.
+     * Parameter slots are allocated before the arguments are compiled, so that arguments inlining other calls
+     * use slots of their own and each argument can be stored in its parameter slot as soon as it is evaluated.
+     */
+    private Node inline(Expr.Call e, Inlinable target) {
+        var block = scope.block();
+        var outerInlining = inlining;
+        try {
+            return inScope(block, () -> {
+                var params = target.decl().params();
+                var slots = params.stream().mapToInt(param -> block.layout().allocate()).toArray();
+                var args = expressions(e.args());
+                inlining = true;
+                for (var i = 0; i < slots.length; i++) block.declare(params.get(i), slots[i]);
+                var body = target.decl().body();
+                var last = body.isEmpty() ? null : body.get(body.size() - 1);
+                if (last instanceof Stmt.Return r) {
+                    return new InlineNode(e.pos(), e.name(), args, target.function(), slots,
+                            statements(body.subList(0, body.size() - 1)), optional(r.value()));
+                }
+                return new InlineNode(e.pos(), e.name(), args, target.function(), slots, statements(body), null);
+            });
+        } finally {
+            inlining = outerInlining;
+        }
+    }
+
+    private <T> T inScope(LexicalScope inner, Supplier<T> compilation) {
+        var outer = scope;
+        scope = inner;
+        try {
+            return compilation.get();
+        } finally {
+            inner.close();
+            scope = outer;
+        }
+    }
+
+    private Node binary(Expr.Binary e) {
+        var pos = e.pos();
+        var left = expr(e.left());
+        var right = expr(e.right());
+        return switch (e.op()) {
+            case ADD -> new BinaryNode.Add(pos, left, right);
+            case SUBTRACT -> new BinaryNode.Subtract(pos, left, right);
+            case MULTIPLY -> new BinaryNode.Multiply(pos, left, right);
+            case DIVIDE -> new BinaryNode.Divide(pos, left, right);
+            case MODULO -> new BinaryNode.Modulo(pos, left, right);
+            case LESS -> new BinaryNode.Less(pos, left, right);
+            case LESS_EQUAL -> new BinaryNode.LessEqual(pos, left, right);
+            case GREATER -> new BinaryNode.Greater(pos, left, right);
+            case GREATER_EQUAL -> new BinaryNode.GreaterEqual(pos, left, right);
+            case EQUAL -> new BinaryNode.Equal(pos, left, right);
+            case NOT_EQUAL -> new BinaryNode.NotEqual(pos, left, right);
+            case AND -> new BinaryNode.And(pos, left, right);
+            case OR -> new BinaryNode.Or(pos, left, right);
+            default -> throw new IllegalArgumentException("Unsupported operator " + e.op());
+        };
+    }
+
+    private Object constant(Object value) {
+        return value != null ? constants.computeIfAbsent(value, v -> v) : null;
+    }
+
+    private Node optional(Expr expr) {
+        return expr != null ? expr(expr) : null;
+    }
+
+    private Node[] statements(List<Stmt> statements) {
+        scope.reserve(statements);
+        return statements.stream()
+                .filter(stmt -> !(stmt instanceof Stmt.Empty))
+                .map(this::statement)
+                .toArray(Node[]::new);
+    }
+
+    private Node[] expressions(List<Expr> expressions) {
+        return expressions.stream().map(this::expr).toArray(Node[]::new);
+    }
+}
@@ -0,0 +1,506 @@
+package lang.toyscript.engine.compiler;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+import static lang.toyscript.engine.visitor.Types.addExpr;
+import static lang.toyscript.engine.visitor.Types.boolCast;
+import static lang.toyscript.engine.visitor.Types.divideExpr;
+import static lang.toyscript.engine.visitor.Types.equalsExpr;
+import static lang.toyscript.engine.visitor.Types.greaterThenExpr;
+import static lang.toyscript.engine.visitor.Types.lessThenExpr;
+import static lang.toyscript.engine.visitor.Types.moduloExpr;
+import static lang.toyscript.engine.visitor.Types.multiplyExpr;
+import static lang.toyscript.engine.visitor.Types.subtractExpr;
+import static lang.toyscript.engine.visitor.Types.unaryMinExpr;
+
+/**
+ * Rewrites syntax tree before compilation:
+ * <ul>
+ *     <li>folds operators applied to literals, with the runtime {@link lang.toyscript.engine.visitor.Types}
+ *     semantics; an operation failing at compile time (integer division by zero) is left to fail at runtime,</li>
+ *     <li>replaces {@code if} and {@code while} of constant condition by the branch taken,</li>
+ *     <li>removes statements following {@code return}, {@code break}, {@code continue}, {@code exit}
+ *     and {@code throw} in the same block,</li>
+ *     <li>removes expression statements without side effects (except the last one of the program,
+ *     which is its result),</li>
+ *     <li>hoists loop-invariant expressions of {@code while} loops in function bodies into temporaries
+ *     declared before the loop, see {@link Hoisting}.</li>
+ * </ul>
+ * Folded expressions keep the position of the original, so do all statements left.
+ * Declarations are never removed from their scope: an unreachable one is kept without initializer,
+ * and a constant branch which is a bare declaration is not pruned, so names resolve as before.
+ */
+public class Optimizer {
+
+    /**
+     * Natives of {@link lang.toyscript.engine.lib.StandardLib} returning the same value for the same argument
+     * without side effects.
+     */
+    private static final Set<String> PURE_NATIVES = Set.of("length", "typeof");
+
+    /**
+     * Names written anywhere in the program; a native of the same name may be shadowed.
+     */
+    private final Set<String> declared;
+
+    /**
+     * Locals of the function being optimized, declared so far; {@code null} outside functions.
+     */
+    private Set<String> locals;
+
+    /**
+     * Names written by functions nested in the function being optimized.
+     */
+    private Set<String> captured;
+
+    private int temporaries;
+
+    public static Program optimize(Program program) {
+        var body = program.body();
+        var names = new Names();
+        body.forEach(names::statement);
+        var optimized = new Optimizer(names.written).statements(body, body.size() - 1);
+        var returnsLast = !body.isEmpty() && body.get(body.size() - 1) instanceof Stmt.Expression;
+        if (!returnsLast && !optimized.isEmpty() && optimized.get(optimized.size() - 1) instanceof Stmt.Expression) {
+            // the result of a pruned branch must not become the program's result
+            optimized.add(new Stmt.Empty(body.get(body.size() - 1).pos()));
+        }
+        return new Program(optimized);
+    }
+
+    private Optimizer(Set<String> declared) {
+        this.declared = declared;
+    }
+
+    /**
+     * @param result index of the statement whose value is used, or -1.
+     */
+    private List<Stmt> statements(List<Stmt> statements, int result) {
+        var optimized = new ArrayList<Stmt>(statements.size());
+        var reachable = true;
+        for (var i = 0; i < statements.size(); i++) {
+            var stmt = statements.get(i);
+            if (!reachable) {
+                if (stmt instanceof Stmt.VarDecl s) optimized.add(new Stmt.VarDecl(s.pos(), s.name(), null));
+                else if (stmt instanceof Stmt.FunctionDecl s) optimized.add(new Stmt.VarDecl(s.pos(), s.name(), null));
+                continue;
+            }
+            stmt = statement(stmt);
+            if (stmt instanceof Stmt.Empty) continue;
+            if (i != result && stmt instanceof Stmt.Expression s && isPure(s.expr())) continue;
+            if (locals != null && stmt instanceof Stmt.VarDecl s) locals.add(s.name());
+            if (locals != null && stmt instanceof Stmt.FunctionDecl s) locals.add(s.name());
+            optimized.add(stmt);
+            reachable = !isJump(stmt);
+        }
+        return optimized;
+    }
+
+    private Stmt statement(Stmt stmt) {
+        if (stmt == null) return null;
+        if (stmt instanceof Stmt.Expression s) return new Stmt.Expression(s.pos(), expr(s.expr()));
+        if (stmt instanceof Stmt.VarDecl s) return new Stmt.VarDecl(s.pos(), s.name(), expr(s.init()));
+        if (stmt instanceof Stmt.FunctionDecl s) return functionDeclaration(s);
+        if (stmt instanceof Stmt.Block s) return new Stmt.Block(s.pos(), block(s.body(), null));
+        if (stmt instanceof Stmt.If s) return ifStatement(s);
+        if (stmt instanceof Stmt.While s) return whileStatement(s);
+        if (stmt instanceof Stmt.Try s) {
+            return new Stmt.Try(s.pos(), (Stmt.Block) statement(s.body()), s.errorPos(), s.errorName(),
+                    block(s.handler(), s.errorName()));
+        }
+        if (stmt instanceof Stmt.Return s) return new Stmt.Return(s.pos(), expr(s.value()));
+        if (stmt instanceof Stmt.Exit s) return new Stmt.Exit(s.pos(), expr(s.value()));
+        if (stmt instanceof Stmt.Throw s) return new Stmt.Throw(s.pos(), expr(s.value()));
+        return stmt;
+    }
+
+    private Stmt functionDeclaration(Stmt.FunctionDecl stmt) {
+        var outerLocals = locals;
+        var outerCaptured = captured;
+        var names = new Names();
+        stmt.body().forEach(names::statement);
+        locals = new HashSet<>(stmt.params());
+        captured = names.nested;
+        try {
+            var body = statements(stmt.body(), -1);
+            return new Stmt.FunctionDecl(stmt.pos(), stmt.name(), stmt.params(), body, stmt.memo());
+        } finally {
+            locals = outerLocals;
+            captured = outerCaptured;
+        }
+    }
+
+    private List<Stmt> block(List<Stmt> body, String bound) {
+        var outerLocals = locals;
+        if (locals != null) {
+            locals = new HashSet<>(locals);
+            if (bound != null) locals.add(bound);
+        }
+        try {
+            return statements(body, -1);
+        } finally {
+            locals = outerLocals;
+        }
+    }
+
+    private Stmt ifStatement(Stmt.If stmt) {
+        var condition = expr(stmt.condition());
+        var then = statement(stmt.then());
+        var otherwise = statement(stmt.otherwise());
+        if (condition instanceof Expr.Literal literal && !isDeclaration(then) && !isDeclaration(otherwise)) {
+            var taken = boolCast(literal.value()) ? then : otherwise;
+            return taken != null ? taken : new Stmt.Empty(stmt.pos());
+        }
+        return new Stmt.If(stmt.pos(), condition, then, otherwise);
+    }
+
+    private Stmt whileStatement(Stmt.While stmt) {
+        var condition = expr(stmt.condition());
+        var body = statement(stmt.body());
+        if (condition instanceof Expr.Literal literal && !boolCast(literal.value()) && !isDeclaration(body)) {
+            return new Stmt.Empty(stmt.pos());
+        }
+        var loop = new Stmt.While(stmt.pos(), condition, body);
+        return locals != null && !isDeclaration(body) ? new Hoisting(loop).apply() : loop;
+    }
+
+    private Expr expr(Expr expr) {
+        if (expr == null) return null;
+        if (expr instanceof Expr.Unary e) return unary(e);
+        if (expr instanceof Expr.Binary e) return binary(e);
+        if (expr instanceof Expr.Assign e) return new Expr.Assign(e.pos(), e.name(), expr(e.value()));
+        if (expr instanceof Expr.MemberAccess e) {
+            return new Expr.MemberAccess(e.pos(), expr(e.object()), e.memberPos(), e.member());
+        }
+        if (expr instanceof Expr.MemberAssign e) {
+            return new Expr.MemberAssign(e.pos(), expr(e.object()), e.memberPos(), e.member(), expr(e.value()));
+        }
+        if (expr instanceof Expr.IndexAccess e) {
+            return new Expr.IndexAccess(e.pos(), expr(e.object()), expr(e.index()));
+        }
+        if (expr instanceof Expr.IndexAssign e) {
+            return new Expr.IndexAssign(e.pos(), expr(e.object()), expr(e.index()), expr(e.value()));
+        }
+        if (expr instanceof Expr.Call e) return new Expr.Call(e.pos(), e.name(), expressions(e.args()));
+        if (expr instanceof Expr.ArrayInit e) return new Expr.ArrayInit(e.pos(), expressions(e.elements()));
+        if (expr instanceof Expr.ArrayDef e) return new Expr.ArrayDef(e.pos(), expr(e.size()));
+        if (expr instanceof Expr.StructInit e) return new Expr.StructInit(e.pos(), e.keys(), expressions(e.values()));
+        return expr;
+    }
+
+    private List<Expr> expressions(List<Expr> expressions) {
+        return expressions.stream().map(this::expr).toList();
+    }
+
+    private Expr unary(Expr.Unary e) {
+        var operand = expr(e.operand());
+        if (operand instanceof Expr.Literal literal) {
+            if (e.op() == Operator.NEGATE) return new Expr.Literal(e.pos(), unaryMinExpr(literal.value()));
+            if (e.op() == Operator.NOT) return new Expr.Literal(e.pos(), !boolCast(literal.value()));
+        }
+        return new Expr.Unary(e.pos(), e.op(), operand);
+    }
+
+    private Expr binary(Expr.Binary e) {
+        var left = expr(e.left());
+        var right = expr(e.right());
+        if (left instanceof Expr.Literal l && right instanceof Expr.Literal r) {
+            try {
+                return new Expr.Literal(e.pos(), fold(e.op(), l.value(), r.value()));
+            } catch (ArithmeticException ex) {
+                // reported when executed, at the operator's position
+            }
+        }
+        return new Expr.Binary(e.pos(), e.op(), left, right);
+    }
+
+    private static Object fold(Operator op, Object value0, Object value1) {
+        return switch (op) {
+            case ADD -> addExpr(value0, value1);
+            case SUBTRACT -> subtractExpr(value0, value1);
+            case MULTIPLY -> multiplyExpr(value0, value1);
+            case DIVIDE -> divideExpr(value0, value1);
+            case MODULO -> moduloExpr(value0, value1);
+            case LESS -> lessThenExpr(value0, value1);
+            case LESS_EQUAL -> !greaterThenExpr(value0, value1);
+            case GREATER -> greaterThenExpr(value0, value1);
+            case GREATER_EQUAL -> !lessThenExpr(value0, value1);
+            case EQUAL -> equalsExpr(value0, value1);
+            case NOT_EQUAL -> !equalsExpr(value0, value1);
+            case AND -> boolCast(value0) && boolCast(value1);
+            case OR -> boolCast(value0) || boolCast(value1);
+            default -> throw new IllegalArgumentException("Unsupported operator " + op);
+        };
+    }
+
+    /**
+     * @return whether evaluation of the expression can neither fail nor change state.
+     */
+    private static boolean isPure(Expr expr) {
+        if (expr instanceof Expr.Literal) return true;
+        if (expr instanceof Expr.ArrayInit e) return e.elements().stream().allMatch(Optimizer::isPure);
+        if (expr instanceof Expr.StructInit e) return e.values().stream().allMatch(Optimizer::isPure);
+        if (expr instanceof Expr.Unary e) return isPure(e.operand());
+        if (expr instanceof Expr.Binary e) {
+            return e.op() != Operator.DIVIDE && e.op() != Operator.MODULO && isPure(e.left()) && isPure(e.right());
+        }
+        return false;
+    }
+
+    private static boolean isJump(Stmt stmt) {
+        return stmt instanceof Stmt.Return || stmt instanceof Stmt.Break || stmt instanceof Stmt.Continue
+                || stmt instanceof Stmt.Exit || stmt instanceof Stmt.Throw;
+    }
+
+    private static boolean isDeclaration(Stmt stmt) {
+        return stmt instanceof Stmt.VarDecl || stmt instanceof Stmt.FunctionDecl;
+    }
+
+    /**
+     * Loop-invariant code motion for a single loop. An expression is invariant if it reads only locals
+     * of the enclosing function declared before the loop, written neither in the loop nor by nested
+     * functions, and calls only {@link #PURE_NATIVES} (not shadowed by the script), provided the loop
+     * calls nothing else. Expressions which may fail are hoisted only from a condition free of side
+     * effects, which is evaluated on entry anyway; the failure is then reported from the same position.
+     * Hoisted temporaries are named so that they cannot clash with identifiers of the script, and are
+     * declared together with the loop in a new block. Host bindings and earlier evaluations may rebind
+     * the natives, so if a native call is hoisted the block runs only while the natives are those of
+     * the standard library ({@link Expr.Native}); otherwise the original loop runs.
+     */
+    private class Hoisting {
+
+        private final Stmt.While loop;
+
+        private final Set<String> written;
+
+        private final boolean pureCalls;
+
+        private final List<Stmt> hoisted = new ArrayList<>();
+
+        /**
+         * Natives called by the hoisted expressions.
+         */
+        private final Set<String> natives = new TreeSet<>();
+
+        Hoisting(Stmt.While loop) {
+            var names = new Names();
+            names.statement(loop);
+            this.loop = loop;
+            this.written = names.written;
+            this.pureCalls = names.called.stream().allMatch(Optimizer.this::isPureNative);
+        }
+
+        Stmt apply() {
+            var names = new Names();
+            names.expr(loop.condition());
+            var quiet = names.written.isEmpty() && names.called.stream().allMatch(Optimizer.this::isPureNative);
+            var condition = hoist(loop.condition(), quiet);
+            var body = statement(loop.body());
+            if (hoisted.isEmpty()) return loop;
+            hoisted.add(new Stmt.While(loop.pos(), condition, body));
+            var block = new Stmt.Block(loop.pos(), hoisted);
+            if (natives.isEmpty()) return block;
+            Expr guard = null;
+            for (var name : natives) {
+                var check = new Expr.Native(loop.pos(), name);
+                guard = guard == null ? check : new Expr.Binary(loop.pos(), Operator.AND, guard, check);
+            }
+            return new Stmt.If(loop.pos(), guard, block, loop);
+        }
+
+        private Stmt statement(Stmt stmt) {
+            if (stmt instanceof Stmt.FunctionDecl) return stmt;
+            return mapStatement(stmt, this::statement, e -> hoist(e, false));
+        }
+
+        private Expr hoist(Expr expr, boolean mayFail) {
+            if (expr == null) return null;
+            if ((expr instanceof Expr.Unary || expr instanceof Expr.Binary || expr instanceof Expr.Call)
+                    && isInvariant(expr) && (mayFail || !canFail(expr))) {
+                var name = "$loop" + temporaries++;
+                var names = new Names();
+                names.expr(expr);
+                natives.addAll(names.called);
+                hoisted.add(new Stmt.VarDecl(expr.pos(), name, expr));
+                return new Expr.Identifier(expr.pos(), name);
+            }
+            return mapExpr(expr, e -> hoist(e, mayFail));
+        }
+
+        private boolean isInvariant(Expr expr) {
+            if (expr instanceof Expr.Literal) return true;
+            if (expr instanceof Expr.Identifier e) {
+                return locals.contains(e.name()) && !written.contains(e.name()) && !captured.contains(e.name());
+            }
+            if (expr instanceof Expr.Unary e) return isInvariant(e.operand());
+            if (expr instanceof Expr.Binary e) return isInvariant(e.left()) && isInvariant(e.right());
+            if (expr instanceof Expr.Call e) {
+                return pureCalls && isPureNative(e.name()) && e.args().size() == 1 && isInvariant(e.args().get(0));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Collects names written (assigned, declared or bound as parameters), read and called in a subtree,
+     * and counts its statements and expressions.
+     */
+    static class Names {
+
+        final Set<String> written = new HashSet<>();
+
+        final Set<String> read = new HashSet<>();
+
+        final Set<String> called = new HashSet<>();
+
+        /**
+         * Names written inside nested function declarations.
+         */
+        final Set<String> nested = new HashSet<>();
+
+        int size;
+
+        int functions;
+
+        int returns;
+
+        int jumps;
+
+        private int depth;
+
+        private void write(String name) {
+            written.add(name);
+            if (depth > 0) nested.add(name);
+        }
+
+        void statement(Stmt stmt) {
+            if (stmt == null) return;
+            size++;
+            if (stmt instanceof Stmt.VarDecl s) write(s.name());
+            if (stmt instanceof Stmt.Try s) write(s.errorName());
+            if (stmt instanceof Stmt.Return) returns++;
+            if (stmt instanceof Stmt.Break || stmt instanceof Stmt.Continue) jumps++;
+            if (stmt instanceof Stmt.FunctionDecl s) {
+                write(s.name());
+                functions++;
+                depth++;
+                s.params().forEach(this::write);
+                s.body().forEach(this::statement);
+                depth--;
+                return;
+            }
+            mapStatement(stmt, s -> {
+                statement(s);
+                return s;
+            }, e -> {
+                expr(e);
+                return e;
+            });
+        }
+
+        void expr(Expr expr) {
+            if (expr == null) return;
+            size++;
+            if (expr instanceof Expr.Identifier e) read.add(e.name());
+            if (expr instanceof Expr.Assign e) write(e.name());
+            if (expr instanceof Expr.IncrDecr e) write(e.name());
+            if (expr instanceof Expr.Call e) called.add(e.name());
+            mapExpr(expr, e -> {
+                expr(e);
+                return e;
+            });
+        }
+    }
+
+    /**
+     * Rebuilds a statement with its direct sub-statements and expressions mapped; function bodies are
+     * left to the caller.
+     */
+    private static Stmt mapStatement(Stmt stmt, UnaryOperator<Stmt> statements, UnaryOperator<Expr> expressions) {
+        if (stmt == null) return null;
+        if (stmt instanceof Stmt.Expression s) return new Stmt.Expression(s.pos(), expressions.apply(s.expr()));
+        if (stmt instanceof Stmt.VarDecl s) return new Stmt.VarDecl(s.pos(), s.name(), expressions.apply(s.init()));
+        if (stmt instanceof Stmt.Block s) return new Stmt.Block(s.pos(), s.body().stream().map(statements).toList());
+        if (stmt instanceof Stmt.If s) {
+            return new Stmt.If(s.pos(), expressions.apply(s.condition()), statements.apply(s.then()),
+                    statements.apply(s.otherwise()));
+        }
+        if (stmt instanceof Stmt.While s) {
+            return new Stmt.While(s.pos(), expressions.apply(s.condition()), statements.apply(s.body()));
+        }
+        if (stmt instanceof Stmt.Try s) {
+            return new Stmt.Try(s.pos(), (Stmt.Block) statements.apply(s.body()), s.errorPos(), s.errorName(),
+                    s.handler().stream().map(statements).toList());
+        }
+        if (stmt instanceof Stmt.Return s) return new Stmt.Return(s.pos(), expressions.apply(s.value()));
+        if (stmt instanceof Stmt.Exit s) return new Stmt.Exit(s.pos(), expressions.apply(s.value()));
+        if (stmt instanceof Stmt.Throw s) return new Stmt.Throw(s.pos(), expressions.apply(s.value()));
+        return stmt;
+    }
+
+    /**
+     * Rebuilds an expression with its direct operands mapped.
+     */
+    private static Expr mapExpr(Expr expr, UnaryOperator<Expr> operands) {
+        if (expr instanceof Expr.Unary e) return new Expr.Unary(e.pos(), e.op(), operands.apply(e.operand()));
+        if (expr instanceof Expr.Binary e) {
+            return new Expr.Binary(e.pos(), e.op(), operands.apply(e.left()), operands.apply(e.right()));
+        }
+        if (expr instanceof Expr.Assign e) return new Expr.Assign(e.pos(), e.name(), operands.apply(e.value()));
+        if (expr instanceof Expr.MemberAccess e) {
+            return new Expr.MemberAccess(e.pos(), operands.apply(e.object()), e.memberPos(), e.member());
+        }
+        if (expr instanceof Expr.MemberAssign e) {
+            return new Expr.MemberAssign(e.pos(), operands.apply(e.object()), e.memberPos(), e.member(),
+                    operands.apply(e.value()));
+        }
+        if (expr instanceof Expr.IndexAccess e) {
+            return new Expr.IndexAccess(e.pos(), operands.apply(e.object()), operands.apply(e.index()));
+        }
+        if (expr instanceof Expr.IndexAssign e) {
+            return new Expr.IndexAssign(e.pos(), operands.apply(e.object()), operands.apply(e.index()),
+                    operands.apply(e.value()));
+        }
+        if (expr instanceof Expr.Call e) {
+            return new Expr.Call(e.pos(), e.name(), e.args().stream().map(operands).toList());
+        }
+        if (expr instanceof Expr.ArrayInit e) {
+            return new Expr.ArrayInit(e.pos(), e.elements().stream().map(operands).toList());
+        }
+        if (expr instanceof Expr.ArrayDef e) return new Expr.ArrayDef(e.pos(), operands.apply(e.size()));
+        if (expr instanceof Expr.StructInit e) {
+            return new Expr.StructInit(e.pos(), e.keys(), e.values().stream().map(operands).toList());
+        }
+        return expr;
+    }
+
+    private boolean isPureNative(String name) {
+        return PURE_NATIVES.contains(name) && !declared.contains(name);
+    }
+
+    /**
+     * @return whether evaluation of the expression may fail, assuming identifiers are readable.
+     */
+    private static boolean canFail(Expr expr) {
+        if (expr instanceof Expr.Literal || expr instanceof Expr.Identifier) return false;
+        if (expr instanceof Expr.Unary e) return e.op() != Operator.NOT || canFail(e.operand());
+        if (expr instanceof Expr.Binary e) {
+            return switch (e.op()) {
+                case EQUAL, NOT_EQUAL, AND, OR -> canFail(e.left()) || canFail(e.right());
+                default -> true;
+            };
+        }
+        if (expr instanceof Expr.Call e) return e.args().stream().anyMatch(Optimizer::canFail);
+        return true;
+    }
+}
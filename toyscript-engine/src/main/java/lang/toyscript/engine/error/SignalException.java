@@ -1,9 +1,8 @@
 package lang.toyscript.engine.error;
 
+import lang.toyscript.engine.ast.Pos;
 import lang.toyscript.engine.visitor.Types;
 import lang.toyscript.parser.ToyScriptLexer;
-import org.antlr.v4.runtime.ParserRuleContext;
-import org.antlr.v4.runtime.Token;
 
 import javax.script.ScriptException;
 import java.util.Arrays;
@@ -15,54 +14,50 @@ import static lang.toyscript.parser.ToyScriptLexer.ruleNames;
 
 public class SignalException extends RuntimeException {
 
-    public static SignalException wrap(ParserRuleContext ctx, Exception e) {
-        return wrap(ctx.getStart(), e);
-    }
-
-    public static SignalException wrap(Token pos, Exception e) {
+    public static SignalException wrap(Pos pos, Exception e) {
         return e instanceof SignalException se ?
                 se : new SignalException.Throw(pos, errorMsg(e));
     }
 
-    public static SignalException typeMismatch(Object value, Token pos, Class<?>... expected) {
+    public static SignalException typeMismatch(Object value, Pos pos, Class<?>... expected) {
         return new SignalException.Throw(pos, "Expected " +
                 Arrays.stream(expected).map(Types::typeName)
                         .map(String::valueOf).collect(joining(", ")) +
                 " but was " + Types.typeName(value));
     }
 
-    public static SignalException typeMismatch(Object value, Token pos, Class<?> expected) {
+    public static SignalException typeMismatch(Object value, Pos pos, Class<?> expected) {
         return new SignalException.Throw(pos, "Expected " + typeName(expected) +
                 " but was " + Types.typeName(value));
     }
 
     public static class Throw extends SignalException {
-        public Throw(Token token, Object payload) {
-            super(ToyScriptLexer.THROW, token, payload);
+        public Throw(Pos pos, Object payload) {
+            super(ToyScriptLexer.THROW, pos, payload);
         }
     }
 
     public static class Return extends SignalException {
-        public Return(Token token, Object payload) {
-            super(ToyScriptLexer.RETURN, token, payload);
+        public Return(Pos pos, Object payload) {
+            super(ToyScriptLexer.RETURN, pos, payload);
         }
     }
 
     public static class Exit extends SignalException {
-        public Exit(Token token, Object payload) {
-            super(ToyScriptLexer.EXIT, token, payload);
+        public Exit(Pos pos, Object payload) {
+            super(ToyScriptLexer.EXIT, pos, payload);
         }
     }
 
     public static class Break extends SignalException {
-        public Break(Token token) {
-            super(ToyScriptLexer.BREAK, token, null);
+        public Break(Pos pos) {
+            super(ToyScriptLexer.BREAK, pos, null);
         }
     }
 
     public static class Continue extends SignalException {
-        public Continue(Token token) {
-            super(ToyScriptLexer.CONTINUE, token, null);
+        public Continue(Pos pos) {
+            super(ToyScriptLexer.CONTINUE, pos, null);
         }
     }
 
@@ -72,14 +67,15 @@ public class SignalException extends RuntimeException {
     private final Object payload;
 
     protected SignalException(int type, int line, int col, Object payload) {
+        super(null, null, false, false);
         this.type = type;
         this.line = line;
         this.col = col;
         this.payload = payload;
     }
 
-    protected SignalException(int type, Token token, Object payload) {
-        this(type, token.getLine(), token.getCharPositionInLine(), payload);
+    protected SignalException(int type, Pos pos, Object payload) {
+        this(type, pos.line(), pos.column(), payload);
     }
 
     public Object payload() {
@@ -0,0 +1,11 @@
+package lang.toyscript.engine.jit;
+
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Script function body translated to JVM bytecode.
+ */
+public interface CompiledFunction {
+
+    Object invoke(Frame enclosingFrame, Object[] args);
+}
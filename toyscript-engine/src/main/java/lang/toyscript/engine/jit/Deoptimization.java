@@ -0,0 +1,14 @@
+package lang.toyscript.engine.jit;
+
+/**
+ * Thrown by a type guard at the entry of specialized code, before any side effects happen,
+ * so the invocation can be safely repeated in the interpreter.
+ */
+public class Deoptimization extends RuntimeException {
+
+    public static final Deoptimization INSTANCE = new Deoptimization();
+
+    private Deoptimization() {
+        super("Type guard failed", null, false, false);
+    }
+}
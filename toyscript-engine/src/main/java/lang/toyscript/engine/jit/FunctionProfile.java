@@ -0,0 +1,78 @@
+package lang.toyscript.engine.jit;
+
+import java.util.Arrays;
+
+/**
+ * Execution statistics of an interpreted function: invocations, loop back-edges and observed argument types.
+ * A function becomes hot once either counter reaches its threshold, so code run once (initialization)
+ * never pays for the bytecode translation.
+ * Concurrent invocations update the profile without synchronization: a lost update only delays promotion,
+ * and an argument type missed is caught by the type guards of the translated code.
+ */
+public class FunctionProfile {
+
+    public static final int INVOCATION_THRESHOLD = 1000;
+
+    public static final int BACK_EDGE_THRESHOLD = 10000;
+
+    private final Class<?>[] argTypes;
+
+    private int invocations;
+
+    private int backEdges;
+
+    private int deoptimizations;
+
+    private boolean disabled;
+
+    public FunctionProfile(int paramCount) {
+        this.argTypes = new Class<?>[paramCount];
+    }
+
+    /**
+     * Records arguments of an interpreted invocation.
+     *
+     * @return {@code true} if the function just became hot.
+     */
+    public boolean record(Object[] args) {
+        for (var i = 0; i < argTypes.length; i++) {
+            var type = i < args.length && args[i] != null ? args[i].getClass() : Object.class;
+            if (argTypes[i] == null) argTypes[i] = type;
+            else if (argTypes[i] != type) argTypes[i] = Object.class;
+        }
+        invocations++;
+        return !disabled && (invocations >= INVOCATION_THRESHOLD || backEdges >= BACK_EDGE_THRESHOLD);
+    }
+
+    public void backEdge() {
+        backEdges++;
+    }
+
+    /**
+     * @return argument types seen so far; {@code Object.class} marks a polymorphic argument.
+     */
+    public Class<?>[] argTypes() {
+        return Arrays.copyOf(argTypes, argTypes.length);
+    }
+
+    /**
+     * Called when the function could not be translated, so it is not attempted again.
+     */
+    public void disable() {
+        disabled = true;
+    }
+
+    /**
+     * Called when a type guard of the optimized code failed. Counting starts over,
+     * and the arguments of the failed call widen the observed types on the next {@link #record}.
+     */
+    public void deoptimized() {
+        deoptimizations++;
+        invocations = 0;
+        backEdges = 0;
+    }
+
+    public int deoptimizations() {
+        return deoptimizations;
+    }
+}
@@ -0,0 +1,735 @@
+package lang.toyscript.engine.jit;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.node.ArrayNode;
+import lang.toyscript.engine.node.CallNode;
+import lang.toyscript.engine.node.GlobalNode;
+import lang.toyscript.engine.node.StructNode;
+import lang.toyscript.engine.registry.Frame;
+import lang.toyscript.engine.registry.Scope;
+import lang.toyscript.engine.visitor.Types;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IOR;
+import static org.objectweb.asm.Opcodes.IREM;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V17;
+
+/**
+ * Translates a script function into a hidden class implementing {@link CompiledFunction}, so that
+ * the JIT can optimize it as regular Java code. Local variables become JVM locals and operators call
+ * {@link Types} directly. Functions using constructs not supported here (try/catch, nested functions,
+ * variables of enclosing functions) are left to the interpreter.
+ * <p>
+ * Given observed argument types, integer parameters which are never assigned are unboxed once
+ * behind an entry guard throwing {@link Deoptimization}, and arithmetic and comparisons of integer
+ * operands use JVM int instructions.
+ */
+public class JvmCompiler {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(JvmCompiler.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String TYPES = Type.getInternalName(Types.class);
+    private static final String SUPPORT = Type.getInternalName(JvmSupport.class);
+    private static final String POS = Type.getDescriptor(Pos.class);
+    private static final String INTEGER = Type.getInternalName(Integer.class);
+    private static final String O = "Ljava/lang/Object;";
+
+    private static final int THIS = 0;
+    private static final int FRAME = 1;
+    private static final int ARGS = 2;
+    private static final int FIRST_LOCAL = 3;
+
+    /**
+     * @param isCaptured tells if a name not declared in the function refers to a local of enclosing function.
+     * @return compiled function or {@code null} if the function uses unsupported constructs.
+     */
+    public static CompiledFunction compile(Stmt.FunctionDecl decl, Predicate<String> isCaptured) {
+        return compile(decl, isCaptured, null);
+    }
+
+    /**
+     * @param argTypes observed argument types to specialize on, or {@code null} for generic code.
+     */
+    public static CompiledFunction compile(Stmt.FunctionDecl decl, Predicate<String> isCaptured,
+                                           Class<?>[] argTypes) {
+        try {
+            var compiler = new JvmCompiler(decl.name(), isCaptured, argTypes);
+            var bytes = compiler.generate(decl);
+            var lookup = LOOKUP.defineHiddenClass(bytes, true);
+            var constructor = lookup.findConstructor(lookup.lookupClass(), methodType(void.class, Object[].class));
+            return (CompiledFunction) constructor.invoke(compiler.constants.toArray());
+        } catch (Unsupported e) {
+            LOGGER.debug("Function {} left to interpreter: {}", decl.name(), e.getMessage());
+            return null;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final String className;
+
+    private final Predicate<String> isCaptured;
+
+    private final Class<?>[] argTypes;
+
+    private final List<Object> constants = new ArrayList<>();
+
+    private final Map<Object, Integer> constantIndex = new IdentityHashMap<>();
+
+    private final Deque<Map<String, Integer>> blocks = new ArrayDeque<>();
+
+    private final Deque<Label[]> loops = new ArrayDeque<>();
+
+    /**
+     * Unboxed copies of integer parameters, by local index of the parameter.
+     */
+    private final Map<Integer, Integer> intLocals = new HashMap<>();
+
+    private MethodVisitor mv;
+
+    private int nextLocal = FIRST_LOCAL;
+
+    private int maxLocal = FIRST_LOCAL;
+
+    private JvmCompiler(String name, Predicate<String> isCaptured, Class<?>[] argTypes) {
+        this.className = Type.getInternalName(JvmCompiler.class).replace("JvmCompiler", "Compiled_" + name);
+        this.isCaptured = isCaptured;
+        this.argTypes = argTypes;
+    }
+
+    private byte[] generate(Stmt.FunctionDecl decl) {
+        var cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return OBJECT;
+            }
+        };
+        cw.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, OBJECT,
+                new String[]{Type.getInternalName(CompiledFunction.class)});
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "constants", "[" + O, null, null).visitEnd();
+
+        var init = cw.visitMethod(ACC_PUBLIC, "<init>", "([" + O + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, THIS);
+        init.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        init.visitVarInsn(ALOAD, THIS);
+        init.visitVarInsn(ALOAD, 1);
+        init.visitFieldInsn(PUTFIELD, className, "constants", "[" + O);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "invoke",
+                "(" + Type.getDescriptor(Frame.class) + "[" + O + ")" + O, null, null);
+        mv.visitCode();
+
+        // locals are nulled in a prologue emitted after the body (when their count is known)
+        var prologue = new Label();
+        var body = new Label();
+        mv.visitJumpInsn(GOTO, prologue);
+        mv.visitLabel(body);
+
+        var deoptimize = new Label();
+        var assigned = new HashSet<String>();
+        assignedNames(decl.body(), assigned);
+        blocks.push(new HashMap<>());
+        for (var i = 0; i < decl.params().size(); i++) {
+            var param = decl.params().get(i);
+            if (blocks.peek().containsKey(param)) throw new Unsupported("duplicate parameter " + param);
+            var local = declare(param);
+            mv.visitVarInsn(ALOAD, ARGS);
+            push(i);
+            mv.visitMethodInsn(INVOKESTATIC, SUPPORT, "arg", "([" + O + "I)" + O, true);
+            mv.visitVarInsn(ASTORE, local);
+            if (argTypes != null && argTypes[i] == Integer.class && !assigned.contains(param)) {
+                var intLocal = nextLocal++;
+                maxLocal = Math.max(maxLocal, nextLocal);
+                intLocals.put(local, intLocal);
+                mv.visitVarInsn(ALOAD, local);
+                mv.visitTypeInsn(INSTANCEOF, INTEGER);
+                mv.visitJumpInsn(IFEQ, deoptimize);
+                mv.visitVarInsn(ALOAD, local);
+                mv.visitTypeInsn(CHECKCAST, INTEGER);
+                mv.visitMethodInsn(INVOKEVIRTUAL, INTEGER, "intValue", "()I", false);
+                mv.visitVarInsn(ISTORE, intLocal);
+            }
+        }
+        for (var statement : decl.body()) statement(statement);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(deoptimize);
+        var deoptimization = Type.getInternalName(Deoptimization.class);
+        mv.visitFieldInsn(GETSTATIC, deoptimization, "INSTANCE", "L" + deoptimization + ";");
+        mv.visitInsn(ATHROW);
+
+        mv.visitLabel(prologue);
+        for (var local = FIRST_LOCAL; local < maxLocal; local++) {
+            if (intLocals.containsValue(local)) {
+                mv.visitInsn(ICONST_0);
+                mv.visitVarInsn(ISTORE, local);
+            } else {
+                mv.visitInsn(ACONST_NULL);
+                mv.visitVarInsn(ASTORE, local);
+            }
+        }
+        mv.visitJumpInsn(GOTO, body);
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private void statement(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression s) {
+            expr(s.expr());
+            mv.visitInsn(POP);
+        } else if (stmt instanceof Stmt.VarDecl s) {
+            if (blocks.peek().containsKey(s.name())) throw new Unsupported("redeclared " + s.name());
+            optional(s.init());
+            mv.visitVarInsn(ASTORE, declare(s.name()));
+        } else if (stmt instanceof Stmt.Block s) {
+            var firstLocal = nextLocal;
+            blocks.push(new HashMap<>());
+            for (var statement : s.body()) statement(statement);
+            blocks.pop();
+            nextLocal = firstLocal;
+        } else if (stmt instanceof Stmt.If s) {
+            var otherwise = new Label();
+            var end = new Label();
+            condition(s.condition());
+            mv.visitJumpInsn(IFEQ, otherwise);
+            statement(s.then());
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(otherwise);
+            if (s.otherwise() != null) statement(s.otherwise());
+            mv.visitLabel(end);
+        } else if (stmt instanceof Stmt.While s) {
+            var start = new Label();
+            var end = new Label();
+            mv.visitLabel(start);
+            condition(s.condition());
+            mv.visitJumpInsn(IFEQ, end);
+            loops.push(new Label[]{start, end});
+            statement(s.body());
+            loops.pop();
+            mv.visitJumpInsn(GOTO, start);
+            mv.visitLabel(end);
+        } else if (stmt instanceof Stmt.Break) {
+            if (loops.isEmpty()) throw new Unsupported("break outside of loop");
+            mv.visitJumpInsn(GOTO, loops.peek()[1]);
+        } else if (stmt instanceof Stmt.Continue) {
+            if (loops.isEmpty()) throw new Unsupported("continue outside of loop");
+            mv.visitJumpInsn(GOTO, loops.peek()[0]);
+        } else if (stmt instanceof Stmt.Return s) {
+            optional(s.value());
+            mv.visitInsn(ARETURN);
+        } else if (stmt instanceof Stmt.Exit s) {
+            signal(SignalException.Exit.class, s.pos(), s.value());
+        } else if (stmt instanceof Stmt.Throw s) {
+            signal(SignalException.Throw.class, s.pos(), s.value());
+        } else if (!(stmt instanceof Stmt.Empty)) {
+            throw new Unsupported(stmt.getClass().getSimpleName());
+        }
+    }
+
+    private void expr(Expr expr) {
+        if (isInt(expr) && !(expr instanceof Expr.Literal)) {
+            intExpr(expr);
+            mv.visitMethodInsn(INVOKESTATIC, INTEGER, "valueOf", "(I)L" + INTEGER + ";", false);
+        } else if (expr instanceof Expr.Literal e) {
+            literal(e.value());
+        } else if (expr instanceof Expr.Identifier e) {
+            var local = resolve(e.name());
+            if (local >= 0) {
+                mv.visitVarInsn(ALOAD, local);
+            } else {
+                mv.visitVarInsn(ALOAD, FRAME);
+                mv.visitLdcInsn(e.name());
+                push(e.pos().packed());
+                invokeStatic(GlobalNode.class, "read", Object.class, Frame.class, String.class, long.class);
+            }
+        } else if (expr instanceof Expr.Assign e) {
+            var local = resolve(e.name());
+            if (local >= 0) {
+                expr(e.value());
+                mv.visitInsn(DUP);
+                mv.visitVarInsn(ASTORE, local);
+            } else {
+                mv.visitVarInsn(ALOAD, FRAME);
+                mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Frame.class), "globals",
+                        "()" + Type.getDescriptor(Scope.class), false);
+                mv.visitLdcInsn(e.name());
+                push(e.pos().packed());
+                mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Scope.class), "getDeclaringScope",
+                        "(Ljava/lang/String;J)" + Type.getDescriptor(Scope.class), false);
+                mv.visitLdcInsn(e.name());
+                expr(e.value());
+                invokeStatic(JvmSupport.class, "write", Object.class, Scope.class, String.class, Object.class);
+            }
+        } else if (expr instanceof Expr.IncrDecr e) {
+            var delta = switch (e.op()) {
+                case INCREMENT -> 1;
+                case DECREMENT -> -1;
+                default -> throw new Unsupported(e.op().name());
+            };
+            var local = resolve(e.name());
+            if (local >= 0) {
+                mv.visitVarInsn(ALOAD, local);
+                mv.visitInsn(DUP);
+                push(delta);
+                invokeStatic(JvmSupport.class, "increment", Object.class, Object.class, int.class);
+                mv.visitVarInsn(ASTORE, local);
+            } else {
+                mv.visitVarInsn(ALOAD, FRAME);
+                mv.visitLdcInsn(e.name());
+                push(e.pos().packed());
+                push(delta);
+                invokeStatic(JvmSupport.class, "increment", Object.class, Frame.class, String.class, long.class,
+                        int.class);
+            }
+        } else if (expr instanceof Expr.Binary e) {
+            binary(e);
+        } else if (expr instanceof Expr.Unary e) {
+            switch (e.op()) {
+                case NEGATE -> {
+                    expr(e.operand());
+                    invokeStatic(Types.class, "unaryMinExpr", Object.class, Object.class);
+                }
+                case NOT -> {
+                    condition(e.operand());
+                    not();
+                    box();
+                }
+                default -> throw new Unsupported(e.op().name());
+            }
+        } else if (expr instanceof Expr.Call e) {
+            if (resolve(e.name()) >= 0) throw new Unsupported("local function call " + e.name());
+            array(e.args());
+            mv.visitVarInsn(ALOAD, FRAME);
+            mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Frame.class), "globals",
+                    "()" + Type.getDescriptor(Scope.class), false);
+            mv.visitLdcInsn(e.name());
+            push(e.pos().packed());
+            mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Scope.class), "read",
+                    "(Ljava/lang/String;J)" + O, false);
+            mv.visitInsn(SWAP);
+            push(e.pos().packed());
+            invokeStatic(CallNode.class, "call", Object.class, Object.class, Object[].class, long.class);
+        } else if (expr instanceof Expr.IndexAccess e) {
+            expr(e.object());
+            expr(e.index());
+            push(e.pos().packed());
+            push(e.object().pos().packed());
+            invokeStatic(ArrayNode.class, "get", Object.class, Object.class, Object.class, long.class, long.class);
+        } else if (expr instanceof Expr.IndexAssign e) {
+            expr(e.object());
+            expr(e.index());
+            expr(e.value());
+            push(e.pos().packed());
+            push(e.object().pos().packed());
+            invokeStatic(ArrayNode.class, "set", Object.class, Object.class, Object.class, Object.class,
+                    long.class, long.class);
+        } else if (expr instanceof Expr.MemberAccess e) {
+            expr(e.object());
+            mv.visitLdcInsn(e.member());
+            push(e.memberPos().packed());
+            push(e.pos().packed());
+            push(e.object().pos().packed());
+            invokeStatic(StructNode.class, "get", Object.class, Object.class, String.class, long.class, long.class,
+                    long.class);
+        } else if (expr instanceof Expr.MemberAssign e) {
+            expr(e.object());
+            mv.visitLdcInsn(e.member());
+            expr(e.value());
+            push(e.memberPos().packed());
+            push(e.pos().packed());
+            push(e.object().pos().packed());
+            invokeStatic(StructNode.class, "set", Object.class, Object.class, String.class, Object.class,
+                    long.class, long.class, long.class);
+        } else if (expr instanceof Expr.ArrayInit e) {
+            array(e.elements());
+            invokeStatic(JvmSupport.class, "array", List.class, Object[].class);
+        } else if (expr instanceof Expr.ArrayDef e) {
+            expr(e.size());
+            push(e.pos().packed());
+            invokeStatic(ArrayNode.class, "create", List.class, Object.class, long.class);
+        } else if (expr instanceof Expr.StructInit e) {
+            constant(e.keys().toArray(String[]::new), "[Ljava/lang/String;");
+            array(e.values());
+            invokeStatic(StructNode.class, "create", Map.class, String[].class, Object[].class);
+        } else if (expr instanceof Expr.Native e) {
+            mv.visitVarInsn(ALOAD, FRAME);
+            mv.visitLdcInsn(e.name());
+            invokeStatic(GlobalNode.class, "isNative", Boolean.class, Frame.class, String.class);
+        } else {
+            throw new Unsupported(expr.getClass().getSimpleName());
+        }
+    }
+
+    private void binary(Expr.Binary e) {
+        switch (e.op()) {
+            case ADD -> arithmetic(e, "addExpr", Object.class);
+            case SUBTRACT -> arithmetic(e, "subtractExpr", Object.class);
+            case MULTIPLY -> arithmetic(e, "multiplyExpr", Number.class);
+            case DIVIDE -> arithmetic(e, "divideExpr", Number.class);
+            case MODULO -> arithmetic(e, "moduloExpr", Integer.class);
+            default -> {
+                condition(e);
+                box();
+            }
+        }
+    }
+
+    private void arithmetic(Expr.Binary e, String method, Class<?> returnType) {
+        expr(e.left());
+        expr(e.right());
+        invokeStatic(Types.class, method, returnType, Object.class, Object.class);
+    }
+
+    /**
+     * Leaves primitive boolean on the stack, without boxing comparison results.
+     */
+    private void condition(Expr expr) {
+        if (expr instanceof Expr.Binary e && isInt(e.left()) && isInt(e.right()) && intComparison(e.op()) != 0) {
+            var isTrue = new Label();
+            var end = new Label();
+            intExpr(e.left());
+            intExpr(e.right());
+            mv.visitJumpInsn(intComparison(e.op()), isTrue);
+            mv.visitInsn(ICONST_0);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(ICONST_1);
+            mv.visitLabel(end);
+        } else if (expr instanceof Expr.Binary e) {
+            switch (e.op()) {
+                case LESS -> compare(e, "lessThenExpr", Boolean.class, false);
+                case GREATER_EQUAL -> compare(e, "lessThenExpr", Boolean.class, true);
+                case GREATER -> compare(e, "greaterThenExpr", boolean.class, false);
+                case LESS_EQUAL -> compare(e, "greaterThenExpr", boolean.class, true);
+                case EQUAL -> compare(e, "equalsExpr", Boolean.class, false);
+                case NOT_EQUAL -> compare(e, "equalsExpr", Boolean.class, true);
+                case AND, OR -> {
+                    condition(e.left());
+                    condition(e.right());
+                    mv.visitInsn(e.op() == Operator.AND ? IAND : IOR);
+                }
+                default -> {
+                    expr(e);
+                    boolCast();
+                }
+            }
+        } else {
+            expr(expr);
+            boolCast();
+        }
+    }
+
+    /**
+     * Tells if the expression is statically known to evaluate to an integer.
+     */
+    private boolean isInt(Expr expr) {
+        if (expr instanceof Expr.Literal e) return e.value() instanceof Integer;
+        if (expr instanceof Expr.Identifier e) {
+            var local = resolve(e.name());
+            return local >= 0 && intLocals.containsKey(local);
+        }
+        if (expr instanceof Expr.Unary e) return e.op() == Operator.NEGATE && isInt(e.operand());
+        if (expr instanceof Expr.Binary e) return switch (e.op()) {
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO -> isInt(e.left()) && isInt(e.right());
+            default -> false;
+        };
+        return false;
+    }
+
+    /**
+     * Leaves primitive int on the stack; the expression must satisfy {@link #isInt}.
+     */
+    private void intExpr(Expr expr) {
+        if (expr instanceof Expr.Literal e) {
+            push((Integer) e.value());
+        } else if (expr instanceof Expr.Identifier e) {
+            mv.visitVarInsn(ILOAD, intLocals.get(resolve(e.name())));
+        } else if (expr instanceof Expr.Unary e) {
+            intExpr(e.operand());
+            mv.visitInsn(INEG);
+        } else if (expr instanceof Expr.Binary e) {
+            intExpr(e.left());
+            intExpr(e.right());
+            mv.visitInsn(switch (e.op()) {
+                case ADD -> IADD;
+                case SUBTRACT -> ISUB;
+                case MULTIPLY -> IMUL;
+                case DIVIDE -> IDIV;
+                case MODULO -> IREM;
+                default -> throw new IllegalStateException(e.op().name());
+            });
+        } else {
+            throw new IllegalStateException(expr.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * @return jump instruction comparing two ints for the operator, or 0 if it is not a comparison.
+     */
+    private static int intComparison(Operator op) {
+        return switch (op) {
+            case LESS -> IF_ICMPLT;
+            case LESS_EQUAL -> IF_ICMPLE;
+            case GREATER -> IF_ICMPGT;
+            case GREATER_EQUAL -> IF_ICMPGE;
+            case EQUAL -> IF_ICMPEQ;
+            case NOT_EQUAL -> IF_ICMPNE;
+            default -> 0;
+        };
+    }
+
+    private void compare(Expr.Binary e, String method, Class<?> returnType, boolean negate) {
+        expr(e.left());
+        expr(e.right());
+        invokeStatic(Types.class, method, returnType, Object.class, Object.class);
+        if (returnType == Boolean.class) unbox();
+        if (negate) not();
+    }
+
+    private void boolCast() {
+        invokeStatic(Types.class, "boolCast", Boolean.class, Object.class);
+        unbox();
+    }
+
+    private void not() {
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IXOR);
+    }
+
+    private void box() {
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
+    }
+
+    private void unbox() {
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z", false);
+    }
+
+    private void signal(Class<? extends SignalException> type, Pos pos, Expr payload) {
+        var internalName = Type.getInternalName(type);
+        mv.visitTypeInsn(NEW, internalName);
+        mv.visitInsn(DUP);
+        constant(pos, POS);
+        optional(payload);
+        mv.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", "(" + POS + O + ")V", false);
+        mv.visitInsn(ATHROW);
+    }
+
+    private void literal(Object value) {
+        if (value == null) {
+            mv.visitInsn(ACONST_NULL);
+        } else if (value instanceof Integer i && i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+            // Integer.valueOf is served from its cache
+            push(i);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+        } else if (value instanceof Boolean b) {
+            mv.visitFieldInsn(GETSTATIC, "java/lang/Boolean", b ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        } else if (value instanceof String s) {
+            mv.visitLdcInsn(s);
+        } else {
+            constant(value, O);
+        }
+    }
+
+    private void optional(Expr expr) {
+        if (expr != null) expr(expr);
+        else mv.visitInsn(ACONST_NULL);
+    }
+
+    private void array(List<Expr> elements) {
+        push(elements.size());
+        mv.visitTypeInsn(ANEWARRAY, OBJECT);
+        for (var i = 0; i < elements.size(); i++) {
+            mv.visitInsn(DUP);
+            push(i);
+            expr(elements.get(i));
+            mv.visitInsn(AASTORE);
+        }
+    }
+
+    private void constant(Object value, String descriptor) {
+        var index = constantIndex.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitFieldInsn(GETFIELD, className, "constants", "[" + O);
+        push(index);
+        mv.visitInsn(AALOAD);
+        if (!O.equals(descriptor)) {
+            mv.visitTypeInsn(CHECKCAST, Type.getType(descriptor).getInternalName());
+        }
+    }
+
+    private void push(int value) {
+        mv.visitLdcInsn(value);
+    }
+
+    private void push(long value) {
+        mv.visitLdcInsn(value);
+    }
+
+    private void invokeStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... params) {
+        var descriptor = Type.getMethodDescriptor(Type.getType(returnType),
+                Arrays.stream(params).map(Type::getType).toArray(Type[]::new));
+        mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(owner), name, descriptor, owner.isInterface());
+    }
+
+    private static void assignedNames(List<Stmt> statements, Set<String> names) {
+        for (var stmt : statements) assignedNames(stmt, names);
+    }
+
+    private static void assignedNames(Stmt stmt, Set<String> names) {
+        if (stmt instanceof Stmt.Expression s) assignedNames(s.expr(), names);
+        else if (stmt instanceof Stmt.VarDecl s) assignedNames(s.init(), names);
+        else if (stmt instanceof Stmt.Block s) assignedNames(s.body(), names);
+        else if (stmt instanceof Stmt.If s) {
+            assignedNames(s.condition(), names);
+            assignedNames(s.then(), names);
+            if (s.otherwise() != null) assignedNames(s.otherwise(), names);
+        } else if (stmt instanceof Stmt.While s) {
+            assignedNames(s.condition(), names);
+            assignedNames(s.body(), names);
+        } else if (stmt instanceof Stmt.Return s) assignedNames(s.value(), names);
+        else if (stmt instanceof Stmt.Exit s) assignedNames(s.value(), names);
+        else if (stmt instanceof Stmt.Throw s) assignedNames(s.value(), names);
+    }
+
+    private static void assignedNames(Expr expr, Set<String> names) {
+        if (expr instanceof Expr.Assign e) {
+            names.add(e.name());
+            assignedNames(e.value(), names);
+        } else if (expr instanceof Expr.IncrDecr e) {
+            names.add(e.name());
+        } else if (expr instanceof Expr.Unary e) {
+            assignedNames(e.operand(), names);
+        } else if (expr instanceof Expr.Binary e) {
+            assignedNames(e.left(), names);
+            assignedNames(e.right(), names);
+        } else if (expr instanceof Expr.Call e) {
+            e.args().forEach(arg -> assignedNames(arg, names));
+        } else if (expr instanceof Expr.MemberAccess e) {
+            assignedNames(e.object(), names);
+        } else if (expr instanceof Expr.MemberAssign e) {
+            assignedNames(e.object(), names);
+            assignedNames(e.value(), names);
+        } else if (expr instanceof Expr.IndexAccess e) {
+            assignedNames(e.object(), names);
+            assignedNames(e.index(), names);
+        } else if (expr instanceof Expr.IndexAssign e) {
+            assignedNames(e.object(), names);
+            assignedNames(e.index(), names);
+            assignedNames(e.value(), names);
+        } else if (expr instanceof Expr.ArrayInit e) {
+            e.elements().forEach(element -> assignedNames(element, names));
+        } else if (expr instanceof Expr.ArrayDef e) {
+            assignedNames(e.size(), names);
+        } else if (expr instanceof Expr.StructInit e) {
+            e.values().forEach(value -> assignedNames(value, names));
+        }
+    }
+
+    private int declare(String name) {
+        var local = nextLocal++;
+        maxLocal = Math.max(maxLocal, nextLocal);
+        blocks.peek().put(name, local);
+        return local;
+    }
+
+    /**
+     * @return JVM local index of the name or -1 if it is global.
+     */
+    private int resolve(String name) {
+        for (var block : blocks) {
+            var local = block.get(name);
+            if (local != null) return local;
+        }
+        if (isCaptured.test(name)) throw new Unsupported("captured variable " + name);
+        return -1;
+    }
+
+    private static class Unsupported extends RuntimeException {
+        Unsupported(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
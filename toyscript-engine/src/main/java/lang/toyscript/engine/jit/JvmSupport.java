@@ -0,0 +1,40 @@
+package lang.toyscript.engine.jit;
+
+import lang.toyscript.engine.registry.Frame;
+import lang.toyscript.engine.registry.Scope;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static lang.toyscript.engine.visitor.Types.numberCast;
+
+/**
+ * Runtime helpers called from generated code.
+ */
+public interface JvmSupport {
+
+    static Object arg(Object[] args, int index) {
+        return index < args.length ? args[index] : null;
+    }
+
+    static Object write(Scope scope, String name, Object value) {
+        scope.set(name, value);
+        return value;
+    }
+
+    static Object increment(Frame frame, String name, long pos, int delta) {
+        var scopeRef = frame.globals().getDeclaringScope(name, pos);
+        var value = scopeRef.get(name);
+        scopeRef.set(name, numberCast(value).intValue() + delta);
+        return value;
+    }
+
+    static Object increment(Object value, int delta) {
+        return numberCast(value).intValue() + delta;
+    }
+
+    static List<Object> array(Object[] elements) {
+        return new ArrayList<>(Arrays.asList(elements));
+    }
+}
@@ -0,0 +1,69 @@
+package lang.toyscript.engine.lib;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Standard library bindings of one evaluation. Functions independent of the script context are read from
+ * the shared {@link StandardLib#SHARED} map; {@code read} and {@code print} are bound to the reader and writer
+ * when created. Reading never changes the instance, so it may be shared by threads evaluating concurrently.
+ * Declarations and assignments go to a map of this instance only, created on first write,
+ * so the shared part never changes and an evaluation not writing to the library allocates nothing more.
+ */
+class LibraryBindings extends AbstractMap<String, Object> {
+
+    private static final String READ = "read";
+
+    private static final String PRINT = "print";
+
+    private final Object read;
+
+    private final Object print;
+
+    private Map<String, Object> own;
+
+    LibraryBindings(Reader reader, Writer writer) {
+        this.read = StandardLib.readLine(reader);
+        this.print = StandardLib.printLine(writer);
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (own != null && own.containsKey(key)) return own.get(key);
+        if (READ.equals(key)) return read;
+        if (PRINT.equals(key)) return print;
+        return StandardLib.SHARED.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return own != null && own.containsKey(key) || READ.equals(key) || PRINT.equals(key)
+                || StandardLib.SHARED.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        var previous = get(key);
+        own().put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        var all = new HashMap<>(StandardLib.SHARED);
+        all.put(READ, read);
+        all.put(PRINT, print);
+        if (own != null) all.putAll(own);
+        return Collections.unmodifiableMap(all).entrySet();
+    }
+
+    private Map<String, Object> own() {
+        if (own == null) own = new HashMap<>();
+        return own;
+    }
+}
@@ -0,0 +1,138 @@
+package lang.toyscript.engine.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Function value of a {@code memo} function - caches results of the wrapped function by argument values,
+ * evicting the least recently used entry. Arrays and structs are compared by their contents at call time;
+ * arguments holding themselves are not cached. Results are shared between calls, so the function is expected
+ * to be pure and not to return values its callers modify. The wrapped function runs outside the lock,
+ * so recursive calls may fill the cache meanwhile.
+ */
+public class MemoizedFunction implements Function<Object[], Object> {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private final Function<Object[], Object> function;
+
+    private final int maxSize;
+
+    private final Map<List<Object>, Object> entries;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public MemoizedFunction(Function<Object[], Object> function) {
+        this(function, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of cached results; {@code 0} disables caching.
+     */
+    public MemoizedFunction(Function<Object[], Object> function, int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+        this.function = function;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                if (size() <= MemoizedFunction.this.maxSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Object apply(Object[] args) {
+        var key = key(args);
+        if (key == null || maxSize == 0) return function.apply(args);
+        synchronized (this) {
+            var result = entries.get(key);
+            if (result != null || entries.containsKey(key)) {
+                hits++;
+                return result;
+            }
+            misses++;
+        }
+        var result = function.apply(args);
+        synchronized (this) {
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    public Function<Object[], Object> function() {
+        return function;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size());
+    }
+
+    /**
+     * @return copy of the arguments with arrays and structs replaced by immutable snapshots,
+     * or {@code null} if any of them refers to itself.
+     */
+    private static List<Object> key(Object[] args) {
+        var path = Collections.newSetFromMap(new IdentityHashMap<>());
+        var key = new ArrayList<>(args.length);
+        for (var arg : args) {
+            var value = snapshot(arg, path);
+            if (value == path) return null;
+            key.add(value);
+        }
+        return key;
+    }
+
+    /**
+     * @return immutable copy of the value, or {@code path} itself for cyclic values.
+     */
+    private static Object snapshot(Object value, Set<Object> path) {
+        if (value instanceof List<?> list) {
+            if (!path.add(list)) return path;
+            var copy = new ArrayList<>(list.size());
+            for (var element : list) {
+                var snapshot = snapshot(element, path);
+                if (snapshot == path) return path;
+                copy.add(snapshot);
+            }
+            path.remove(list);
+            return Collections.unmodifiableList(copy);
+        }
+        if (value instanceof Map<?, ?> map) {
+            if (!path.add(map)) return path;
+            var copy = new LinkedHashMap<Object, Object>();
+            for (var entry : map.entrySet()) {
+                var snapshot = snapshot(entry.getValue(), path);
+                if (snapshot == path) return path;
+                copy.put(entry.getKey(), snapshot);
+            }
+            path.remove(map);
+            return Collections.unmodifiableMap(copy);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -8,13 +8,12 @@ import java.io.Reader;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.function.Function.identity;
-import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toUnmodifiableMap;
 import static lang.toyscript.engine.visitor.Types.typeNames;
 
 public interface StandardLib {
@@ -49,6 +48,19 @@ public interface StandardLib {
         return null;
     });
 
+    JavaFunctionCall typeof = new JavaFunctionCall("obj", args -> Types.typeName(args[0]));
+
+    /**
+     * Library functions and constants independent of the script context, built once and shared by all evaluations.
+     */
+    Map<String, Object> SHARED = Map.of(
+            "readFile", readFile,
+            "writeFile", writeFile,
+            "length", length,
+            "keys", keys,
+            "typeof", typeof,
+            "Types", typeNames().stream().collect(toUnmodifiableMap(String::toUpperCase, identity())));
+
     static JavaFunctionCall printLine(Writer writer) {
         return new JavaFunctionCall("function(line)", args -> {
             if (args.length > 0) writer.write(String.valueOf(args[0]));
@@ -68,16 +80,10 @@ public interface StandardLib {
         return createBindings(scriptContext.getReader(), scriptContext.getWriter());
     }
 
+    /**
+     * @return bindings of the library over {@link #SHARED}, with {@code read} and {@code print} bound to given streams.
+     */
     static Map<String, Object> createBindings(Reader reader, Writer writer) {
-        var m = new HashMap<String, Object>();
-        m.put("read", readLine(reader));
-        m.put("print", printLine(writer));
-        m.put("readFile", readFile);
-        m.put("writeFile", writeFile);
-        m.put("length", length);
-        m.put("keys", keys);
-        m.put("typeof", new JavaFunctionCall("obj", args -> Types.typeName(args[0])));
-        m.put("Types", typeNames().stream().collect(toMap(String::toUpperCase, identity())));
-        return m;
+        return new LibraryBindings(reader, writer);
     }
 }
@@ -0,0 +1,130 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static lang.toyscript.engine.visitor.Types.numberCast;
+
+public abstract class ArrayNode extends Node {
+
+    protected ArrayNode(Pos pos) {
+        super(pos);
+    }
+
+    public static List<Object> create(Object size, long pos) {
+        try {
+            return Arrays.asList(new Object[numberCast(size).intValue()]);
+        } catch (Exception e) {
+            throw SignalException.wrap(Pos.unpack(pos), e);
+        }
+    }
+
+    public static Object get(Object obj, Object key, long pos, long objectPos) {
+        try {
+            if (obj instanceof List<?> arr) {
+                return arr.get(numberCast(key).intValue());
+            } else if (obj instanceof String str) {
+                return String.valueOf(str.charAt(numberCast(key).intValue()));
+            }
+            throw SignalException.typeMismatch(obj, Pos.unpack(objectPos), List.class, String.class);
+        } catch (Exception e) {
+            throw SignalException.wrap(Pos.unpack(pos), e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object set(Object obj, Object key, Object value, long pos, long objectPos) {
+        if (obj instanceof List arr) {
+            try {
+                arr.set(numberCast(key).intValue(), value);
+                return value;
+            } catch (Exception e) {
+                throw SignalException.wrap(Pos.unpack(pos), e);
+            }
+        }
+        throw SignalException.typeMismatch(obj, Pos.unpack(objectPos), List.class);
+    }
+
+    public static class Init extends ArrayNode {
+
+        private final Node[] elements;
+
+        public Init(Pos pos, Node[] elements) {
+            super(pos);
+            this.elements = elements;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = new ArrayList<>(elements.length);
+            for (var element : elements) {
+                value.add(element.execute(frame));
+            }
+            return value;
+        }
+    }
+
+    public static class Def extends ArrayNode {
+
+        private final Node size;
+
+        public Def(Pos pos, Node size) {
+            super(pos);
+            this.size = size;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return create(size.execute(frame), position);
+        }
+    }
+
+    public static class Read extends ArrayNode {
+
+        private final Node object;
+
+        private final Node index;
+
+        public Read(Pos pos, Node object, Node index) {
+            super(pos);
+            this.object = object;
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var obj = object.execute(frame);
+            var key = index.execute(frame);
+            return get(obj, key, position, object.position);
+        }
+    }
+
+    public static class Write extends ArrayNode {
+
+        private final Node object;
+
+        private final Node index;
+
+        private final Node value;
+
+        public Write(Pos pos, Node object, Node index, Node value) {
+            super(pos);
+            this.object = object;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var obj = object.execute(frame);
+            var key = index.execute(frame);
+            var result = value.execute(frame);
+            return set(obj, key, result, position, object.position);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.registry.Frame;
+
+import static lang.toyscript.engine.visitor.Types.addExpr;
+import static lang.toyscript.engine.visitor.Types.boolCast;
+import static lang.toyscript.engine.visitor.Types.divideExpr;
+import static lang.toyscript.engine.visitor.Types.equalsExpr;
+import static lang.toyscript.engine.visitor.Types.greaterThenExpr;
+import static lang.toyscript.engine.visitor.Types.lessThenExpr;
+import static lang.toyscript.engine.visitor.Types.moduloExpr;
+import static lang.toyscript.engine.visitor.Types.multiplyExpr;
+import static lang.toyscript.engine.visitor.Types.subtractExpr;
+
+/**
+ * Binary operators. Arithmetic and comparison nodes keep an inline cache of operand types seen at their site
+ * and test only those before falling back to generic {@link lang.toyscript.engine.visitor.Types} operation.
+ * A new combination of types widens the cache; operands of no specialized kind turn the node {@link #GENERIC}.
+ * While a node has seen integers only, it executes its operands with {@link #executeInt} and boxes nothing
+ * but its own result, if that is requested generically.
+ */
+public abstract class BinaryNode extends Node {
+
+    /**
+     * Both operands are integers.
+     */
+    protected static final int INT = 1;
+
+    /**
+     * Both operands are numbers, at least one of them float.
+     */
+    protected static final int FLOAT = 2;
+
+    /**
+     * At least one operand is a string (concatenation).
+     */
+    protected static final int STRING = 4;
+
+    protected static final int GENERIC = 8;
+
+    protected final Node left;
+
+    protected final Node right;
+
+    /**
+     * Kinds of operands seen so far.
+     */
+    protected int seen;
+
+    protected BinaryNode(Pos pos, Node left, Node right) {
+        super(pos);
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Called on cache miss - adds kind of the operands to the cache.
+     *
+     * @param kinds specializations supported by the operator.
+     */
+    protected void specialize(Object value0, Object value1, int kinds) {
+        var kind = value0 instanceof Integer && value1 instanceof Integer ? INT :
+                isFloat(value0, value1) ? FLOAT :
+                        value0 instanceof String || value1 instanceof String ? STRING : GENERIC;
+        seen = (kind & kinds) != 0 ? seen | kind : GENERIC;
+    }
+
+    protected static boolean isFloat(Object value0, Object value1) {
+        return value0 instanceof Float ? value1 instanceof Float || value1 instanceof Integer :
+                value0 instanceof Integer && value1 instanceof Float;
+    }
+
+    protected static float floatValue(Object value) {
+        return ((Number) value).floatValue();
+    }
+
+    /**
+     * Arithmetic operator with integer result on integer operands; executes unboxed while the site has seen
+     * integers only and falls back to {@link #generic} once it sees anything else.
+     */
+    abstract static class Arithmetic extends BinaryNode {
+
+        Arithmetic(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        protected abstract int op(int value0, int value1);
+
+        /**
+         * Operation on operands other than two integers - the cached cases first, then the generic one.
+         */
+        protected abstract Object generic(Object value0, Object value1);
+
+        @Override
+        public Object execute(Frame frame) {
+            if (seen == INT) {
+                try {
+                    return executeInt(frame);
+                } catch (UnexpectedResultException e) {
+                    return e.result();
+                }
+            }
+            return execute(left.execute(frame), right.execute(frame));
+        }
+
+        @Override
+        public int executeInt(Frame frame) throws UnexpectedResultException {
+            if (seen != INT) return super.executeInt(frame);
+            int i0;
+            try {
+                i0 = left.executeInt(frame);
+            } catch (UnexpectedResultException e) {
+                return expectInt(execute(e.result(), right.execute(frame)));
+            }
+            int i1;
+            try {
+                i1 = right.executeInt(frame);
+            } catch (UnexpectedResultException e) {
+                return expectInt(execute(i0, e.result()));
+            }
+            return op(i0, i1);
+        }
+
+        Object execute(Object value0, Object value1) {
+            if ((seen & INT) != 0 && value0 instanceof Integer i0 && value1 instanceof Integer i1) return op(i0, i1);
+            return generic(value0, value1);
+        }
+    }
+
+    /**
+     * Comparison operator; tests integer operands unboxed while the site has seen integers only
+     * and falls back to {@link #generic} once it sees anything else.
+     */
+    abstract static class Comparison extends BinaryNode {
+
+        Comparison(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        protected abstract boolean test(int value0, int value1);
+
+        /**
+         * Comparison of operands other than two integers - the cached cases first, then the generic one.
+         */
+        protected abstract Object generic(Object value0, Object value1);
+
+        @Override
+        public Object execute(Frame frame) {
+            if (seen == INT) return executeBoolean(frame);
+            return execute(left.execute(frame), right.execute(frame));
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            if (seen != INT) return super.executeBoolean(frame);
+            int i0;
+            try {
+                i0 = left.executeInt(frame);
+            } catch (UnexpectedResultException e) {
+                return boolCast(execute(e.result(), right.execute(frame)));
+            }
+            int i1;
+            try {
+                i1 = right.executeInt(frame);
+            } catch (UnexpectedResultException e) {
+                return boolCast(execute(i0, e.result()));
+            }
+            return test(i0, i1);
+        }
+
+        Object execute(Object value0, Object value1) {
+            if ((seen & INT) != 0 && value0 instanceof Integer i0 && value1 instanceof Integer i1) {
+                return test(i0, i1);
+            }
+            return generic(value0, value1);
+        }
+    }
+
+    public static class Add extends Arithmetic {
+        public Add(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected int op(int value0, int value1) {
+            return value0 + value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) + floatValue(value1);
+            if ((seen & STRING) != 0 && (value0 instanceof String || value1 instanceof String)) {
+                return String.valueOf(value0).concat(String.valueOf(value1));
+            }
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT | STRING);
+            return addExpr(value0, value1);
+        }
+    }
+
+    public static class Subtract extends Arithmetic {
+        public Subtract(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected int op(int value0, int value1) {
+            return value0 - value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) - floatValue(value1);
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return subtractExpr(value0, value1);
+        }
+    }
+
+    public static class Multiply extends Arithmetic {
+        public Multiply(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected int op(int value0, int value1) {
+            return value0 * value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) * floatValue(value1);
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return multiplyExpr(value0, value1);
+        }
+    }
+
+    public static class Divide extends Arithmetic {
+        public Divide(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected int op(int value0, int value1) {
+            return value0 / value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) / floatValue(value1);
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return divideExpr(value0, value1);
+        }
+    }
+
+    public static class Modulo extends Arithmetic {
+        public Modulo(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected int op(int value0, int value1) {
+            return value0 % value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if (seen != GENERIC) specialize(value0, value1, INT);
+            return moduloExpr(value0, value1);
+        }
+    }
+
+    public static class Less extends Comparison {
+        public Less(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 < value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) < floatValue(value1);
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return lessThenExpr(value0, value1);
+        }
+    }
+
+    public static class LessEqual extends Comparison {
+        public LessEqual(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 <= value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return !(floatValue(value0) > floatValue(value1));
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return !greaterThenExpr(value0, value1);
+        }
+    }
+
+    public static class Greater extends Comparison {
+        public Greater(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 > value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return floatValue(value0) > floatValue(value1);
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return greaterThenExpr(value0, value1);
+        }
+    }
+
+    public static class GreaterEqual extends Comparison {
+        public GreaterEqual(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 >= value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) return !(floatValue(value0) < floatValue(value1));
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return !lessThenExpr(value0, value1);
+        }
+    }
+
+    public static class Equal extends Comparison {
+        public Equal(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 == value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) {
+                return value0 == value1 || floatValue(value0) == floatValue(value1);
+            }
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return equalsExpr(value0, value1);
+        }
+    }
+
+    public static class NotEqual extends Comparison {
+        public NotEqual(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        protected boolean test(int value0, int value1) {
+            return value0 != value1;
+        }
+
+        @Override
+        protected Object generic(Object value0, Object value1) {
+            if ((seen & FLOAT) != 0 && isFloat(value0, value1)) {
+                return !(value0 == value1 || floatValue(value0) == floatValue(value1));
+            }
+            if (seen != GENERIC) specialize(value0, value1, INT | FLOAT);
+            return !equalsExpr(value0, value1);
+        }
+    }
+
+    /**
+     * Both operands are always evaluated - logical operators do not short-circuit in ToyScript.
+     */
+    public static class And extends BinaryNode {
+        public And(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return executeBoolean(frame);
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            var value0 = left.executeBoolean(frame);
+            var value1 = right.executeBoolean(frame);
+            return value0 && value1;
+        }
+    }
+
+    /**
+     * Both operands are always evaluated - logical operators do not short-circuit in ToyScript.
+     */
+    public static class Or extends BinaryNode {
+        public Or(Pos pos, Node left, Node right) {
+            super(pos, left, right);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return executeBoolean(frame);
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            var value0 = left.executeBoolean(frame);
+            var value1 = right.executeBoolean(frame);
+            return value0 || value1;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.registry.Frame;
+
+public class BlockNode extends Node {
+
+    private final Node[] body;
+
+    public BlockNode(Pos pos, Node[] body) {
+        super(pos);
+        this.body = body;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        for (var statement : body) {
+            var result = statement.execute(frame);
+            if (result instanceof Completion) return result;
+        }
+        return null;
+    }
+}
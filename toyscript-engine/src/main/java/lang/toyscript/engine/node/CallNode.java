@@ -0,0 +1,118 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.CallStack;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+public abstract class CallNode extends Node {
+
+    public static final String STACK_OVERFLOW = "Stack overflow in script function calls";
+
+    protected final String name;
+
+    private final Node[] args;
+
+    protected CallNode(Pos pos, String name, Node[] args) {
+        super(pos);
+        this.name = name;
+        this.args = args;
+    }
+
+    /**
+     * Calls the function, counting it on the {@link CallStack}. A script function is invoked directly rather than
+     * through {@link ScriptFunction#apply}, to keep the Java frames per script call few. Java stack overflow
+     * is raised as a script error at the call.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object call(Object obj, Object[] args, long pos) {
+        if (obj instanceof Function function) {
+            var calls = CallStack.current();
+            calls.enter(pos);
+            try {
+                if (function instanceof ScriptFunction script) {
+                    return script.declaration().invoke(script.enclosingFrame(), args);
+                }
+                return function.apply(args);
+            } catch (Exception e) {
+                throw SignalException.wrap(Pos.unpack(pos), e);
+            } catch (StackOverflowError e) {
+                throw new SignalException.Throw(Pos.unpack(pos), STACK_OVERFLOW);
+            } finally {
+                calls.exit();
+            }
+        }
+        throw SignalException.typeMismatch(obj, Pos.unpack(pos), Function.class);
+    }
+
+    protected abstract Object callee(Frame frame);
+
+    @Override
+    public Object execute(Frame frame) {
+        var values = arguments(frame);
+        return call(callee(frame), values, position);
+    }
+
+    Object[] arguments(Frame frame) {
+        var values = new Object[args.length];
+        for (var i = 0; i < args.length; i++) {
+            values[i] = args[i].execute(frame);
+        }
+        return values;
+    }
+
+    /**
+     * Call in tail position of a function. A script function is not called here but returned
+     * as {@link TailCall} to the invoking {@link FunctionNode}, which runs it in place of the caller.
+     */
+    public static class Tail extends Node {
+
+        private final CallNode call;
+
+        public Tail(Pos pos, CallNode call) {
+            super(pos);
+            this.call = call;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var values = call.arguments(frame);
+            var callee = call.callee(frame);
+            if (callee instanceof ScriptFunction function) return function.tailCall(values, call.position);
+            return call(callee, values, call.position);
+        }
+    }
+
+    public static class Global extends CallNode {
+        public Global(Pos pos, String name, Node[] args) {
+            super(pos, name, args);
+        }
+
+        @Override
+        protected Object callee(Frame frame) {
+            return frame.globals().read(name, position);
+        }
+    }
+
+    public static class Local extends CallNode {
+
+        private final int depth;
+
+        private final int slot;
+
+        public Local(Pos pos, String name, int depth, int slot, Node[] args) {
+            super(pos, name, args);
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        protected Object callee(Frame frame) {
+            var callee = frame.get(depth, slot);
+            if (callee instanceof LocalNode.Undeclared undeclared) throw undeclared.error(pos());
+            return callee;
+        }
+    }
+}
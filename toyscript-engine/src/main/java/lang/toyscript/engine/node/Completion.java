@@ -0,0 +1,11 @@
+package lang.toyscript.engine.node;
+
+/**
+ * Abrupt completion of a statement, returned (not thrown) by statement nodes and passed up until a loop
+ * or function consumes it. The value of {@code return} is stored in the {@link lang.toyscript.engine.registry.Frame}.
+ */
+public enum Completion {
+    BREAK,
+    CONTINUE,
+    RETURN
+}
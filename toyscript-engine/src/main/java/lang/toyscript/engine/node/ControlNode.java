@@ -0,0 +1,119 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.jit.FunctionProfile;
+import lang.toyscript.engine.registry.Frame;
+
+public abstract class ControlNode extends Node {
+
+    protected ControlNode(Pos pos) {
+        super(pos);
+    }
+
+    public static class If extends ControlNode {
+
+        private final Node condition;
+
+        private final Node then;
+
+        private final Node otherwise;
+
+        public If(Pos pos, Node condition, Node then, Node otherwise) {
+            super(pos);
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object result = null;
+            if (condition.executeBoolean(frame)) {
+                result = then.execute(frame);
+            } else if (otherwise != null) {
+                result = otherwise.execute(frame);
+            }
+            return result instanceof Completion ? result : null;
+        }
+    }
+
+    public static class While extends ControlNode {
+
+        private final Node condition;
+
+        private final Node body;
+
+        private final FunctionProfile profile;
+
+        public While(Pos pos, Node condition, Node body) {
+            this(pos, condition, body, null);
+        }
+
+        /**
+         * @param profile profile of the enclosing function counting back-edges, or {@code null}.
+         */
+        public While(Pos pos, Node condition, Node body, FunctionProfile profile) {
+            super(pos);
+            this.condition = condition;
+            this.body = body;
+            this.profile = profile;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            while (condition.executeBoolean(frame)) {
+                if (profile != null) profile.backEdge();
+                Object result;
+                try {
+                    result = body.execute(frame);
+                } catch (SignalException.Continue e) {
+                    // signalled from a called function
+                    continue;
+                } catch (SignalException.Break e) {
+                    break;
+                }
+                if (result == Completion.BREAK) break;
+                if (result == Completion.RETURN) return result;
+            }
+            return null;
+        }
+    }
+
+    public static class Try extends ControlNode {
+
+        private final Node body;
+
+        private final int errorSlot;
+
+        private final Node[] handler;
+
+        /**
+         * @param errorSlot frame slot receiving the thrown payload, or -1 if error is not named.
+         */
+        public Try(Pos pos, Node body, int errorSlot, Node[] handler) {
+            super(pos);
+            this.body = body;
+            this.errorSlot = errorSlot;
+            this.handler = handler;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object result;
+            try {
+                result = body.execute(frame);
+            } catch (SignalException.Throw e) {
+                if (errorSlot >= 0) {
+                    frame.set(0, errorSlot, e.payload());
+                }
+                for (var statement : handler) {
+                    result = statement.execute(frame);
+                    if (result instanceof Completion) return result;
+                }
+                return null;
+            }
+            return result instanceof Completion ? result : null;
+        }
+    }
+}
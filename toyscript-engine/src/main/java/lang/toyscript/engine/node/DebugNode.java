@@ -0,0 +1,28 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.registry.Frame;
+
+public class DebugNode extends Node {
+
+    private final String rule;
+
+    private final Node delegate;
+
+    public DebugNode(String rule, Node delegate) {
+        super(delegate.pos());
+        this.rule = rule;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        LOGGER.debug("Enter {} [line={}; col={}]", rule, pos().line(), pos().column());
+        var result = delegate.execute(frame);
+        LOGGER.debug("Exit {} [line={}; col={}]", rule, pos().line(), pos().column());
+        return result;
+    }
+
+    public Node delegate() {
+        return delegate;
+    }
+}
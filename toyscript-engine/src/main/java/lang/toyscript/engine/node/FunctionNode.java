@@ -0,0 +1,143 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.jit.CompiledFunction;
+import lang.toyscript.engine.jit.Deoptimization;
+import lang.toyscript.engine.jit.FunctionProfile;
+import lang.toyscript.engine.lib.MemoizedFunction;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+/**
+ * Function definition. Evaluates to a new {@link ScriptFunction} closure over the current frame;
+ * declaring it under its name is left to the enclosing declaration node.
+ * The body is linked after the enclosing block is compiled, so it can refer to any name declared there.
+ * If the body was also translated to bytecode, invocations run the {@link CompiledFunction} instead.
+ * With tiering enabled the function is profiled while interpreted and translated once hot; failed type guard
+ * of the translated code switches it back to the interpreter.
+ * Calls in tail position of the interpreted body are run by the invoking loop, see {@link TailCall}.
+ * A {@code memo} function evaluates to the closure wrapped in a {@link MemoizedFunction}.
+ * Invocations may run concurrently; promotion and deoptimization are synchronized on the node.
+ */
+public class FunctionNode extends Node {
+
+    private final String name;
+
+    private final int paramCount;
+
+    private final String signature;
+
+    private final boolean memo;
+
+    private Node[] body;
+
+    private int frameSize;
+
+    private volatile CompiledFunction compiled;
+
+    private FunctionProfile profile;
+
+    private Function<Class<?>[], CompiledFunction> optimizer;
+
+    public FunctionNode(Pos pos, String name, String[] params) {
+        this(pos, name, params, false);
+    }
+
+    public FunctionNode(Pos pos, String name, String[] params, boolean memo) {
+        super(pos);
+        this.name = name;
+        this.paramCount = params.length;
+        this.signature = "function(" + String.join(", ", params) + ")";
+        this.memo = memo;
+    }
+
+    public void link(Node[] body, int frameSize) {
+        link(body, frameSize, null);
+    }
+
+    public void link(Node[] body, int frameSize, CompiledFunction compiled) {
+        this.body = body;
+        this.frameSize = frameSize;
+        this.compiled = compiled;
+    }
+
+    /**
+     * @param optimizer translates the function specialized on given argument types; may return {@code null}.
+     */
+    public void tiered(FunctionProfile profile, Function<Class<?>[], CompiledFunction> optimizer) {
+        this.profile = profile;
+        this.optimizer = optimizer;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        var function = new ScriptFunction(this, frame);
+        return memo ? new MemoizedFunction(function) : function;
+    }
+
+    /**
+     * Invokes the function, then the functions it calls in tail position one after another,
+     * so that tail calls do not grow the Java stack.
+     */
+    Object invoke(Frame enclosingFrame, Object[] args) {
+        var result = invokeOnce(enclosingFrame, args);
+        while (result instanceof TailCall call) {
+            try {
+                result = call.declaration().invokeOnce(call.enclosingFrame(), call.args());
+            } catch (Exception e) {
+                throw SignalException.wrap(Pos.unpack(call.position()), e);
+            }
+        }
+        return result;
+    }
+
+    private Object invokeOnce(Frame enclosingFrame, Object[] args) {
+        var compiled = this.compiled;
+        if (compiled != null) {
+            try {
+                return compiled.invoke(enclosingFrame, args);
+            } catch (Deoptimization e) {
+                deoptimize(compiled);
+            }
+        }
+        if (profile != null && profile.record(args)) {
+            promote();
+            if (this.compiled != null) return invokeOnce(enclosingFrame, args);
+        }
+        var frame = enclosingFrame.createChild(frameSize);
+        var count = Math.min(paramCount, args.length);
+        for (var i = 0; i < count; i++) frame.set(0, i, args[i]);
+        for (var statement : body) {
+            if (statement.execute(frame) == Completion.RETURN) return frame.takeReturnValue();
+        }
+        return null;
+    }
+
+    private synchronized void promote() {
+        if (compiled != null) return;
+        compiled = optimizer.apply(profile.argTypes());
+        if (compiled == null) profile.disable();
+        LOGGER.debug("Function {} promoted: {}", name, compiled != null);
+    }
+
+    private synchronized void deoptimize(CompiledFunction failed) {
+        if (compiled != failed) return;
+        compiled = null;
+        profile.deoptimized();
+        LOGGER.debug("Function {} deoptimized", name);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String signature() {
+        return signature;
+    }
+
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+}
@@ -0,0 +1,133 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.lib.StandardLib;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+import static lang.toyscript.engine.visitor.Types.numberCast;
+
+/**
+ * Access to top level variables, looked up by name in script context bindings.
+ */
+public abstract class GlobalNode extends Node {
+
+    protected final String name;
+
+    protected GlobalNode(Pos pos, String name) {
+        super(pos);
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public static Object read(Frame frame, String name, long pos) {
+        var value = frame.globals().read(name, pos);
+        if (value instanceof Function<?, ?>) {
+            throw new SignalException.Throw(Pos.unpack(pos), "Function reference cannot be used in expression");
+        }
+        return value;
+    }
+
+    /**
+     * @return whether the name refers to the standard library function of that name, see {@link Expr.Native}.
+     */
+    public static Boolean isNative(Frame frame, String name) {
+        return frame.globals().resolvesTo(name, StandardLib.SHARED.get(name));
+    }
+
+    public static class Native extends GlobalNode {
+        public Native(Pos pos, String name) {
+            super(pos, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return isNative(frame, name);
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            return isNative(frame, name);
+        }
+    }
+
+    public static class Declare extends GlobalNode {
+
+        private final Node init;
+
+        public Declare(Pos pos, String name, Node init) {
+            super(pos, name);
+            this.init = init;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = init != null ? init.execute(frame) : null;
+            frame.globals().declare(name, position, value);
+            return null;
+        }
+    }
+
+    public static class Read extends GlobalNode {
+        public Read(Pos pos, String name) {
+            super(pos, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return read(frame, name, position);
+        }
+    }
+
+    public static class Assign extends GlobalNode {
+
+        private final Node value;
+
+        public Assign(Pos pos, String name, Node value) {
+            super(pos, name);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var scopeRef = frame.globals().getDeclaringScope(name, position);
+            var result = value.execute(frame);
+            scopeRef.set(name, result);
+            return result;
+        }
+    }
+
+    public static class Increment extends GlobalNode {
+        public Increment(Pos pos, String name) {
+            super(pos, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var scopeRef = frame.globals().getDeclaringScope(name, position);
+            var value = scopeRef.get(name);
+            scopeRef.set(name, numberCast(value).intValue() + 1);
+            return value;
+        }
+    }
+
+    public static class Decrement extends GlobalNode {
+        public Decrement(Pos pos, String name) {
+            super(pos, name);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var scopeRef = frame.globals().getDeclaringScope(name, position);
+            var value = scopeRef.get(name);
+            scopeRef.set(name, numberCast(value).intValue() - 1);
+            return value;
+        }
+    }
+}
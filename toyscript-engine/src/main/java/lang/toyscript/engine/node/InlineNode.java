@@ -0,0 +1,63 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Call of a global script function with the body compiled in place: arguments are stored in slots
+ * of the caller's frame and no child frame, argument array or return signal is created.
+ * As with any call, the arguments are evaluated before the callee is resolved.
+ * The body runs only while the name is bound to a function created from the inlined declaration
+ * in the same globals; after the name is reassigned the callee is called as usual.
+ * Errors of the body are reported at the call, as if the function was called.
+ */
+public class InlineNode extends Node {
+
+    private final String name;
+
+    private final Node[] args;
+
+    private final FunctionNode declaration;
+
+    private final int[] paramSlots;
+
+    private final Node[] body;
+
+    private final Node result;
+
+    /**
+     * @param result value of the final {@code return}, or {@code null}.
+     */
+    public InlineNode(Pos pos, String name, Node[] args, FunctionNode declaration, int[] paramSlots,
+                      Node[] body, Node result) {
+        super(pos);
+        this.name = name;
+        this.args = args;
+        this.declaration = declaration;
+        this.paramSlots = paramSlots;
+        this.body = body;
+        this.result = result;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        for (var i = 0; i < paramSlots.length; i++) {
+            frame.set(0, paramSlots[i], args[i].execute(frame));
+        }
+        var callee = frame.globals().read(name, position);
+        if (!(callee instanceof ScriptFunction function) || !function.isInstanceOf(declaration, frame)) {
+            var values = new Object[paramSlots.length];
+            for (var i = 0; i < paramSlots.length; i++) {
+                values[i] = frame.get(0, paramSlots[i]);
+            }
+            return CallNode.call(callee, values, position);
+        }
+        try {
+            for (var statement : body) statement.execute(frame);
+            return result != null ? result.execute(frame) : null;
+        } catch (Exception e) {
+            throw SignalException.wrap(Pos.unpack(position), e);
+        }
+    }
+}
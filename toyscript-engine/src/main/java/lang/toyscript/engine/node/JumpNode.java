@@ -0,0 +1,95 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Statements transferring control out of the current construct. A local jump - one that is consumed
+ * within the same function - completes with a {@link Completion}, any other is signalled by exception.
+ */
+public abstract class JumpNode extends Node {
+
+    protected final Node payload;
+
+    protected JumpNode(Pos pos, Node payload) {
+        super(pos);
+        this.payload = payload;
+    }
+
+    protected Object payload(Frame frame) {
+        return payload != null ? payload.execute(frame) : null;
+    }
+
+    public static class Return extends JumpNode {
+
+        private final boolean local;
+
+        public Return(Pos pos, Node payload, boolean local) {
+            super(pos, payload);
+            this.local = local;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = payload(frame);
+            if (!local) throw new SignalException.Return(pos(), value);
+            frame.setReturnValue(value);
+            return Completion.RETURN;
+        }
+    }
+
+    public static class Exit extends JumpNode {
+        public Exit(Pos pos, Node payload) {
+            super(pos, payload);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            throw new SignalException.Exit(pos(), payload(frame));
+        }
+    }
+
+    public static class Throw extends JumpNode {
+        public Throw(Pos pos, Node payload) {
+            super(pos, payload);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            throw new SignalException.Throw(pos(), payload(frame));
+        }
+    }
+
+    public static class Break extends JumpNode {
+
+        private final boolean local;
+
+        public Break(Pos pos, boolean local) {
+            super(pos, null);
+            this.local = local;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            if (!local) throw new SignalException.Break(pos());
+            return Completion.BREAK;
+        }
+    }
+
+    public static class Continue extends JumpNode {
+
+        private final boolean local;
+
+        public Continue(Pos pos, boolean local) {
+            super(pos, null);
+            this.local = local;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            if (!local) throw new SignalException.Continue(pos());
+            return Completion.CONTINUE;
+        }
+    }
+}
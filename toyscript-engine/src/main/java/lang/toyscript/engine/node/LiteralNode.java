@@ -0,0 +1,38 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Constant decoded at compile time; int constants are also kept unboxed for {@link #executeInt}.
+ */
+public class LiteralNode extends Node {
+
+    private final Object value;
+
+    private final boolean isInt;
+
+    private final int intValue;
+
+    public LiteralNode(Pos pos, Object value) {
+        super(pos);
+        this.value = value;
+        this.isInt = value instanceof Integer;
+        this.intValue = isInt ? (Integer) value : 0;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        return value;
+    }
+
+    @Override
+    public int executeInt(Frame frame) throws UnexpectedResultException {
+        if (isInt) return intValue;
+        throw new UnexpectedResultException(value);
+    }
+
+    public Object value() {
+        return value;
+    }
+}
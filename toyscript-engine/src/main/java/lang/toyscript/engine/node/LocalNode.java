@@ -0,0 +1,178 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+import static lang.toyscript.engine.visitor.Types.numberCast;
+
+/**
+ * Access to local variables by {@link Frame} address resolved at compile time.
+ */
+public abstract class LocalNode extends Node {
+
+    protected final String name;
+
+    protected final int depth;
+
+    protected final int slot;
+
+    protected LocalNode(Pos pos, String name, int depth, int slot) {
+        super(pos);
+        this.name = name;
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Value of a slot whose name is declared later in its block, as seen by a function declared earlier in it.
+     */
+    public record Undeclared(String name) {
+
+        /**
+         * @return the names as kept in their slots; {@code null} stays in slots not taken by a name.
+         */
+        public static Undeclared[] of(String[] names) {
+            var values = new Undeclared[names.length];
+            for (var i = 0; i < names.length; i++) {
+                if (names[i] != null) values[i] = new Undeclared(names[i]);
+            }
+            return values;
+        }
+
+        public SignalException error(Pos pos) {
+            return new SignalException.Throw(pos, "Identifier " + name + " is not declared");
+        }
+    }
+
+    protected Object declared(Object value) {
+        if (value instanceof Undeclared undeclared) throw undeclared.error(pos());
+        return value;
+    }
+
+    public static class Declare extends LocalNode {
+
+        private final Node init;
+
+        public Declare(Pos pos, String name, int slot, Node init) {
+            super(pos, name, 0, slot);
+            this.init = init;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = init != null ? init.execute(frame) : null;
+            frame.set(0, slot, value);
+            return null;
+        }
+    }
+
+    /**
+     * Declaration of a function in a block. The function may be called before the names declared after it
+     * in the block are, so their slots, possibly left over by a sibling block, are cleared to {@link Undeclared}.
+     */
+    public static class DeclareFunction extends Declare {
+
+        private Undeclared[] later = new Undeclared[0];
+
+        public DeclareFunction(Pos pos, String name, int slot, Node function) {
+            super(pos, name, slot, function);
+        }
+
+        /**
+         * Sets the names declared after the function, once all declarations of the block are known.
+         */
+        public void link(Undeclared[] later) {
+            this.later = later;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            System.arraycopy(later, 0, frame.slots(), slot + 1, later.length);
+            return super.execute(frame);
+        }
+    }
+
+    /**
+     * Declaration of a name already declared in the same block - fails when reached.
+     */
+    public static class Redeclare extends LocalNode {
+
+        private final Node init;
+
+        public Redeclare(Pos pos, String name, Node init) {
+            super(pos, name, 0, -1);
+            this.init = init;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            if (init != null) init.execute(frame);
+            throw new SignalException.Throw(pos(), "Identifier " + name + " already declared in current scope");
+        }
+    }
+
+    public static class Read extends LocalNode {
+        public Read(Pos pos, String name, int depth, int slot) {
+            super(pos, name, depth, slot);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = declared(frame.get(depth, slot));
+            if (value instanceof Function<?, ?>) {
+                throw new SignalException.Throw(pos(), "Function reference cannot be used in expression");
+            }
+            return value;
+        }
+    }
+
+    public static class Assign extends LocalNode {
+
+        private final Node value;
+
+        public Assign(Pos pos, String name, int depth, int slot, Node value) {
+            super(pos, name, depth, slot);
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var result = value.execute(frame);
+            frame.set(depth, slot, result);
+            return result;
+        }
+    }
+
+    public static class Increment extends LocalNode {
+        public Increment(Pos pos, String name, int depth, int slot) {
+            super(pos, name, depth, slot);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = declared(frame.get(depth, slot));
+            frame.set(depth, slot, numberCast(value).intValue() + 1);
+            return value;
+        }
+    }
+
+    public static class Decrement extends LocalNode {
+        public Decrement(Pos pos, String name, int depth, int slot) {
+            super(pos, name, depth, slot);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var value = declared(frame.get(depth, slot));
+            frame.set(depth, slot, numberCast(value).intValue() - 1);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.registry.Frame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static lang.toyscript.engine.visitor.Types.boolCast;
+
+/**
+ * Executable program element. Node trees are created once by
+ * {@link lang.toyscript.engine.compiler.NodeCompiler} and then executed directly -
+ * children, operators and literal values are all resolved at compile time.
+ * <p>
+ * Besides {@link #execute}, nodes can be executed for a primitive result, so that intermediate values
+ * of integer arithmetic and conditions are never boxed. Nodes able to produce it unboxed override
+ * the typed variants; the defaults unpack the generic result.
+ */
+public abstract class Node {
+
+    public static final Logger LOGGER = LoggerFactory.getLogger(Node.class);
+
+    /**
+     * Source position, {@link Pos#packed() packed}.
+     */
+    protected final long position;
+
+    protected Node(Pos pos) {
+        this.position = pos.packed();
+    }
+
+    public abstract Object execute(Frame frame);
+
+    /**
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+    public int executeInt(Frame frame) throws UnexpectedResultException {
+        return expectInt(execute(frame));
+    }
+
+    /**
+     * @return result converted to condition value.
+     */
+    public boolean executeBoolean(Frame frame) {
+        return boolCast(execute(frame));
+    }
+
+    protected static int expectInt(Object value) throws UnexpectedResultException {
+        if (value instanceof Integer i) return i;
+        throw new UnexpectedResultException(value);
+    }
+
+    public Pos pos() {
+        return Pos.unpack(position);
+    }
+}
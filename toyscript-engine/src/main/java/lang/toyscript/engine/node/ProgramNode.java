@@ -0,0 +1,42 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Program root. Its result is the payload of {@code exit}, or the value of the last statement
+ * if that is a standalone expression (for interactive mode).
+ */
+public class ProgramNode extends Node {
+
+    private final Node[] body;
+
+    private final boolean returnsLast;
+
+    private final int frameSize;
+
+    public ProgramNode(Node[] body, boolean returnsLast, int frameSize) {
+        super(new Pos(1, 0));
+        this.body = body;
+        this.returnsLast = returnsLast;
+        this.frameSize = frameSize;
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        Object result = null;
+        for (var statement : body) {
+            try {
+                result = statement.execute(frame);
+            } catch (SignalException.Exit e) {
+                return e.payload();
+            }
+        }
+        return returnsLast ? result : null;
+    }
+}
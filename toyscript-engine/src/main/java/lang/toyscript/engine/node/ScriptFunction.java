@@ -0,0 +1,50 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.function.Function;
+
+public class ScriptFunction implements Function<Object[], Object> {
+
+    private final FunctionNode declaration;
+
+    private final Frame enclosingFrame;
+
+    ScriptFunction(FunctionNode declaration, Frame enclosingFrame) {
+        this.declaration = declaration;
+        this.enclosingFrame = enclosingFrame;
+    }
+
+    @Override
+    public Object apply(Object[] args) {
+        return declaration.invoke(enclosingFrame, args);
+    }
+
+    FunctionNode declaration() {
+        return declaration;
+    }
+
+    Frame enclosingFrame() {
+        return enclosingFrame;
+    }
+
+    TailCall tailCall(Object[] args, long position) {
+        return new TailCall(declaration, enclosingFrame, args, position);
+    }
+
+    /**
+     * @return whether this is a closure of given declaration over the same globals as the frame.
+     */
+    boolean isInstanceOf(FunctionNode declaration, Frame frame) {
+        return this.declaration == declaration && enclosingFrame.globals() == frame.globals();
+    }
+
+    public boolean isCompiled() {
+        return declaration.isCompiled();
+    }
+
+    @Override
+    public String toString() {
+        return declaration.signature();
+    }
+}
@@ -0,0 +1,127 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+import lang.toyscript.engine.registry.Frame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static lang.toyscript.engine.visitor.Types.ensureStructKey;
+
+public abstract class StructNode extends Node {
+
+    protected StructNode(Pos pos) {
+        super(pos);
+    }
+
+    public static Map<String, Object> create(String[] keys, Object[] values) {
+        var value = new LinkedHashMap<String, Object>();
+        for (var i = 0; i < values.length; i++) {
+            value.put(keys[i], values[i]);
+        }
+        return value;
+    }
+
+    public static Object get(Object obj, String member, long memberPos, long pos, long objectPos) {
+        if (obj instanceof Map<?, ?> map) {
+            Object value;
+            try {
+                value = map.get(member);
+            } catch (Exception e) {
+                throw SignalException.wrap(Pos.unpack(pos), e);
+            }
+            // the key is checked only for null, so reading a present member takes one lookup
+            if (value == null) ensureStructKey(map, member, memberPos);
+            return value;
+        }
+        throw SignalException.typeMismatch(obj, Pos.unpack(objectPos), Map.class);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Object set(Object obj, String member, Object value, long memberPos, long pos, long objectPos) {
+        if (obj instanceof Map map) {
+            Object previous;
+            try {
+                previous = map.replace(member, value);
+            } catch (UnsupportedOperationException e) {
+                throw new SignalException.Throw(Pos.unpack(memberPos), "Member " + member + " is read-only");
+            } catch (Exception e) {
+                throw SignalException.wrap(Pos.unpack(pos), e);
+            }
+            // replace never adds a key, so a missing member is still reported
+            if (previous == null) ensureStructKey(map, member, memberPos);
+            return value;
+        }
+        throw SignalException.typeMismatch(obj, Pos.unpack(objectPos), Map.class);
+    }
+
+    public static class Init extends StructNode {
+
+        private final String[] keys;
+
+        private final Node[] values;
+
+        public Init(Pos pos, String[] keys, Node[] values) {
+            super(pos);
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var result = new Object[values.length];
+            for (var i = 0; i < values.length; i++) {
+                result[i] = values[i].execute(frame);
+            }
+            return create(keys, result);
+        }
+    }
+
+    public static class Read extends StructNode {
+
+        private final Node object;
+
+        private final long memberPos;
+
+        private final String member;
+
+        public Read(Pos pos, Node object, Pos memberPos, String member) {
+            super(pos);
+            this.object = object;
+            this.memberPos = memberPos.packed();
+            this.member = member;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return get(object.execute(frame), member, memberPos, position, object.position);
+        }
+    }
+
+    public static class Write extends StructNode {
+
+        private final Node object;
+
+        private final long memberPos;
+
+        private final String member;
+
+        private final Node value;
+
+        public Write(Pos pos, Node object, Pos memberPos, String member, Node value) {
+            super(pos);
+            this.object = object;
+            this.memberPos = memberPos.packed();
+            this.member = member;
+            this.value = value;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            var obj = object.execute(frame);
+            var result = value.execute(frame);
+            return set(obj, member, result, memberPos, position, object.position);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.registry.Frame;
+
+/**
+ * Pending call in tail position, returned by the caller's body to {@link FunctionNode#invoke}.
+ *
+ * @param position position of the call, reported for errors of the callee.
+ */
+record TailCall(FunctionNode declaration, Frame enclosingFrame, Object[] args, long position) {
+}
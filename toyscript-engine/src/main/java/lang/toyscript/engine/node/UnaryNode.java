@@ -0,0 +1,52 @@
+package lang.toyscript.engine.node;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.registry.Frame;
+
+import static lang.toyscript.engine.visitor.Types.unaryMinExpr;
+
+public abstract class UnaryNode extends Node {
+
+    protected final Node operand;
+
+    protected UnaryNode(Pos pos, Node operand) {
+        super(pos);
+        this.operand = operand;
+    }
+
+    public static class Negate extends UnaryNode {
+        public Negate(Pos pos, Node operand) {
+            super(pos, operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return unaryMinExpr(operand.execute(frame));
+        }
+
+        @Override
+        public int executeInt(Frame frame) throws UnexpectedResultException {
+            try {
+                return -operand.executeInt(frame);
+            } catch (UnexpectedResultException e) {
+                return expectInt(unaryMinExpr(e.result()));
+            }
+        }
+    }
+
+    public static class Not extends UnaryNode {
+        public Not(Pos pos, Node operand) {
+            super(pos, operand);
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            return executeBoolean(frame);
+        }
+
+        @Override
+        public boolean executeBoolean(Frame frame) {
+            return !operand.executeBoolean(frame);
+        }
+    }
+}
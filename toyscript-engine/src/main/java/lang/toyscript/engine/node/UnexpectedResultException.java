@@ -0,0 +1,20 @@
+package lang.toyscript.engine.node;
+
+/**
+ * Thrown by typed execute methods of {@link Node} when the result is not of the requested type.
+ * Carries the (already computed) result, so the caller can continue with the generic path
+ * without executing the node again.
+ */
+public class UnexpectedResultException extends Exception {
+
+    private final Object result;
+
+    public UnexpectedResultException(Object result) {
+        super(null, null, false, false);
+        this.result = result;
+    }
+
+    public Object result() {
+        return result;
+    }
+}
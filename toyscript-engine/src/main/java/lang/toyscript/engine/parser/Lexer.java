@@ -0,0 +1,219 @@
+package lang.toyscript.engine.parser;
+
+import lang.toyscript.engine.error.ParseException;
+
+/**
+ * Single pass lexer of the ToyScript grammar. Tokens are not materialized - the lexer holds only
+ * the current one (type, source range and position) and {@link #next()} replaces it in place.
+ */
+public class Lexer {
+
+    private final String source;
+
+    private int offset;
+
+    private int line = 1;
+
+    private int column;
+
+    private TokenType type;
+
+    private int start;
+
+    private int tokenLine;
+
+    private int tokenColumn;
+
+    /**
+     * Lexer position, to rewind to the token current when it was taken.
+     */
+    public record Mark(int offset, int line, int column, TokenType type, int start, int tokenLine, int tokenColumn) {
+    }
+
+    public Lexer(String source) {
+        this.source = source;
+        next();
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public String text() {
+        return type == TokenType.EOF ? "<EOF>" : source.substring(start, offset);
+    }
+
+    public int line() {
+        return tokenLine;
+    }
+
+    public int column() {
+        return tokenColumn;
+    }
+
+    public Mark mark() {
+        return new Mark(offset, line, column, type, start, tokenLine, tokenColumn);
+    }
+
+    public void reset(Mark mark) {
+        offset = mark.offset();
+        line = mark.line();
+        column = mark.column();
+        type = mark.type();
+        start = mark.start();
+        tokenLine = mark.tokenLine();
+        tokenColumn = mark.tokenColumn();
+    }
+
+    public void next() {
+        skipIgnored();
+        start = offset;
+        tokenLine = line;
+        tokenColumn = column;
+        if (offset >= source.length()) {
+            type = TokenType.EOF;
+            return;
+        }
+        var c = source.charAt(offset);
+        if (isIdentifierStart(c)) {
+            type = identifier();
+        } else if (isDigit(c)) {
+            type = number();
+        } else if (c == '"') {
+            type = string();
+        } else {
+            type = operator(c);
+        }
+    }
+
+    private TokenType identifier() {
+        do advance(); while (offset < source.length() && isIdentifierPart(source.charAt(offset)));
+        return switch (source.substring(start, offset)) {
+            case "var" -> TokenType.VAR;
+            case "array" -> TokenType.ARRAY;
+            case "struct" -> TokenType.STRUCT;
+            case "function" -> TokenType.FUNCTION;
+            case "memo" -> TokenType.MEMO;
+            case "if" -> TokenType.IF;
+            case "else" -> TokenType.ELSE;
+            case "while" -> TokenType.WHILE;
+            case "break" -> TokenType.BREAK;
+            case "continue" -> TokenType.CONTINUE;
+            case "try" -> TokenType.TRY;
+            case "catch" -> TokenType.CATCH;
+            case "throw" -> TokenType.THROW;
+            case "return" -> TokenType.RETURN;
+            case "exit" -> TokenType.EXIT;
+            case "null" -> TokenType.NULL;
+            case "true", "false" -> TokenType.BOOL;
+            default -> TokenType.ID;
+        };
+    }
+
+    private TokenType number() {
+        do advance(); while (offset < source.length() && isDigit(source.charAt(offset)));
+        if (offset >= source.length() || source.charAt(offset) != '.') return TokenType.INT;
+        do advance(); while (offset < source.length() && isDigit(source.charAt(offset)));
+        return TokenType.FLOAT;
+    }
+
+    private TokenType string() {
+        advance();
+        while (offset < source.length()) {
+            var c = source.charAt(offset);
+            if (c == '"') {
+                advance();
+                return TokenType.STRING;
+            }
+            if (c == '\\') {
+                if (offset + 1 >= source.length() || "btnfr\"'\\".indexOf(source.charAt(offset + 1)) < 0) break;
+                advance();
+            }
+            advance();
+        }
+        throw recognitionError();
+    }
+
+    private TokenType operator(char c) {
+        var next = offset + 1 < source.length() ? source.charAt(offset + 1) : '\0';
+        var type = switch (c) {
+            case ';' -> TokenType.END;
+            case ',' -> TokenType.COMMA;
+            case '(' -> TokenType.PAREN_L;
+            case ')' -> TokenType.PAREN_R;
+            case '{' -> TokenType.CURLY_L;
+            case '}' -> TokenType.CURLY_R;
+            case '[' -> TokenType.INDEX_L;
+            case ']' -> TokenType.INDEX_R;
+            case '.' -> TokenType.DOT;
+            case '*' -> TokenType.MUL;
+            case '/' -> TokenType.DIV;
+            case '%' -> TokenType.MOD;
+            case '+' -> pair(next, '+', TokenType.INCR, TokenType.PLUS);
+            case '-' -> pair(next, '-', TokenType.DECR, TokenType.MINUS);
+            case '=' -> pair(next, '=', TokenType.EQ, TokenType.ASSIGN);
+            case '!' -> pair(next, '=', TokenType.NEQ, TokenType.NOT);
+            case '>' -> pair(next, '=', TokenType.GTE, TokenType.GT);
+            case '<' -> pair(next, '=', TokenType.LTE, TokenType.LT);
+            case '&' -> pair(next, '&', TokenType.AND, null);
+            case '|' -> pair(next, '|', TokenType.OR, null);
+            default -> null;
+        };
+        advance();
+        if (type == null) throw recognitionError();
+        return type;
+    }
+
+    /**
+     * @return {@code pair} (consuming its first character) if the next character is {@code second}.
+     */
+    private TokenType pair(char next, char second, TokenType pair, TokenType single) {
+        if (next != second) return single;
+        advance();
+        return pair;
+    }
+
+    private void skipIgnored() {
+        while (offset < source.length()) {
+            var c = source.charAt(offset);
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                advance();
+            } else if (source.startsWith("//", offset)) {
+                while (offset < source.length() && source.charAt(offset) != '\r' && source.charAt(offset) != '\n') {
+                    advance();
+                }
+            } else if (source.startsWith("/*", offset) && source.indexOf("*/", offset + 2) >= 0) {
+                var end = source.indexOf("*/", offset + 2) + 2;
+                while (offset < end) advance();
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void advance() {
+        if (source.charAt(offset++) == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+    }
+
+    private ParseException recognitionError() {
+        return new ParseException("token recognition error at: '" + source.substring(start, offset) + "'",
+                tokenLine, tokenColumn);
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
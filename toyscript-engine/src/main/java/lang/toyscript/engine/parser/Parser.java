@@ -0,0 +1,395 @@
+package lang.toyscript.engine.parser;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.error.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of {@code ToyScript.g4} building the syntax tree directly, with expressions
+ * parsed by precedence climbing. Precedence levels are the ones ANTLR derives from the order of
+ * the {@code expr} alternatives, so both front-ends produce equal trees for valid scripts.
+ * Syntax errors are reported at the same token, with messages in the ANTLR style.
+ */
+public class Parser {
+
+    // precedence of the expr alternatives, as numbered by ANTLR
+    private static final int NEGATE = 23;
+    private static final int NOT = 22;
+    private static final int MEMBER_ACCESS = 20;
+    private static final int INDEX_ACCESS = 19;
+    private static final int MULTIPLICATIVE = 17;
+    private static final int ADDITIVE = 16;
+    private static final int RELATIONAL = 15;
+    private static final int EQUALITY = 14;
+    private static final int LOGICAL = 13;
+    private static final int MEMBER_ASSIGN = 3;
+    private static final int INDEX_ASSIGN = 2;
+    private static final int ASSIGN = 1;
+
+    public static Program parse(String source) {
+        return new Parser(new Lexer(source)).program();
+    }
+
+    private final Lexer lexer;
+
+    private Parser(Lexer lexer) {
+        this.lexer = lexer;
+    }
+
+    private Program program() {
+        var body = new ArrayList<Stmt>();
+        while (lexer.type() != TokenType.EOF) body.add(statement());
+        return new Program(body);
+    }
+
+    private Stmt statement() {
+        var pos = pos();
+        return switch (lexer.type()) {
+            case VAR -> varDecl();
+            case FUNCTION, MEMO -> functionDecl();
+            case IF -> ifStatement(pos);
+            case WHILE -> whileStatement(pos);
+            case TRY -> tryStatement(pos);
+            case THROW -> new Stmt.Throw(pos, jumpPayload());
+            case RETURN -> new Stmt.Return(pos, jumpPayload());
+            case EXIT -> new Stmt.Exit(pos, jumpPayload());
+            case BREAK -> {
+                next();
+                expect(TokenType.END);
+                yield new Stmt.Break(pos);
+            }
+            case CONTINUE -> {
+                next();
+                expect(TokenType.END);
+                yield new Stmt.Continue(pos);
+            }
+            case CURLY_L -> block();
+            case END -> {
+                next();
+                yield new Stmt.Empty(pos);
+            }
+            default -> {
+                var expr = expr(0);
+                expect(TokenType.END);
+                yield new Stmt.Expression(pos, expr);
+            }
+        };
+    }
+
+    private Stmt varDecl() {
+        next();
+        var pos = pos();
+        var name = name();
+        Expr init = null;
+        if (accept(TokenType.ASSIGN)) init = expr(0);
+        expect(TokenType.END);
+        return new Stmt.VarDecl(pos, name, init);
+    }
+
+    private Stmt functionDecl() {
+        var memo = accept(TokenType.MEMO);
+        expect(TokenType.FUNCTION);
+        var pos = pos();
+        var name = name();
+        expect(TokenType.PAREN_L);
+        var params = new ArrayList<String>();
+        if (lexer.type() == TokenType.ID) {
+            do params.add(name()); while (accept(TokenType.COMMA));
+        }
+        expect(TokenType.PAREN_R);
+        return new Stmt.FunctionDecl(pos, name, params, body(), memo);
+    }
+
+    private Stmt ifStatement(Pos pos) {
+        next();
+        var condition = condition();
+        var then = statement();
+        var otherwise = accept(TokenType.ELSE) ? statement() : null;
+        return new Stmt.If(pos, condition, then, otherwise);
+    }
+
+    private Stmt whileStatement(Pos pos) {
+        next();
+        var condition = condition();
+        return new Stmt.While(pos, condition, statement());
+    }
+
+    private Stmt tryStatement(Pos pos) {
+        next();
+        var body = block();
+        expect(TokenType.CATCH);
+        Pos errorPos = null;
+        String errorName = null;
+        if (accept(TokenType.PAREN_L)) {
+            errorPos = pos();
+            errorName = name();
+            expect(TokenType.PAREN_R);
+        }
+        return new Stmt.Try(pos, body, errorPos, errorName, body());
+    }
+
+    private Expr jumpPayload() {
+        next();
+        var payload = lexer.type() != TokenType.END ? expr(0) : null;
+        expect(TokenType.END);
+        return payload;
+    }
+
+    private Expr condition() {
+        expect(TokenType.PAREN_L);
+        var condition = expr(0);
+        expect(TokenType.PAREN_R);
+        return condition;
+    }
+
+    private Stmt.Block block() {
+        var pos = pos();
+        return new Stmt.Block(pos, body());
+    }
+
+    private List<Stmt> body() {
+        expect(TokenType.CURLY_L);
+        var statements = new ArrayList<Stmt>();
+        while (!accept(TokenType.CURLY_R)) {
+            if (lexer.type() == TokenType.EOF) throw mismatched(TokenType.CURLY_R);
+            statements.add(statement());
+        }
+        return statements;
+    }
+
+    /**
+     * Parses expression of at least the given precedence; all operators applied in the loop extend
+     * the same left operand, so they share its position (the first token).
+     * A member or index access followed by {@code =} where assignment binds too loosely is left
+     * to the enclosing level, like ANTLR's full context prediction does.
+     */
+    private Expr expr(int precedence) {
+        var pos = pos();
+        var left = primary();
+        while (true) {
+            var type = lexer.type();
+            if (type == TokenType.DOT) {
+                if (precedence > MEMBER_ACCESS) return left;
+                var mark = lexer.mark();
+                next();
+                var memberPos = pos();
+                var member = name();
+                if (lexer.type() != TokenType.ASSIGN) {
+                    left = new Expr.MemberAccess(pos, left, memberPos, member);
+                } else if (precedence <= MEMBER_ASSIGN) {
+                    next();
+                    left = new Expr.MemberAssign(pos, left, memberPos, member, expr(MEMBER_ASSIGN));
+                } else {
+                    lexer.reset(mark);
+                    return left;
+                }
+            } else if (type == TokenType.INDEX_L) {
+                if (precedence > INDEX_ACCESS) return left;
+                var mark = lexer.mark();
+                next();
+                var index = expr(0);
+                expect(TokenType.INDEX_R);
+                if (lexer.type() != TokenType.ASSIGN) {
+                    left = new Expr.IndexAccess(pos, left, index);
+                } else if (precedence <= INDEX_ASSIGN) {
+                    next();
+                    left = new Expr.IndexAssign(pos, left, index, expr(INDEX_ASSIGN));
+                } else {
+                    lexer.reset(mark);
+                    return left;
+                }
+            } else {
+                var op = binaryOperator(type);
+                if (op == null) return left;
+                var opPrecedence = precedence(op);
+                if (opPrecedence < precedence) return left;
+                next();
+                left = new Expr.Binary(pos, op, left, expr(opPrecedence + 1));
+            }
+        }
+    }
+
+    private Expr primary() {
+        var pos = pos();
+        switch (lexer.type()) {
+            case PAREN_L -> {
+                next();
+                var expr = expr(0);
+                expect(TokenType.PAREN_R);
+                return expr;
+            }
+            case MINUS -> {
+                next();
+                return new Expr.Unary(pos, Operator.NEGATE, expr(NEGATE));
+            }
+            case NOT -> {
+                next();
+                return new Expr.Unary(pos, Operator.NOT, expr(NOT));
+            }
+            case ID -> {
+                return identifier(pos);
+            }
+            case STRUCT -> {
+                next();
+                expect(TokenType.CURLY_L);
+                var keys = new ArrayList<String>();
+                var values = new ArrayList<Expr>();
+                while (lexer.type() == TokenType.ID) {
+                    keys.add(name());
+                    expect(TokenType.ASSIGN);
+                    values.add(expr(0));
+                    expect(TokenType.END);
+                }
+                expect(TokenType.CURLY_R);
+                return new Expr.StructInit(pos, keys, values);
+            }
+            case ARRAY -> {
+                next();
+                if (accept(TokenType.INDEX_L)) {
+                    var size = expr(0);
+                    expect(TokenType.INDEX_R);
+                    return new Expr.ArrayDef(pos, size);
+                }
+                if (lexer.type() != TokenType.CURLY_L) throw mismatched(TokenType.CURLY_L, TokenType.INDEX_L);
+                next();
+                return new Expr.ArrayInit(pos, arguments(TokenType.CURLY_R));
+            }
+            case BOOL -> {
+                return literal(pos, Boolean.valueOf(lexer.text()));
+            }
+            case FLOAT -> {
+                return literal(pos, Float.valueOf(lexer.text()));
+            }
+            case INT -> {
+                return literal(pos, Integer.valueOf(lexer.text()));
+            }
+            case STRING -> {
+                return literal(pos, Expr.Literal.string(lexer.text()));
+            }
+            case NULL -> {
+                return literal(pos, null);
+            }
+            default -> throw error("mismatched input '" + lexer.text() + "' expecting expression");
+        }
+    }
+
+    private Expr identifier(Pos pos) {
+        var name = lexer.text().intern();
+        next();
+        switch (lexer.type()) {
+            case INCR -> {
+                next();
+                return new Expr.IncrDecr(pos, Operator.INCREMENT, name);
+            }
+            case DECR -> {
+                next();
+                return new Expr.IncrDecr(pos, Operator.DECREMENT, name);
+            }
+            case PAREN_L -> {
+                next();
+                return new Expr.Call(pos, name, arguments(TokenType.PAREN_R));
+            }
+            case ASSIGN -> {
+                next();
+                return new Expr.Assign(pos, name, expr(ASSIGN));
+            }
+            default -> {
+                return new Expr.Identifier(pos, name);
+            }
+        }
+    }
+
+    /**
+     * Parses comma separated expressions up to (and including) the closing token.
+     */
+    private List<Expr> arguments(TokenType closing) {
+        var args = new ArrayList<Expr>();
+        if (accept(closing)) return args;
+        do args.add(expr(0)); while (accept(TokenType.COMMA));
+        expect(closing);
+        return args;
+    }
+
+    private Expr literal(Pos pos, Object value) {
+        next();
+        return new Expr.Literal(pos, value);
+    }
+
+    private static Operator binaryOperator(TokenType type) {
+        return switch (type) {
+            case MUL -> Operator.MULTIPLY;
+            case DIV -> Operator.DIVIDE;
+            case MOD -> Operator.MODULO;
+            case PLUS -> Operator.ADD;
+            case MINUS -> Operator.SUBTRACT;
+            case LT -> Operator.LESS;
+            case LTE -> Operator.LESS_EQUAL;
+            case GT -> Operator.GREATER;
+            case GTE -> Operator.GREATER_EQUAL;
+            case EQ -> Operator.EQUAL;
+            case NEQ -> Operator.NOT_EQUAL;
+            case AND -> Operator.AND;
+            case OR -> Operator.OR;
+            default -> null;
+        };
+    }
+
+    private static int precedence(Operator op) {
+        return switch (op) {
+            case MULTIPLY, DIVIDE, MODULO -> MULTIPLICATIVE;
+            case ADD, SUBTRACT -> ADDITIVE;
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> RELATIONAL;
+            case EQUAL, NOT_EQUAL -> EQUALITY;
+            case AND, OR -> LOGICAL;
+            default -> throw new IllegalArgumentException("Unsupported operator " + op);
+        };
+    }
+
+    private Pos pos() {
+        return new Pos(lexer.line(), lexer.column());
+    }
+
+    private void next() {
+        lexer.next();
+    }
+
+    private boolean accept(TokenType type) {
+        if (lexer.type() != type) return false;
+        lexer.next();
+        return true;
+    }
+
+    /**
+     * @return text of the expected token, which is consumed.
+     */
+    private String expect(TokenType type) {
+        if (lexer.type() != type) throw mismatched(type);
+        var text = lexer.text();
+        lexer.next();
+        return text;
+    }
+
+    /**
+     * @return interned text of the expected identifier, which is consumed.
+     */
+    private String name() {
+        return expect(TokenType.ID).intern();
+    }
+
+    private ParseException mismatched(TokenType... expected) {
+        var names = new StringBuilder();
+        for (var type : expected) names.append(names.length() > 0 ? ", " : "").append(type.display());
+        var expecting = expected.length > 1 ? "{" + names + "}" : names.toString();
+        return error("mismatched input '" + lexer.text() + "' expecting " + expecting);
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message, lexer.line(), lexer.column());
+    }
+}
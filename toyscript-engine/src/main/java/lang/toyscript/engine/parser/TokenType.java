@@ -0,0 +1,76 @@
+package lang.toyscript.engine.parser;
+
+/**
+ * Tokens of the ToyScript grammar, named as in {@code ToyScript.g4}.
+ */
+public enum TokenType {
+
+    VAR("'var'"),
+    ARRAY("'array'"),
+    STRUCT("'struct'"),
+    FUNCTION("'function'"),
+    MEMO("'memo'"),
+    IF("'if'"),
+    ELSE("'else'"),
+    WHILE("'while'"),
+    BREAK("'break'"),
+    CONTINUE("'continue'"),
+    TRY("'try'"),
+    CATCH("'catch'"),
+    THROW("'throw'"),
+    RETURN("'return'"),
+    EXIT("'exit'"),
+
+    END("';'"),
+    COMMA("','"),
+    PAREN_L("'('"),
+    PAREN_R("')'"),
+    CURLY_L("'{'"),
+    CURLY_R("'}'"),
+    INDEX_L("'['"),
+    INDEX_R("']'"),
+
+    ASSIGN("'='"),
+    DOT("'.'"),
+
+    INCR("'++'"),
+    DECR("'--'"),
+    MUL("'*'"),
+    DIV("'/'"),
+    PLUS("'+'"),
+    MINUS("'-'"),
+    MOD("'%'"),
+
+    EQ("'=='"),
+    NEQ("'!='"),
+    GTE("'>='"),
+    LTE("'<='"),
+    GT("'>'"),
+    LT("'<'"),
+
+    AND("'&&'"),
+    OR("'||'"),
+    NOT("'!'"),
+
+    INT("INT"),
+    FLOAT("FLOAT"),
+    NULL("'null'"),
+    BOOL("BOOL"),
+    ID("ID"),
+    STRING("STRING"),
+
+    EOF("<EOF>");
+
+    private final String display;
+
+    TokenType(String display) {
+        this.display = display;
+    }
+
+    /**
+     * @return token name as used in syntax error messages.
+     */
+    public String display() {
+        return display;
+    }
+}
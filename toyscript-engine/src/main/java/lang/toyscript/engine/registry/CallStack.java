@@ -0,0 +1,56 @@
+package lang.toyscript.engine.registry;
+
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.error.SignalException;
+
+/**
+ * Depth of script function calls in progress on the current thread, over all backends and nested evaluations.
+ * A call exceeding the limit raises a script error at the call position, which scripts can catch,
+ * instead of exhausting the Java stack. Tail calls do not add to the depth.
+ */
+public class CallStack {
+
+    /**
+     * Default limit of the backends running script calls on the Java stack, reachable with its default size.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 1_000;
+
+    /**
+     * Default limit of the bytecode backend, whose call frames live in the heap.
+     */
+    public static final int DEFAULT_BYTECODE_MAX_DEPTH = 10_000;
+
+    private static final ThreadLocal<CallStack> CURRENT = ThreadLocal.withInitial(CallStack::new);
+
+    private int depth;
+
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+
+    public static CallStack current() {
+        return CURRENT.get();
+    }
+
+    private CallStack() {
+    }
+
+    /**
+     * @return previous limit, to be restored when the evaluation ends.
+     */
+    public int limit(int maxDepth) {
+        if (maxDepth < 1) throw new IllegalArgumentException("Call depth must be positive: " + maxDepth);
+        var previous = this.maxDepth;
+        this.maxDepth = maxDepth;
+        return previous;
+    }
+
+    public void enter(long pos) {
+        if (depth >= maxDepth) {
+            throw new SignalException.Throw(Pos.unpack(pos), "Maximum call depth of " + maxDepth + " exceeded");
+        }
+        depth++;
+    }
+
+    public void exit() {
+        depth--;
+    }
+}
@@ -0,0 +1,29 @@
+package lang.toyscript.engine.registry;
+
+import static lang.toyscript.engine.visitor.Types.ellipsize;
+
+public class DebugFrame extends Frame {
+
+    DebugFrame(Frame parent, Scope globals, int size) {
+        super(parent, globals, size);
+    }
+
+    @Override
+    public Object get(int depth, int slot) {
+        var value = super.get(depth, slot);
+        LOGGER.debug("Read [depth={}; slot={}]={}", depth, slot, ellipsize(value));
+        return value;
+    }
+
+    @Override
+    public void set(int depth, int slot, Object value) {
+        super.set(depth, slot, value);
+        LOGGER.debug("Write [depth={}; slot={}]={}", depth, slot, ellipsize(value));
+    }
+
+    @Override
+    public Frame createChild(int size) {
+        LOGGER.debug("Child frame [size={}]", size);
+        return new DebugFrame(this, globals(), size);
+    }
+}
@@ -1,7 +1,5 @@
 package lang.toyscript.engine.registry;
 
-import org.antlr.v4.runtime.tree.TerminalNode;
-
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -25,22 +23,29 @@ public class DebugScope extends Scope {
     }
 
     @Override
-    public void declare(TerminalNode id, Object value) {
-        super.declare(id, value);
-        LOGGER.debug("Declare {}={} [scope={}]", id.getText(), ellipsize(value), uuid);
+    public void declare(String name, long pos, Object value) {
+        super.declare(name, pos, value);
+        LOGGER.debug("Declare {}={} [scope={}]", name, ellipsize(value), uuid);
+    }
+
+    @Override
+    public Object read(String name, long pos) {
+        var value = super.read(name, pos);
+        LOGGER.debug("Read {}={} [scope={}]", name, ellipsize(value), uuid);
+        return value;
     }
 
     @Override
-    public Object read(TerminalNode id) {
-        var value = super.read(id);
-        LOGGER.debug("Read {}={} [scope={}]", id.getText(), ellipsize(value), uuid);
+    public Object get(String name) {
+        var value = super.get(name);
+        LOGGER.debug("Read {}={} [scope={}]", name, ellipsize(value), uuid);
         return value;
     }
 
     @Override
-    public void write(TerminalNode id, Object value) {
-        super.write(id, value);
-        LOGGER.debug("Write {}={} [scope={}]", id.getText(), ellipsize(value), uuid);
+    public void set(String name, Object value) {
+        super.set(name, value);
+        LOGGER.debug("Write {}={} [scope={}]", name, ellipsize(value), uuid);
     }
 
     @Override
@@ -0,0 +1,79 @@
+package lang.toyscript.engine.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.ScriptContext;
+
+/**
+ * Storage of local variables. Every local is addressed at compile time by {@code depth}
+ * (number of function frames to walk up) and {@code slot} (index in that frame).
+ * Top level declarations live in {@link Scope} bindings and are accessed by name.
+ */
+public class Frame {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(Frame.class);
+
+    private static final Object[] NO_SLOTS = new Object[0];
+
+    public static Frame root(ScriptContext scriptContext, int size) {
+        var globals = Scope.root(scriptContext);
+        return LOGGER.isDebugEnabled() ? new DebugFrame(null, globals, size) : new Frame(null, globals, size);
+    }
+
+    private final Frame parent;
+
+    private final Scope globals;
+
+    private final Object[] slots;
+
+    private Object returnValue;
+
+    Frame(Frame parent, Scope globals, int size) {
+        this.parent = parent;
+        this.globals = globals;
+        this.slots = size == 0 ? NO_SLOTS : new Object[size];
+    }
+
+    /**
+     * Direct access to the slots of this frame, used as registers by the bytecode machine.
+     */
+    public Object[] slots() {
+        return slots;
+    }
+
+    public Object get(int depth, int slot) {
+        return up(depth).slots[slot];
+    }
+
+    public void set(int depth, int slot, Object value) {
+        up(depth).slots[slot] = value;
+    }
+
+    public void setReturnValue(Object value) {
+        returnValue = value;
+    }
+
+    /**
+     * @return value of the executed {@code return}, clearing it.
+     */
+    public Object takeReturnValue() {
+        var value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
+    public Scope globals() {
+        return globals;
+    }
+
+    public Frame createChild(int size) {
+        return new Frame(this, globals, size);
+    }
+
+    private Frame up(int depth) {
+        var frame = this;
+        for (; depth > 0; depth--) frame = frame.parent;
+        return frame;
+    }
+}
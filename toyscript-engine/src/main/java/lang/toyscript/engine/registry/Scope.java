@@ -1,8 +1,8 @@
 package lang.toyscript.engine.registry;
 
+import lang.toyscript.engine.ast.Pos;
 import lang.toyscript.engine.error.SignalException;
 import lang.toyscript.engine.lib.StandardLib;
-import org.antlr.v4.runtime.tree.TerminalNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,37 +39,69 @@ public class Scope {
         this.bindings = bindings;
     }
 
-    public void declare(TerminalNode id) {
-        declare(id, null);
+    public void declare(String name, long pos) {
+        declare(name, pos, null);
     }
 
-    public void declare(TerminalNode id, Object value) {
-        var name = id.getText();
+    public void declare(String name, long pos, Object value) {
         if (bindings.containsKey(name)) {
-            throw new SignalException.Throw(id.getSymbol(),
+            throw new SignalException.Throw(Pos.unpack(pos),
                     "Identifier " + name + " already declared in current scope");
         }
         bindings.put(name, value);
     }
 
-    public Scope getDeclaringScope(TerminalNode id) {
-        var name = id.getText();
+    public Scope getDeclaringScope(String name, long pos) {
         var scope = this;
         while (scope != null) {
             if (scope.bindings.containsKey(name)) return scope;
             scope = scope.parent;
         }
-        throw new SignalException.Throw(id.getSymbol(), "Identifier " + name + " is not declared");
+        throw notDeclared(name, pos);
     }
 
-    public void write(TerminalNode id, Object value) {
-        var name = id.getText();
-        getDeclaringScope(id).bindings.put(name, value);
+    public void write(String name, long pos, Object value) {
+        getDeclaringScope(name, pos).set(name, value);
     }
 
-    public Object read(TerminalNode id) {
-        var name = id.getText();
-        return getDeclaringScope(id).bindings.get(name);
+    /**
+     * Resolves and reads the name with one lookup per scope, unless its value is {@code null}.
+     */
+    public Object read(String name, long pos) {
+        var scope = this;
+        while (scope != null) {
+            var value = scope.bindings.get(name);
+            if (value != null || scope.bindings.containsKey(name)) return value;
+            scope = scope.parent;
+        }
+        throw notDeclared(name, pos);
+    }
+
+    /**
+     * @return whether the name resolves to the very value; {@code false} if it is not declared.
+     */
+    public boolean resolvesTo(String name, Object value) {
+        var scope = this;
+        while (scope != null) {
+            var bound = scope.bindings.get(name);
+            if (bound != null || scope.bindings.containsKey(name)) return bound == value;
+            scope = scope.parent;
+        }
+        return false;
+    }
+
+    /**
+     * Reads name declared in this scope, as resolved by {@link #getDeclaringScope}.
+     */
+    public Object get(String name) {
+        return bindings.get(name);
+    }
+
+    /**
+     * Writes name declared in this scope, as resolved by {@link #getDeclaringScope}.
+     */
+    public void set(String name, Object value) {
+        bindings.put(name, value);
     }
 
     public Scope getParent() {
@@ -83,4 +115,8 @@ public class Scope {
     Scope createChild(Map<String, Object> bindings) {
         return new Scope(this, bindings);
     }
+
+    private static SignalException notDeclared(String name, long pos) {
+        return new SignalException.Throw(Pos.unpack(pos), "Identifier " + name + " is not declared");
+    }
 }
@@ -0,0 +1,300 @@
+package lang.toyscript.engine.visitor;
+
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.parser.ToyScriptLexer;
+import lang.toyscript.parser.ToyScriptParser;
+import lang.toyscript.parser.ToyScriptVisitor;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.List;
+
+import static lang.toyscript.engine.error.ScriptError.unexpectedToken;
+
+/**
+ * Translates ANTLR parse tree into the engine's own syntax tree ({@link Program}).
+ * No ANTLR object is referenced by the result, so the parse tree can be released right after.
+ */
+public class AstBuilder extends AbstractParseTreeVisitor<Object> implements ToyScriptVisitor<Object> {
+
+    public static Program build(ToyScriptParser.ProgramContext ctx) {
+        return new AstBuilder().visitProgram(ctx);
+    }
+
+    @Override
+    public Program visitProgram(ToyScriptParser.ProgramContext ctx) {
+        return new Program(statements(ctx.statement()));
+    }
+
+    @Override
+    public Stmt.VarDecl visitVarDecl(ToyScriptParser.VarDeclContext ctx) {
+        var init = ctx.expr() != null ? expr(ctx.expr()) : null;
+        return new Stmt.VarDecl(pos(ctx.ID()), name(ctx.ID()), init);
+    }
+
+    @Override
+    public Stmt.FunctionDecl visitFunctionDecl(ToyScriptParser.FunctionDeclContext ctx) {
+        var identifier = ctx.ID(0);
+        var params = ctx.ID().subList(1, ctx.ID().size()).stream().map(AstBuilder::name).toList();
+        var memo = ctx.MEMO() != null;
+        return new Stmt.FunctionDecl(pos(identifier), name(identifier), params, statements(ctx.statement()), memo);
+    }
+
+    @Override
+    public Stmt.If visitIfStatement(ToyScriptParser.IfStatementContext ctx) {
+        var elseStatement = ctx.statement(1);
+        return new Stmt.If(pos(ctx), expr(ctx.expr()), statement(ctx.statement(0)),
+                elseStatement != null ? statement(elseStatement) : null);
+    }
+
+    @Override
+    public Stmt.While visitWhileStatement(ToyScriptParser.WhileStatementContext ctx) {
+        return new Stmt.While(pos(ctx), expr(ctx.expr()), statement(ctx.statement()));
+    }
+
+    @Override
+    public Stmt.Try visitTryStatement(ToyScriptParser.TryStatementContext ctx) {
+        var errId = ctx.ID();
+        return new Stmt.Try(pos(ctx), visitBlockStatement(ctx.blockStatement()),
+                errId != null ? pos(errId) : null, errId != null ? name(errId) : null,
+                statements(ctx.statement()));
+    }
+
+    @Override
+    public Stmt.Throw visitThrowStatement(ToyScriptParser.ThrowStatementContext ctx) {
+        return new Stmt.Throw(pos(ctx), ctx.expr() != null ? expr(ctx.expr()) : null);
+    }
+
+    @Override
+    public Stmt visitReturnExitClause(ToyScriptParser.ReturnExitClauseContext ctx) {
+        var payload = ctx.expr() != null ? expr(ctx.expr()) : null;
+        return switch (ctx.op.getType()) {
+            case ToyScriptLexer.RETURN -> new Stmt.Return(pos(ctx), payload);
+            case ToyScriptLexer.EXIT -> new Stmt.Exit(pos(ctx), payload);
+            default -> unexpectedToken(ctx.op);
+        };
+    }
+
+    @Override
+    public Stmt visitLoopExitClause(ToyScriptParser.LoopExitClauseContext ctx) {
+        return switch (ctx.op.getType()) {
+            case ToyScriptLexer.BREAK -> new Stmt.Break(pos(ctx));
+            case ToyScriptLexer.CONTINUE -> new Stmt.Continue(pos(ctx));
+            default -> unexpectedToken(ctx.op);
+        };
+    }
+
+    @Override
+    public Stmt.Expression visitExprStatement(ToyScriptParser.ExprStatementContext ctx) {
+        return new Stmt.Expression(pos(ctx), expr(ctx.expr()));
+    }
+
+    @Override
+    public Stmt.Block visitBlockStatement(ToyScriptParser.BlockStatementContext ctx) {
+        return new Stmt.Block(pos(ctx), statements(ctx.statement()));
+    }
+
+    @Override
+    public Stmt visitStatement(ToyScriptParser.StatementContext ctx) {
+        var child = ctx.getChild(0);
+        return child instanceof TerminalNode ? new Stmt.Empty(pos(ctx)) : (Stmt) visit(child);
+    }
+
+    @Override
+    public Expr visitNestedExpr(ToyScriptParser.NestedExprContext ctx) {
+        return expr(ctx.expr());
+    }
+
+    @Override
+    public Expr.Unary visitUnaryMinusExpr(ToyScriptParser.UnaryMinusExprContext ctx) {
+        return new Expr.Unary(pos(ctx), Operator.NEGATE, expr(ctx.expr()));
+    }
+
+    @Override
+    public Expr.Unary visitNegationExpr(ToyScriptParser.NegationExprContext ctx) {
+        return new Expr.Unary(pos(ctx), Operator.NOT, expr(ctx.expr()));
+    }
+
+    @Override
+    public Expr.IncrDecr visitIncrDecrExpr(ToyScriptParser.IncrDecrExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.INCR -> Operator.INCREMENT;
+            case ToyScriptLexer.DECR -> Operator.DECREMENT;
+            default -> unexpectedToken(ctx.op);
+        };
+        return new Expr.IncrDecr(pos(ctx), op, name(ctx.ID()));
+    }
+
+    @Override
+    public Expr.MemberAccess visitMemberAccessExpr(ToyScriptParser.MemberAccessExprContext ctx) {
+        return new Expr.MemberAccess(pos(ctx), expr(ctx.expr()), pos(ctx.ID()), name(ctx.ID()));
+    }
+
+    @Override
+    public Expr.IndexAccess visitIndexAccessExpr(ToyScriptParser.IndexAccessExprContext ctx) {
+        return new Expr.IndexAccess(pos(ctx), expr(ctx.expr(0)), expr(ctx.expr(1)));
+    }
+
+    @Override
+    public Expr.Call visitFunctionCallExpr(ToyScriptParser.FunctionCallExprContext ctx) {
+        return new Expr.Call(pos(ctx), name(ctx.ID()), expressions(ctx.expr()));
+    }
+
+    @Override
+    public Expr.Binary visitMulDivModExpr(ToyScriptParser.MulDivModExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.MUL -> Operator.MULTIPLY;
+            case ToyScriptLexer.DIV -> Operator.DIVIDE;
+            case ToyScriptLexer.MOD -> Operator.MODULO;
+            default -> unexpectedToken(ctx.op);
+        };
+        return binary(ctx, op, ctx.expr(0), ctx.expr(1));
+    }
+
+    @Override
+    public Expr.Binary visitAddSubExpr(ToyScriptParser.AddSubExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.PLUS -> Operator.ADD;
+            case ToyScriptLexer.MINUS -> Operator.SUBTRACT;
+            default -> unexpectedToken(ctx.op);
+        };
+        return binary(ctx, op, ctx.expr(0), ctx.expr(1));
+    }
+
+    @Override
+    public Expr.Binary visitCompareExpr(ToyScriptParser.CompareExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.LT -> Operator.LESS;
+            case ToyScriptLexer.LTE -> Operator.LESS_EQUAL;
+            case ToyScriptLexer.GT -> Operator.GREATER;
+            case ToyScriptLexer.GTE -> Operator.GREATER_EQUAL;
+            default -> unexpectedToken(ctx.op);
+        };
+        return binary(ctx, op, ctx.expr(0), ctx.expr(1));
+    }
+
+    @Override
+    public Expr.Binary visitEqualCheckExpr(ToyScriptParser.EqualCheckExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.EQ -> Operator.EQUAL;
+            case ToyScriptLexer.NEQ -> Operator.NOT_EQUAL;
+            default -> unexpectedToken(ctx.op);
+        };
+        return binary(ctx, op, ctx.expr(0), ctx.expr(1));
+    }
+
+    @Override
+    public Expr.Binary visitAndOrExpr(ToyScriptParser.AndOrExprContext ctx) {
+        Operator op = switch (ctx.op.getType()) {
+            case ToyScriptLexer.AND -> Operator.AND;
+            case ToyScriptLexer.OR -> Operator.OR;
+            default -> unexpectedToken(ctx.op);
+        };
+        return binary(ctx, op, ctx.expr(0), ctx.expr(1));
+    }
+
+    @Override
+    public Expr.StructInit visitStructInitExpr(ToyScriptParser.StructInitExprContext ctx) {
+        var keys = ctx.ID().stream().map(AstBuilder::name).toList();
+        return new Expr.StructInit(pos(ctx), keys, expressions(ctx.expr()));
+    }
+
+    @Override
+    public Expr.ArrayInit visitArrayInitExpr(ToyScriptParser.ArrayInitExprContext ctx) {
+        return new Expr.ArrayInit(pos(ctx), expressions(ctx.expr()));
+    }
+
+    @Override
+    public Expr.ArrayDef visitArrayDefExpr(ToyScriptParser.ArrayDefExprContext ctx) {
+        return new Expr.ArrayDef(pos(ctx), expr(ctx.expr()));
+    }
+
+    @Override
+    public Expr.Literal visitBooleanLiteralExpr(ToyScriptParser.BooleanLiteralExprContext ctx) {
+        return new Expr.Literal(pos(ctx), Boolean.valueOf(ctx.BOOL().getText()));
+    }
+
+    @Override
+    public Expr.Literal visitFloatLiteralExpr(ToyScriptParser.FloatLiteralExprContext ctx) {
+        return new Expr.Literal(pos(ctx), Float.valueOf(ctx.FLOAT().getText()));
+    }
+
+    @Override
+    public Expr.Literal visitIntLiteralExpr(ToyScriptParser.IntLiteralExprContext ctx) {
+        return new Expr.Literal(pos(ctx), Integer.valueOf(ctx.INT().getText()));
+    }
+
+    @Override
+    public Expr.Literal visitStringLiteralExpr(ToyScriptParser.StringLiteralExprContext ctx) {
+        return new Expr.Literal(pos(ctx), Expr.Literal.string(ctx.STRING().getText()));
+    }
+
+    @Override
+    public Expr.Literal visitNullLiteralExpr(ToyScriptParser.NullLiteralExprContext ctx) {
+        return new Expr.Literal(pos(ctx), null);
+    }
+
+    @Override
+    public Expr.Identifier visitIdentifierExpr(ToyScriptParser.IdentifierExprContext ctx) {
+        return new Expr.Identifier(pos(ctx), name(ctx.ID()));
+    }
+
+    @Override
+    public Expr.MemberAssign visitMemberAssignExpr(ToyScriptParser.MemberAssignExprContext ctx) {
+        return new Expr.MemberAssign(pos(ctx), expr(ctx.expr(0)), pos(ctx.ID()), name(ctx.ID()),
+                expr(ctx.expr(1)));
+    }
+
+    @Override
+    public Expr.IndexAssign visitIndexAssignExpr(ToyScriptParser.IndexAssignExprContext ctx) {
+        return new Expr.IndexAssign(pos(ctx), expr(ctx.expr(0)), expr(ctx.expr(1)), expr(ctx.expr(2)));
+    }
+
+    @Override
+    public Expr.Assign visitAssignExpr(ToyScriptParser.AssignExprContext ctx) {
+        return new Expr.Assign(pos(ctx), name(ctx.ID()), expr(ctx.expr()));
+    }
+
+    private Expr.Binary binary(ParserRuleContext ctx, Operator op, ToyScriptParser.ExprContext left,
+                               ToyScriptParser.ExprContext right) {
+        return new Expr.Binary(pos(ctx), op, expr(left), expr(right));
+    }
+
+    private Stmt statement(ToyScriptParser.StatementContext ctx) {
+        return visitStatement(ctx);
+    }
+
+    private List<Stmt> statements(List<ToyScriptParser.StatementContext> ctx) {
+        return ctx.stream().map(this::statement).toList();
+    }
+
+    private Expr expr(ToyScriptParser.ExprContext ctx) {
+        return (Expr) visit(ctx);
+    }
+
+    private List<Expr> expressions(List<ToyScriptParser.ExprContext> ctx) {
+        return ctx.stream().map(this::expr).toList();
+    }
+
+    private static String name(TerminalNode id) {
+        return id.getText().intern();
+    }
+
+    private static Pos pos(ParserRuleContext ctx) {
+        return pos(ctx.getStart());
+    }
+
+    private static Pos pos(TerminalNode node) {
+        return pos(node.getSymbol());
+    }
+
+    private static Pos pos(Token token) {
+        return new Pos(token.getLine(), token.getCharPositionInLine());
+    }
+}
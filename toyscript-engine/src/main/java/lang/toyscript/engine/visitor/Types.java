@@ -1,7 +1,7 @@
 package lang.toyscript.engine.visitor;
 
+import lang.toyscript.engine.ast.Pos;
 import lang.toyscript.engine.error.SignalException;
-import org.antlr.v4.runtime.tree.TerminalNode;
 
 import java.util.List;
 import java.util.Map;
@@ -38,10 +38,9 @@ public interface Types {
         return NATIVE;
     }
 
-    static String ensureStructKey(Map<?, ?> struct, TerminalNode id) {
-        var key = id.getText();
+    static String ensureStructKey(Map<?, ?> struct, String key, long pos) {
         if (struct.containsKey(key)) return key;
-        throw new SignalException.Throw(id.getSymbol(), "Member " + key + " not found");
+        throw new SignalException.Throw(Pos.unpack(pos), "Member " + key + " not found");
     }
 
     static Object addExpr(Object o1, Object o2) {
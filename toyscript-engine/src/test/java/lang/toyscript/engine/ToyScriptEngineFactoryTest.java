@@ -24,6 +24,18 @@ public class ToyScriptEngineFactoryTest {
         assertThat(engine3).isNotNull().isInstanceOf(ToyScriptEngine.class);
     }
 
+    @Test
+    public void shouldDeclareEnginesSafeForConcurrentEvaluation() {
+        // given
+        var factory = new ToyScriptEngineFactory();
+
+        // when
+        var threading = factory.getParameter(ToyScriptEngineFactory.THREADING);
+
+        // then
+        assertThat(threading).isEqualTo(ToyScriptEngineFactory.MULTITHREADED);
+    }
+
     @Test
     public void shouldNotGetEngineByMisspelledName() {
         // given
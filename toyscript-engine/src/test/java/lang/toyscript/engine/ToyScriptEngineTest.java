@@ -1,20 +1,51 @@
 package lang.toyscript.engine;
 
+import lang.toyscript.engine.ast.Expr;
+import lang.toyscript.engine.ast.Operator;
+import lang.toyscript.engine.ast.Pos;
+import lang.toyscript.engine.ast.Program;
+import lang.toyscript.engine.ast.Stmt;
+import lang.toyscript.engine.bytecode.Disassembler;
+import lang.toyscript.engine.compiler.Optimizer;
+import lang.toyscript.engine.lib.MemoizedFunction;
+import lang.toyscript.engine.node.ScriptFunction;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.script.Bindings;
+import javax.script.Compilable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.lang.reflect.Array;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 public class ToyScriptEngineTest {
 
+    private static final List<String> BACKENDS = List.of(ToyScriptEngine.BACKEND_INTERPRETER,
+            ToyScriptEngine.BACKEND_BYTECODE, ToyScriptEngine.BACKEND_JVM, ToyScriptEngine.BACKEND_TIERED);
+
+    /**
+     * Backends running script calls on the Java stack, with the lower default call depth.
+     */
+    private static final List<String> JAVA_STACK_BACKENDS = List.of(ToyScriptEngine.BACKEND_INTERPRETER,
+            ToyScriptEngine.BACKEND_JVM, ToyScriptEngine.BACKEND_TIERED);
+
     public ScriptEngine objectUnderTest;
 
     @BeforeEach
@@ -224,6 +255,28 @@ public class ToyScriptEngineTest {
         assertThat(objectUnderTest.get("i")).isEqualTo(4);
     }
 
+    @Test
+    public void shouldResolveLocalsLexically() throws ScriptException {
+        for (var backend : BACKENDS) {
+            // given
+            var engine = engine(backend);
+            var reader = resourceFileReader("/toys/lexicalScopes.toys");
+
+            // when
+            engine.eval(reader);
+
+            // then
+            assertThat(engine.get("even")).isEqualTo(true);
+            assertThat(engine.get("odd")).isEqualTo(false);
+            assertThat(engine.get("reused")).isNull();
+            assertThat(engine.get("error")).isEqualTo("Identifier a already declared in current scope");
+            assertThat(engine.get("undeclared")).isEqualTo("Identifier b is not declared");
+            assertThat(engine.getBindings(ScriptContext.ENGINE_SCOPE))
+                    .containsOnlyKeys("parity", "even", "odd", "reused", "error", "stale", "undeclared",
+                            ToyScriptEngine.BACKEND);
+        }
+    }
+
     @Test
     public void shouldRevertString() throws ScriptException {
         // given
@@ -305,6 +358,354 @@ public class ToyScriptEngineTest {
         assertThat(objectUnderTest.get("notFound")).isEqualTo(-11);
     }
 
+    @Test
+    public void shouldRunFunctionsCompiledToBytecode() throws ScriptException {
+        // given
+        objectUnderTest.getContext().setAttribute(ToyScriptEngine.BACKEND, ToyScriptEngine.BACKEND_JVM,
+                ScriptContext.ENGINE_SCOPE);
+        objectUnderTest.eval(resourceFileReader("/toys/fibonacci.toys"));
+        objectUnderTest.eval(resourceFileReader("/toys/basicSort.toys"));
+        objectUnderTest.eval(resourceFileReader("/toys/simpleTryCatch.toys"));
+
+        // when
+        objectUnderTest.eval("var a = array { 1, 5, 4, 8, 3, 1, 2, 5, 8, 9, 2, 7, 11, 6, 3, 2 };");
+        objectUnderTest.eval("bubbleSort(a);");
+
+        // then
+        assertThat(objectUnderTest.get("f1")).isEqualTo(13);
+        assertThat(objectUnderTest.get("f2")).isEqualTo(13);
+        assertThat(objectUnderTest.get("f3_37")).isEqualTo(24157817);
+        assertThat(objectUnderTest.get("a")).isEqualTo(List.of(1, 1, 2, 2, 2, 3, 3, 4, 5, 5, 6, 7, 8, 8, 9, 11));
+        assertThat(objectUnderTest.get("z")).isEqualTo(5);
+        assertThat(objectUnderTest.get("caught")).isEqualTo("error-2");
+        assertThat(((ScriptFunction) objectUnderTest.get("fibonacci1")).isCompiled()).isTrue();
+        assertThat(((ScriptFunction) objectUnderTest.get("bubbleSort")).isCompiled()).isTrue();
+    }
+
+    @Test
+    public void shouldRespecializeOperatorsOnNewOperandTypes() throws ScriptException {
+        // given
+        objectUnderTest.eval("function ops(a, b) { return array { a + b, a - b, a / b, a % b, a < b, a >= b, a == b }; }");
+
+        // when
+        var results = List.of(
+                objectUnderTest.eval("ops(7, 2);"),
+                objectUnderTest.eval("ops(7.0, 2);"),
+                objectUnderTest.eval("ops(7, 2);"),
+                objectUnderTest.eval("ops(\"a\", 2);"),
+                objectUnderTest.eval("ops(true, 1);"),
+                objectUnderTest.eval("ops(3, 3);"));
+
+        // then
+        assertThat(results).containsExactly(
+                List.of(9, 5, 3, 1, false, true, false),
+                List.of(9.0f, 5.0f, 3.5f, 1, false, true, false),
+                List.of(9, 5, 3, 1, false, true, false),
+                List.of("a2", -1.0f, 0.5f, 1, true, false, false),
+                List.of(2.0f, 0.0f, 1.0f, 0, false, true, false),
+                List.of(6, 0, 1, 0, false, true, true));
+    }
+
+    @Test
+    public void shouldLeaveUnboxedArithmeticWhenOperandTypeChanges() throws ScriptException {
+        // given
+        objectUnderTest.eval("function f(a, b, c) { if (a * b + c > 10 == (a < b)) return -(a * b + c); return 0; }");
+
+        // when
+        var results = List.of(
+                objectUnderTest.eval("f(3, 4, 5);"),
+                objectUnderTest.eval("f(3, 4, \"5\");"),
+                objectUnderTest.eval("f(3.5, 4, 5);"),
+                objectUnderTest.eval("f(1, 2, 3);"));
+
+        // then
+        assertThat(results).containsExactly(-17, 0, -19.0f, 0);
+    }
+
+    @Test
+    public void shouldCompleteJumpsWithinFunctions() throws ScriptException {
+        for (var backend : BACKENDS) {
+            // given
+            var engine = engine(backend);
+            engine.eval("""
+                    function find(items, wanted) {
+                        var i = 0;
+                        while (true) {
+                            try {
+                                if (items[i] == wanted) return i;
+                            } catch (e) {
+                                return -1;
+                            }
+                            i++;
+                        }
+                    }
+                    function stop() { break; }
+                    var evens = 0;
+                    var i = 0;
+                    while (i < 10) {
+                        i++;
+                        if (i % 2 == 1) continue;
+                        if (i > 6) stop();
+                        evens++;
+                    }
+                    """);
+
+            // when
+            var found = engine.eval("find(array { 3, 5, 7 }, 7);");
+            var missing = engine.eval("find(array { 3, 5, 7 }, 4);");
+
+            // then
+            assertThat(found).isEqualTo(2);
+            assertThat(missing).isEqualTo(-1);
+            assertThat(engine.get("evens")).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void shouldPromoteHotFunctionsAndDeoptimize() throws ScriptException {
+        // given
+        objectUnderTest.getContext().setAttribute(ToyScriptEngine.BACKEND, ToyScriptEngine.BACKEND_TIERED,
+                ScriptContext.ENGINE_SCOPE);
+        objectUnderTest.eval(resourceFileReader("/toys/fibonacci.toys"));
+        objectUnderTest.eval("function add(a, b) { return a + b; }");
+        var add = (ScriptFunction) objectUnderTest.get("add");
+
+        // when
+        var cold = add.isCompiled();
+        var hot = objectUnderTest.eval("var i = 0; var sum = 0; while (i < 2000) sum = add(sum, i++); sum;");
+        var promoted = add.isCompiled();
+        var deoptimized = objectUnderTest.eval("add(\"sum: \", 1.5);");
+
+        // then
+        assertThat(cold).isFalse();
+        assertThat(hot).isEqualTo(1999000);
+        assertThat(promoted).isTrue();
+        assertThat(deoptimized).isEqualTo("sum: 1.5");
+        assertThat(add.isCompiled()).isFalse();
+        assertThat(objectUnderTest.eval("fibonacci2(20);")).isEqualTo(6765);
+        assertThat(((ScriptFunction) objectUnderTest.get("fibonacci2")).isCompiled()).isTrue();
+        assertThat(((ScriptFunction) objectUnderTest.get("fibonacci1")).isCompiled()).isFalse();
+    }
+
+    @Test
+    public void shouldRunAndDisassembleBytecode() throws ScriptException {
+        // given
+        objectUnderTest.getContext().setAttribute(ToyScriptEngine.BACKEND, ToyScriptEngine.BACKEND_BYTECODE,
+                ScriptContext.ENGINE_SCOPE);
+        var program = (ToyScriptProgram) ((Compilable) objectUnderTest)
+                .compile(resourceFileReader("/toys/fibonacci.toys"));
+
+        // when
+        program.eval();
+        objectUnderTest.eval(resourceFileReader("/toys/simpleTryCatch.toys"));
+        var listing = Disassembler.disassemble(program.bytecode());
+
+        // then
+        assertThat(objectUnderTest.get("f1")).isEqualTo(13);
+        assertThat(objectUnderTest.get("f2")).isEqualTo(13);
+        assertThat(objectUnderTest.get("f3_37")).isEqualTo(24157817);
+        assertThat(objectUnderTest.get("x")).isEqualTo(4);
+        assertThat(objectUnderTest.get("z")).isEqualTo(5);
+        assertThat(objectUnderTest.get("caught")).isEqualTo("error-2");
+        assertThat(listing)
+                .startsWith("<program> registers: 4")
+                .contains("function fibonacci3(n) registers:")
+                .containsPattern("CALL +r\\d+, r\\d+, r\\d+, 1, #\\d+ +; 5:12");
+    }
+
+    @Test
+    public void shouldReuseScriptsFromCompileCache() throws ScriptException {
+        // given
+        var engine = new ToyScriptEngine(null, 2);
+        engine.put("x", 0);
+
+        // when
+        var results = List.of(
+                engine.eval("x = x + 1;"),
+                engine.eval("x = x + 1;"),
+                engine.eval("2 * 3;"),
+                engine.eval("2 * 4;"),
+                engine.eval("x = x + 1;"));
+        var compiled = engine.compile("2 * 4;");
+
+        // then
+        assertThat(results).containsExactly(1, 2, 6, 8, 3);
+        assertThat(compiled.eval()).isEqualTo(8);
+        assertThat(engine.compileCache().stats()).isEqualTo(new CompileCache.Stats(2, 4, 2, 2));
+    }
+
+    @Test
+    public void shouldLoadParsedScriptsFromDiskCache(@TempDir Path cacheDir) throws ScriptException, IOException {
+        // given
+        var version = new ToyScriptEngineFactory().getEngineVersion();
+        var pos = new Pos(1, 0);
+        var cached = new Program(List.of(new Stmt.Expression(pos, new Expr.Literal(pos, 42))));
+        new DiskCache(cacheDir, version).store("1 + 1;", cached);
+        objectUnderTest.getContext().setAttribute(ToyScriptEngine.CACHE_DIR, cacheDir, ScriptContext.ENGINE_SCOPE);
+
+        // when
+        var fromCache = objectUnderTest.eval("1 + 1;");
+        var parsed = objectUnderTest.eval("2 + 2;");
+        try (var files = Files.list(cacheDir)) {
+            for (var file : files.toList()) {
+                var bytes = Files.readAllBytes(file);
+                bytes[bytes.length - 1]++;
+                Files.write(file, bytes);
+            }
+        }
+        var corrupted = new ToyScriptEngine();
+        corrupted.getContext().setAttribute(ToyScriptEngine.CACHE_DIR, cacheDir, ScriptContext.ENGINE_SCOPE);
+        var reparsed = corrupted.eval("1 + 1;");
+
+        // then
+        assertThat(fromCache).isEqualTo(42);
+        assertThat(parsed).isEqualTo(4);
+        assertThat(new DiskCache(cacheDir, version).load("2 + 2;")).isNull();
+        assertThat(reparsed).isEqualTo(2);
+        assertThat(new DiskCache(cacheDir, version).load("1 + 1;")).isNotEqualTo(cached);
+        assertThat(new DiskCache(cacheDir, "0.0").load("1 + 1;")).isNull();
+    }
+
+    @Test
+    public void shouldDeleteTemporaryFileWhenCacheEntryCannotBeMoved(@TempDir Path cacheDir) throws IOException {
+        // given
+        var version = new ToyScriptEngineFactory().getEngineVersion();
+        var pos = new Pos(1, 0);
+        var program = new Program(List.of(new Stmt.Expression(pos, new Expr.Literal(pos, 42))));
+        var cache = new DiskCache(cacheDir, version);
+        cache.store("1 + 1;", program);
+        List<Path> entries;
+        try (var files = Files.list(cacheDir)) {
+            entries = files.toList();
+        }
+        // a non-empty directory in place of the entry makes the move fail
+        Files.delete(entries.get(0));
+        Files.createDirectories(entries.get(0).resolve("blocker"));
+
+        // when
+        cache.store("1 + 1;", program);
+
+        // then
+        try (var files = Files.list(cacheDir)) {
+            assertThat(files.toList()).isEqualTo(entries);
+        }
+    }
+
+    @Test
+    public void shouldParseGeneratedScriptAfterWarmUp() throws ScriptException {
+        // given
+        ToyScriptEngine.warmUp(List.of("var a = (1 + 2) * 3 - -4 / 2;", "var a() = 0;"));
+        var script = new StringBuilder("var sum = 0;");
+        for (var i = 0; i < 500; i++) {
+            script.append("if (sum % 3 == 0 || sum < ").append(i).append(") sum = sum + ").append(i).append(";");
+        }
+        script.append("sum;");
+
+        // when
+        var result = objectUnderTest.eval(script.toString());
+
+        // then
+        assertThat(result).isEqualTo(766);
+    }
+
+    @Test
+    public void shouldBuildSameSyntaxTreeWithHandwrittenParser() throws Exception {
+        // given
+        var scripts = new ArrayList<String>();
+        try (var files = Files.list(Path.of(getClass().getResource("/toys").toURI()))) {
+            for (var file : files.sorted().toList()) scripts.add(Files.readString(file));
+        }
+        scripts.add("""
+                var a = -x.y + !b[1] * (c).d - f(1, 2.5, "s\\n")[0] / 3 % 4 <= 5 == true || null != z && w--;
+                a.b = c[1] = d.e = 1 + g = 2;
+                x + y = 3; -p = 4; q[0] = r.s[t] = u;
+                var s = struct { k = 1; l = array { 1, 2 }; }; var arr = array[2 * 3]; /* note */ // end
+                """);
+
+        // when
+        var antlr = scripts.stream().map(script -> ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_ANTLR)).toList();
+        var handwritten = scripts.stream()
+                .map(script -> ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_HANDWRITTEN))
+                .toList();
+        objectUnderTest.getContext().setAttribute(ToyScriptEngine.PARSER, ToyScriptEngine.PARSER_HANDWRITTEN,
+                ScriptContext.ENGINE_SCOPE);
+        objectUnderTest.eval(resourceFileReader("/toys/fibonacci.toys"));
+        var error = catchThrowableOfType(() -> objectUnderTest.eval("var a = 0"), ScriptException.class);
+
+        // then
+        assertThat(handwritten).isEqualTo(antlr);
+        assertThat(objectUnderTest.get("f3")).isEqualTo(13);
+        assertThat(error.getMessage()).isEqualTo(
+                "mismatched input '<EOF>' expecting ';' in script at line number 1 at column number 9");
+    }
+
+    @Test
+    public void shouldInternIdentifiersAndReportRetainedSize() throws ScriptException {
+        // given
+        var engine = (ToyScriptEngine) objectUnderTest;
+        var small = "var s = 1;";
+        var large = "function f(n) { var t = struct { k = n; }; return t.k * 2; } var l = f(array { 1, 2 }[0]);";
+
+        // when
+        var antlr = (Stmt.VarDecl) ToyScriptEngine.parse(new String("var total;"), ToyScriptEngine.PARSER_ANTLR)
+                .body().get(0);
+        var handwritten = (Stmt.VarDecl) ToyScriptEngine.parse(new String("var total;"),
+                ToyScriptEngine.PARSER_HANDWRITTEN).body().get(0);
+        var smallSize = ((ToyScriptProgram) engine.compile(small)).retainedSize();
+        var largeSize = ((ToyScriptProgram) engine.compile(large)).retainedSize();
+        var other = new ToyScriptEngine();
+        var farLine = catchThrowableOfType(() -> other.eval("\n".repeat(70000) + "undeclared;"),
+                ScriptException.class);
+        var farColumn = catchThrowableOfType(() -> other.eval(" ".repeat(70000) + "undeclared;"),
+                ScriptException.class);
+
+        // then
+        assertThat(antlr.name()).isSameAs("total");
+        assertThat(handwritten.name()).isSameAs("total");
+        assertThat(smallSize).isPositive().isLessThan(largeSize);
+        assertThat(engine.compileCache().retainedSize()).isEqualTo(smallSize + largeSize);
+        assertThat(farLine.getLineNumber()).isEqualTo(70001);
+        assertThat(farLine.getColumnNumber()).isEqualTo(0);
+        assertThat(farColumn.getLineNumber()).isEqualTo(1);
+        assertThat(farColumn.getColumnNumber()).isEqualTo(70000);
+    }
+
+    @Test
+    public void shouldDecodeLiteralsOnceAtCompileTime() throws ScriptException {
+        // given
+        var script = "function k() { return 1000; } var k1 = k(); var k2 = k(); var s = \"a\\tb\\\"c\\\\n\\n\";";
+
+        // when
+        objectUnderTest.eval(script);
+        var handwritten = ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_HANDWRITTEN);
+        var antlr = ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_ANTLR);
+
+        // then
+        assertThat(objectUnderTest.get("k1")).isEqualTo(1000).isSameAs(objectUnderTest.get("k2"));
+        assertThat(objectUnderTest.get("s")).isEqualTo("a\tb\"c\\n\n");
+        assertThat(handwritten).isEqualTo(antlr);
+    }
+
+    @Test
+    public void shouldResolveNullGlobalsAndMembers() throws ScriptException {
+        // given
+        var script = "var g; var s = struct { m = null; }; var r = s.m == g; s.m = 1; g = s.m; g++; s.m = s.m + 1;";
+        var bytecode = engine(ToyScriptEngine.BACKEND_BYTECODE);
+
+        // when
+        objectUnderTest.eval(script);
+        bytecode.eval(script);
+        var error = catchThrowableOfType(() -> objectUnderTest.eval("s.n = 1;"), ScriptException.class);
+
+        // then
+        for (var engine : List.of(objectUnderTest, bytecode)) {
+            assertThat(engine.get("r")).isEqualTo(true);
+            assertThat(engine.get("g")).isEqualTo(2);
+            assertThat(engine.get("s")).isEqualTo(Map.of("m", 2));
+        }
+        assertThat(error.getMessage()).startsWith("Member n not found");
+    }
+
     @Test
     public void shouldNotCatchSyntaxErrors() {
         // given
@@ -334,6 +735,628 @@ public class ToyScriptEngineTest {
                 "mismatched input '{' expecting '(' in script at line number 1 at column number 17");
     }
 
+    @Test
+    public void shouldOptimizeWithoutChangingResults() throws Exception {
+        // given
+        var script = """
+                var a = 2 * 3 + 1.5 - -1;
+                var s = "x" + 1 + (2 < 3) + !null;
+                if (1 == 1.0) { a = a + 1; } else { a = 0; }
+                while (false) { a = 0; }
+                function f(n) { return n * 2; a = 0; var unused = n; }
+                "unused"; array { 1, 2 }; f(a);
+                """;
+        var optimized = Optimizer.optimize(ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_ANTLR));
+
+        // when
+        var results = new ArrayList<List<Object>>();
+        try (var files = Files.list(Path.of(getClass().getResource("/toys").toURI()))) {
+            for (var file : files.sorted().toList()) {
+                for (var optimize : List.of(false, true)) {
+                    var toys = new ToyScriptEngine();
+                    toys.setBindings(toys.createBindings(), ScriptContext.GLOBAL_SCOPE);
+                    toys.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, optimize, ScriptContext.GLOBAL_SCOPE);
+                    var values = new ArrayList<>();
+                    values.add(toys.eval(Files.readString(file)));
+                    toys.getBindings(ScriptContext.ENGINE_SCOPE).values().stream()
+                            .filter(value -> !(value instanceof ScriptFunction))
+                            .forEach(values::add);
+                    results.add(values);
+                }
+            }
+        }
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, "true", ScriptContext.ENGINE_SCOPE);
+        var result = engine.eval(script);
+        var error = catchThrowableOfType(() -> engine.eval("var z = (1 + 2).m;"), ScriptException.class);
+        var expectedError = catchThrowableOfType(() -> objectUnderTest.eval("var z = (1 + 2).m;"),
+                ScriptException.class);
+
+        // then
+        for (var i = 0; i < results.size(); i += 2) assertThat(results.get(i + 1)).isEqualTo(results.get(i));
+        assertThat(optimized.body().get(0)).isEqualTo(new Stmt.VarDecl(new Pos(1, 4), "a",
+                new Expr.Literal(new Pos(1, 8), 8.5f)));
+        assertThat(optimized.body().get(2)).isEqualTo(new Stmt.Block(new Pos(3, 14), List.of(new Stmt.Expression(
+                new Pos(3, 16), new Expr.Assign(new Pos(3, 16), "a", new Expr.Binary(new Pos(3, 20), Operator.ADD,
+                new Expr.Identifier(new Pos(3, 20), "a"), new Expr.Literal(new Pos(3, 24), 1)))))));
+        assertThat(optimized.body()).hasSize(5);
+        assertThat(((Stmt.FunctionDecl) optimized.body().get(3)).body()).hasSize(2);
+        assertThat(result).isEqualTo(19f);
+        assertThat(engine.get("s")).isEqualTo("x1truetrue");
+        assertThat(error.getMessage()).isEqualTo(expectedError.getMessage()).endsWith("column number 9");
+    }
+
+    @Test
+    public void shouldHoistLoopInvariantExpressions() throws Exception {
+        // given
+        var script = Files.readString(Path.of(getClass().getResource("/toys/reverseString.toys").toURI())) + """
+                function count(n) {
+                    var size = n;
+                    var i = 0;
+                    var k = 0;
+                    while (i < size - 1) { var j = 0; while (j < size * 2) { j++; k++; } i++; }
+                    while (k > size + i) k = k - size;
+                    return k;
+                }
+                """;
+
+        // when
+        var optimized = Optimizer.optimize(ToyScriptEngine.parse(script, ToyScriptEngine.PARSER_ANTLR));
+
+        // then
+        var reverse = ((Stmt.FunctionDecl) optimized.body().get(0)).body();
+        assertThat(reverse.get(2)).isInstanceOfSatisfying(Stmt.If.class, guarded -> {
+            assertThat(guarded.condition()).isEqualTo(new Expr.Native(new Pos(4, 4), "length"));
+            assertThat(guarded.then()).isInstanceOfSatisfying(Stmt.Block.class, block -> {
+                assertThat(block.body().get(0)).isEqualTo(new Stmt.VarDecl(new Pos(4, 15), "$loop0",
+                        new Expr.Call(new Pos(4, 15), "length", List.of(new Expr.Identifier(new Pos(4, 22), "str")))));
+                assertThat(block.body().get(1)).isInstanceOf(Stmt.While.class);
+            });
+            assertThat(guarded.otherwise()).isInstanceOf(Stmt.While.class);
+        });
+        var count = ((Stmt.FunctionDecl) optimized.body().get(1)).body();
+        assertThat(count.get(3)).isInstanceOfSatisfying(Stmt.Block.class, block -> assertThat(block.body())
+                .extracting(stmt -> stmt instanceof Stmt.VarDecl decl ? decl.name() : "while")
+                .containsExactly("$loop2", "while"));
+        assertThat(count.get(4)).isInstanceOf(Stmt.Block.class);
+    }
+
+    @Test
+    public void shouldRunHoistedLoopsOnEveryBackend() throws Exception {
+        // given
+        var script = Files.readString(Path.of(getClass().getResource("/toys/reverseString.toys").toURI())) + """
+                function count(n) {
+                    var k = 0;
+                    var i = 0;
+                    while (i < n - 1) { var j = 0; while (j < n * 2) { j++; k++; } i++; }
+                    return k;
+                }
+                reverseString("abc") + count(4);
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, true, ScriptContext.ENGINE_SCOPE);
+            results.add(engine.eval(script));
+        }
+
+        // then
+        assertThat(results).containsOnly(objectUnderTest.eval(script)).containsOnly("cba24");
+    }
+
+    @Test
+    public void shouldNotHoistNativesReboundOutsideTheScript() throws Exception {
+        // given
+        var script = """
+                function f(s) { var i = 0; while (i < length(s)) i++; return i; }
+                function g(x) { var i = 0; var t = ""; while (i < 6) { t = typeof(x); i++; } return t; }
+                f("abc") + " " + g(1);
+                """;
+        var results = new ArrayList<>();
+        var calls = new ArrayList<>();
+
+        // when
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, true, ScriptContext.ENGINE_SCOPE);
+            var typeofCalls = new int[1];
+            engine.put("typeof", (java.util.function.Function<Object[], Object>) args -> "t" + typeofCalls[0]++);
+            engine.eval("var calls = 0; function length(x) { calls++; return 3; }");
+            results.add(engine.eval(script));
+            calls.add(engine.get("calls") + " " + typeofCalls[0]);
+        }
+
+        // then
+        assertThat(results).containsOnly("3 t5");
+        assertThat(calls).containsOnly("4 6");
+    }
+
+    @Test
+    public void shouldInlineFunctionsUntilReassigned() throws Exception {
+        // given
+        var script = """
+                var g = 1;
+                function add(a, b) { var s = a + b * g; return s; }
+                function swap(arr, i1, i2) { var tmp = arr[i1]; arr[i1] = arr[i2]; arr[i2] = tmp; }
+                function sum(n) { var i = 0; var t = 0; while (i < n) { t = add(t, i); i++; } return t; }
+                function shadowed(n) { var g = 10; return add(n, n); }
+                var arr = array { 1, 2 };
+                swap(arr, 0, 1);
+                add(sum(10), shadowed(2)) + arr[0];
+                """;
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, true, ScriptContext.ENGINE_SCOPE);
+
+        // when
+        var result = engine.eval(script);
+        var expected = objectUnderTest.eval(script);
+        engine.put("add", (java.util.function.Function<Object[], Object>) args -> 100);
+        var reassigned = engine.eval("sum(3);");
+
+        // then
+        assertThat(result).isEqualTo(expected).isEqualTo(51);
+        assertThat(engine.get("arr")).isEqualTo(List.of(2, 1));
+        assertThat(reassigned).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldEvaluateArgumentsOfInlinedCallsWhenReassigned() throws Exception {
+        // given
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, true, ScriptContext.ENGINE_SCOPE);
+        engine.eval("""
+                var n = 0;
+                function inc(a) { return a + 1; }
+                function run() { return inc(n++); }
+                """);
+
+        // when
+        var inlined = engine.eval("run();");
+        engine.put("inc", (java.util.function.Function<Object[], Object>) args -> args[0]);
+        var reassigned = engine.eval("run();");
+        engine.getBindings(ScriptContext.ENGINE_SCOPE).remove("inc");
+        var error = catchThrowableOfType(() -> engine.eval("run();"), ScriptException.class);
+
+        // then
+        assertThat(inlined).isEqualTo(1);
+        assertThat(reassigned).isEqualTo(1);
+        assertThat(error.getMessage()).startsWith("Identifier inc is not declared");
+        assertThat(engine.get("n")).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldReportErrorsOfInlinedFunctionsAtTheCall() throws Exception {
+        // given
+        var script = """
+                function d(a, b) { return a / b; }
+                function add(a, b) { return a + b; }
+                var nested = add(1, add(2, add(3, 4))) + add(add(5, 6), 7);
+                var r = d(1, 0);
+                """;
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, true, ScriptContext.ENGINE_SCOPE);
+
+        // when
+        var error = catchThrowableOfType(() -> engine.eval(script), ScriptException.class);
+        var expected = catchThrowableOfType(() -> objectUnderTest.eval(script), ScriptException.class);
+
+        // then
+        assertThat(engine.get("nested")).isEqualTo(28);
+        assertThat(error.getMessage()).isEqualTo(expected.getMessage())
+                .isEqualTo("ArithmeticException / by zero in script at line number 4 at column number 8");
+    }
+
+    @Test
+    public void shouldRunTailCallsInPlace() throws Exception {
+        // given
+        var script = """
+                function loop(n, acc) { if (n == 0) return acc; return loop(n - 1, acc + 1); }
+                function even(n) { if (n == 0) return true; return odd(n - 1); }
+                function odd(n) { if (n == 0) return false; return even(n - 1); }
+                loop(200000, 0) + " " + even(100001);
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : List.of(ToyScriptEngine.BACKEND_INTERPRETER, ToyScriptEngine.BACKEND_BYTECODE)) {
+            var engine = engine(backend);
+            engine.getContext().setAttribute(ToyScriptEngine.MAX_CALL_DEPTH, 100, ScriptContext.ENGINE_SCOPE);
+            results.add(engine.eval(script));
+        }
+
+        // then
+        assertThat(results).containsOnly("200000 false");
+    }
+
+    @Test
+    public void shouldEvaluateArgumentsBeforeResolvingCallee() throws Exception {
+        // given
+        var script = """
+                var n = 0;
+                try { nope(n++); } catch (e) {}
+                function f() { return nope(n++); }
+                try { f(); } catch (e) {}
+                n;
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : BACKENDS) {
+            for (var optimize : List.of(false, true)) {
+                var engine = engine(backend);
+                engine.getContext().setAttribute(ToyScriptEngine.OPTIMIZE, optimize, ScriptContext.ENGINE_SCOPE);
+                results.add(engine.eval(script));
+            }
+        }
+
+        // then
+        assertThat(results).hasSize(8).containsOnly(2);
+    }
+
+    @Test
+    public void shouldLimitCallDepth() throws Exception {
+        // given
+        var script = """
+                function sum(n) { if (n == 0) return 0; return n + sum(n - 1); }
+                function guarded(n) { try { return sum(n); } catch (e) { return e; } }
+                guarded(98) + " " + guarded(99);
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            engine.getContext().setAttribute(ToyScriptEngine.MAX_CALL_DEPTH, 100, ScriptContext.ENGINE_SCOPE);
+            results.add(engine.eval(script));
+        }
+
+        // then
+        assertThat(results).containsOnly("4851 Maximum call depth of 100 exceeded");
+    }
+
+    @Test
+    public void shouldRecurseBeyondJavaStackOnBytecode() throws Exception {
+        // given
+        var engine = engine(ToyScriptEngine.BACKEND_BYTECODE);
+        engine.getContext().setAttribute(ToyScriptEngine.MAX_CALL_DEPTH, 100_000, ScriptContext.ENGINE_SCOPE);
+        engine.eval("function sum(n) { if (n == 0) return 0; return n + sum(n - 1); }");
+
+        // when
+        var result = engine.eval("sum(50000);");
+        var error = catchThrowableOfType(() -> engine.eval("sum(100000);"), ScriptException.class);
+
+        // then
+        assertThat(result).isEqualTo(1250025000);
+        assertThat(error.getMessage())
+                .isEqualTo("Maximum call depth of 100000 exceeded in script at line number 1 at column number 51");
+    }
+
+    @Test
+    public void shouldLimitCallDepthByDefault() throws Exception {
+        // given
+        var script = """
+                function sum(n) { if (n == 0) return 0; var r = sum(n - 1); return r + 1; }
+                function guarded(n) { try { return sum(n); } catch (e) { return e; } }
+                sum(999) + " " + guarded(1000);
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : JAVA_STACK_BACKENDS) results.add(engine(backend).eval(script));
+
+        // then
+        assertThat(results).containsOnly("999 Maximum call depth of 1000 exceeded");
+    }
+
+    @Test
+    public void shouldRaiseCatchableErrorOnStackOverflow() throws Exception {
+        // given
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.MAX_CALL_DEPTH, Integer.MAX_VALUE,
+                ScriptContext.ENGINE_SCOPE);
+        engine.eval("""
+                function sum(n) { if (n == 0) return 0; var r = sum(n - 1); return r + 1; }
+                function guarded(n) { try { return sum(n); } catch (e) { return e; } }
+                """);
+
+        // when
+        var caught = engine.eval("guarded(1000000);");
+        var error = catchThrowableOfType(() -> engine.eval("sum(1000000);"), ScriptException.class);
+
+        // then
+        assertThat(caught).isEqualTo("Stack overflow in script function calls");
+        assertThat(error.getMessage())
+                .isEqualTo("Stack overflow in script function calls in script at line number 1 at column number 48");
+    }
+
+    @Test
+    public void shouldCacheResultsOfMemoFunctions() throws Exception {
+        // given
+        var script = """
+                var calls = 0;
+                memo function fib(n) { calls++; if (n < 2) return n; return fib(n - 1) + fib(n - 2); }
+                fib(40) + " " + calls;
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        var stats = new ArrayList<MemoizedFunction.Stats>();
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            results.add(engine.eval(script));
+            stats.add(((MemoizedFunction) engine.get("fib")).stats());
+        }
+
+        // then
+        assertThat(results).containsOnly("102334155 41");
+        assertThat(stats).containsOnly(new MemoizedFunction.Stats(38, 41, 0, 41));
+    }
+
+    @Test
+    public void shouldKeyMemoCacheByArgumentContents() throws Exception {
+        // given
+        var script = """
+                var calls = 0;
+                memo function total(a) { calls++; var s = 0; var i = 0; while (i < 2) s = s + a[i++]; return s; }
+                var arr = array { 1, 2.5 };
+                var first = total(arr);
+                var again = total(array { 1, 2.5 });
+                arr[0] = 2;
+                var changed = total(arr);
+                first + " " + again + " " + changed + " " + calls;
+                """;
+
+        // when
+        var results = new ArrayList<>();
+        for (var backend : BACKENDS) results.add(engine(backend).eval(script));
+
+        // then
+        assertThat(results).containsOnly("3.5 3.5 4.5 2");
+    }
+
+    @Test
+    public void shouldEvaluateOneProgramConcurrently() throws Exception {
+        // given
+        var script = """
+                var total = 0;
+                function fib(k) { if (k < 2) return k; return fib(k - 1) + fib(k - 2); }
+                memo function square(k) { return k * k; }
+                var i = 0;
+                while (i < n) { total = total + fib(i % 8) + square(i); i++; }
+                total + ":" + n;
+                """;
+        var threads = 8;
+        var evals = 25;
+
+        // when
+        var results = new ArrayList<List<Object>>();
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            var program = engine.compile(script);
+            results.add(runConcurrently(threads, thread -> {
+                var values = new ArrayList<>();
+                for (var e = 0; e < evals; e++) {
+                    var bindings = engine.createBindings();
+                    bindings.put("n", thread * evals + e);
+                    values.add(program.eval(bindings));
+                }
+                return values;
+            }));
+        }
+
+        // then
+        var expected = new ArrayList<>();
+        var fib = new int[8];
+        fib[1] = 1;
+        for (var k = 2; k < fib.length; k++) fib[k] = fib[k - 1] + fib[k - 2];
+        for (var n = 0; n < threads * evals; n++) {
+            var total = 0;
+            for (var i = 0; i < n; i++) total += fib[i % 8] + i * i;
+            expected.add(total + ":" + n);
+        }
+        assertThat(results).containsOnly(expected);
+    }
+
+    @Test
+    public void shouldEvaluateBatchInOrderCapturingErrors() throws Exception {
+        // given
+        var engine = new ToyScriptEngine();
+        var program = engine.compile("if (x % 10 == 3) throw \"bad \" + x; x * 2;");
+        var inputs = new ArrayList<Bindings>();
+        for (var i = 0; i < 100; i++) {
+            var bindings = engine.createBindings();
+            bindings.put("x", i);
+            inputs.add(bindings);
+        }
+        var executor = Executors.newFixedThreadPool(3);
+
+        // when
+        var results = new BatchEvaluator(program).evalAll(inputs);
+        var streamed = new ArrayList<>();
+        try {
+            new BatchEvaluator(program, executor, 3).evalAll(inputs.iterator(), result -> streamed.add(result.value()));
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(results).hasSize(100);
+        for (var i = 0; i < 100; i++) {
+            var result = results.get(i);
+            if (i % 10 == 3) {
+                assertThat(result.failed()).isTrue();
+                assertThat(result.error().getMessage()).startsWith("bad " + i);
+                assertThat(streamed.get(i)).isNull();
+            } else {
+                assertThat(result.value()).isEqualTo(i * 2);
+                assertThat(streamed.get(i)).isEqualTo(i * 2);
+            }
+        }
+    }
+
+    @Test
+    public void shouldEvaluateExpressionsOverColumns() throws Exception {
+        // given
+        var rows = ColumnarExpression.CHUNK_SIZE + 100;
+        var x = new int[rows];
+        var y = new float[rows];
+        var flag = new boolean[rows];
+        var s = new String[rows];
+        for (var i = 0; i < rows; i++) {
+            x[i] = i % 7 - 3;
+            y[i] = i * 0.5f;
+            flag[i] = i % 3 == 0;
+            s[i] = i % 5 == 0 ? null : "s" + i % 4;
+        }
+        var columns = Map.of("x", x, "y", y, "flag", flag, "s", s, "k", 2);
+        var expressions = List.of(
+                "x * k + 1;", "x / k - y;", "x % 4;", "-x + -flag;", "y > x * 10 && !flag || x == k;",
+                "x <= y / 100;", "flag == (x > 0);", "x == y;", "s + x;", "s == \"s1\";", "flag + x;");
+        var engine = new ToyScriptEngine();
+
+        // when
+        var columnResults = new ArrayList<Object>();
+        for (var expression : expressions) columnResults.add(engine.compileColumnar(expression).eval(columns));
+        var error = catchThrowableOfType(() -> engine.compileColumnar("x / (x - x);").eval(columns),
+                ScriptException.class);
+        var unsupported = catchThrowableOfType(() -> engine.compileColumnar("length(s);"), ScriptException.class);
+
+        // then
+        for (var e = 0; e < expressions.size(); e++) {
+            var program = engine.compile(expressions.get(e));
+            for (var i = 0; i < rows; i++) {
+                var bindings = engine.createBindings();
+                bindings.put("x", x[i]);
+                bindings.put("y", y[i]);
+                bindings.put("flag", flag[i]);
+                bindings.put("s", s[i]);
+                bindings.put("k", 2);
+                assertThat(Array.get(columnResults.get(e), i))
+                        .as("%s at row %d", expressions.get(e), i)
+                        .isEqualTo(program.eval(bindings));
+            }
+        }
+        assertThat(columnResults.get(0)).isInstanceOf(int[].class);
+        assertThat(columnResults.get(1)).isInstanceOf(float[].class);
+        assertThat(columnResults.get(4)).isInstanceOf(boolean[].class);
+        assertThat(columnResults.get(8)).isInstanceOf(Object[].class);
+        assertThat(error.getMessage()).startsWith("ArithmeticException / by zero");
+        assertThat(unsupported.getMessage()).startsWith("Expression not supported in columnar evaluation");
+    }
+
+    @Test
+    public void shouldCompileExpressionsWithParameters() throws Exception {
+        // when
+        var results = new ArrayList<>();
+        for (var backend : BACKENDS) {
+            var engine = engine(backend);
+            var score = engine.compileExpression("a * b + length(s)", "a", "b", "s");
+            var positive = engine.compileExpression("x / y > 0;", "x", "y");
+            results.add(List.of(score.eval(3, 4, "abc"), score.apply(new Object[]{1.5f, 2, ""}),
+                    positive.test(3, 1), positive.test(-3, 1)));
+        }
+
+        // then
+        assertThat(results).containsOnly(List.of(15, 3.0f, true, false));
+    }
+
+    @Test
+    public void shouldReportErrorsOfCompiledExpressionsAtTheExpression() throws Exception {
+        // when
+        var errors = new ArrayList<ScriptException>();
+        for (var backend : BACKENDS) {
+            var positive = engine(backend).compileExpression("x / y > 0;", "x", "y");
+            errors.add(catchThrowableOfType(() -> positive.eval(1, 0), ScriptException.class));
+        }
+
+        // then
+        assertThat(errors).extracting(ScriptException::getMessage)
+                .containsOnly("ArithmeticException / by zero in script at line number 1 at column number 0");
+        assertThat(errors).extracting(ScriptException::getLineNumber).containsOnly(1);
+        assertThat(errors).extracting(ScriptException::getColumnNumber).containsOnly(0);
+    }
+
+    @Test
+    public void shouldNotCompileStatementsAsExpressions() {
+        // given
+        var engine = new ToyScriptEngine();
+
+        // when
+        var error = catchThrowableOfType(() -> engine.compileExpression("var a = 1;"), ScriptException.class);
+
+        // then
+        assertThat(error.getMessage())
+                .isEqualTo("Script must be a single expression in script at line number 1 at column number 4");
+        assertThat(error.getColumnNumber()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldCallOneCompiledExpressionConcurrently() throws Exception {
+        // given
+        var threads = 8;
+        var calls = 500;
+
+        // when
+        var results = new ArrayList<List<Object>>();
+        for (var backend : BACKENDS) {
+            var score = engine(backend).compileExpression("a * b + length(s)", "a", "b", "s");
+            results.add(runConcurrently(threads, thread -> {
+                var values = new ArrayList<>();
+                for (var i = 0; i < calls; i++) {
+                    values.add(i % 2 == 0 ? score.eval(thread, i, "ab") : score.eval(0.5f, i, ""));
+                }
+                return values;
+            }));
+        }
+
+        // then
+        var expected = new ArrayList<>();
+        for (var t = 0; t < threads; t++) {
+            for (var i = 0; i < calls; i++) expected.add(i % 2 == 0 ? (Object) (t * i + 2) : 0.5f * i);
+        }
+        assertThat(results).containsOnly(expected);
+    }
+
+    @Test
+    public void shouldShareStandardLibraryBetweenEvaluations() throws Exception {
+        // given
+        var engine = new ToyScriptEngine();
+        var output = new StringWriter();
+        engine.getContext().setWriter(output);
+        var program = engine.compile("print(typeof(n) + \" \" + length(s)); length = n; length;");
+
+        // when
+        var results = new ArrayList<>();
+        for (var i = 0; i < 3; i++) {
+            var bindings = engine.createBindings();
+            bindings.put("n", i);
+            bindings.put("s", "ab".repeat(i));
+            results.add(program.eval(bindings));
+        }
+
+        // then
+        assertThat(results).containsExactly(0, 1, 2);
+        assertThat(output.toString().lines()).containsExactly("integer 0", "integer 2", "integer 4");
+    }
+
+    @Test
+    public void shouldRaiseCatchableErrorOnWriteToReadOnlyMember() throws Exception {
+        // given
+        var engine = new ToyScriptEngine();
+
+        // when
+        var error = catchThrowableOfType(() -> engine.eval("Types.INTEGER = \"float\";"), ScriptException.class);
+        var caught = engine.eval("var r; try { Types.INTEGER = 1; } catch (e) { r = e; } r;");
+
+        // then
+        assertThat(error.getMessage())
+                .isEqualTo("Member INTEGER is read-only in script at line number 1 at column number 6");
+        assertThat(caught).isEqualTo("Member INTEGER is read-only");
+        assertThat(engine.eval("Types.INTEGER;")).isEqualTo("integer");
+    }
+
     @Test
     public void shouldCatchSemanticErrors() throws ScriptException {
         // given
@@ -359,6 +1382,42 @@ public class ToyScriptEngineTest {
                 "Function reference cannot be used in expression"));
     }
 
+    private static ToyScriptEngine engine(String backend) {
+        var engine = new ToyScriptEngine();
+        engine.getContext().setAttribute(ToyScriptEngine.BACKEND, backend, ScriptContext.ENGINE_SCOPE);
+        return engine;
+    }
+
+    /**
+     * Runs the task on given number of threads released at once.
+     *
+     * @return values returned by the threads, in thread order.
+     */
+    private static <T> List<T> runConcurrently(int threads, ThreadTask<T> task) throws Exception {
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<List<T>>>();
+            for (var t = 0; t < threads; t++) {
+                var thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+            var values = new ArrayList<T>();
+            for (var future : futures) values.addAll(future.get());
+            return values;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private interface ThreadTask<T> {
+        List<T> run(int thread) throws Exception;
+    }
+
     private static BufferedReader resourceFileReader(String path) {
         var stream = ToyScriptEngineTest.class.getResourceAsStream(path);
         assert stream != null;